@@ -1,17 +1,17 @@
 package net.lenni0451.minijvm;
 
-import net.lenni0451.commons.asm.io.ClassIO;
 import net.lenni0451.commons.asm.provider.ClassProvider;
 import net.lenni0451.commons.asm.provider.MapClassProvider;
-import org.objectweb.asm.commons.JSRInlinerAdapter;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.MethodNode;
 
 import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static net.lenni0451.commons.asm.ASMUtils.slash;
 
@@ -19,6 +19,8 @@ public class ClassPool {
 
     private final ClassProvider classProvider;
     private final Map<String, byte[]> classes;
+    private final Map<String, ClassNode> classNodes;
+    private volatile int parsingOptions;
 
     public ClassPool(final ClassProvider classes) {
         this(classes, new HashMap<>());
@@ -30,7 +32,28 @@ public class ClassPool {
 
     public ClassPool(final ClassProvider classProvider, final Map<String, byte[]> classes) {
         this.classProvider = classProvider;
-        this.classes = new HashMap<>(classes);
+        this.classes = new ConcurrentHashMap<>(classes);
+        this.classNodes = new ConcurrentHashMap<>();
+    }
+
+    public int getParsingOptions() {
+        return this.parsingOptions;
+    }
+
+    /**
+     * Set the options used to parse classes.<br>
+     * Only {@link ClassReader#SKIP_DEBUG} and {@link ClassReader#SKIP_FRAMES} are supported.
+     * Skipping debug information removes the line numbers from stack traces.<br>
+     * Classes which have already been parsed are parsed again with the new options.
+     *
+     * @param parsingOptions The parsing options
+     */
+    public void setParsingOptions(final int parsingOptions) {
+        if ((parsingOptions & ~(ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES)) != 0) {
+            throw new IllegalArgumentException("Unsupported parsing options: " + parsingOptions);
+        }
+        this.parsingOptions = parsingOptions;
+        this.classNodes.clear();
     }
 
     public boolean loadClass(@Nullable final String name, final byte[] bytes) {
@@ -39,9 +62,10 @@ public class ClassPool {
 
     public boolean loadClass(@Nullable final String name, final byte[] bytes, final int offset, final int length) {
         byte[] slice = Arrays.copyOfRange(bytes, offset, length);
-        ClassNode classNode = ClassIO.fromBytes(slice);
-        if (name != null && !classNode.name.equals(slash(name))) return false;
-        this.classes.put(classNode.name, slice);
+        String className = new ClassReader(slice).getClassName();
+        if (name != null && !className.equals(slash(name))) return false;
+        this.classes.put(className, slice);
+        this.classNodes.remove(className);
         return true;
     }
 
@@ -52,18 +76,41 @@ public class ClassPool {
         return this.classProvider.getClass(internalName);
     }
 
+    /**
+     * Get the parsed form of a class.<br>
+     * Classes are only parsed once, the methods of the class are {@link LazyMethodNode}s whose code is parsed when they are linked.<br>
+     * The parsed class is shared by all managers using this pool and their forks, so it must not be modified.
+     * Code which writes to a method node while reading it has to synchronize on the method node (see {@link LazyMethodNode}).
+     *
+     * @param internalName The internal name of the class
+     * @return The parsed class or {@code null} if the class does not exist
+     * @throws ClassNotFoundException If the class provider fails to provide the class
+     */
     @Nullable
     public ClassNode getClassNode(final String internalName) throws ClassNotFoundException {
+        ClassNode classNode = this.classNodes.get(internalName);
+        if (classNode != null) return classNode;
+
         byte[] bytes = this.getClass(internalName);
         if (bytes == null) return null;
-        ClassNode classNode = ClassIO.fromBytes(bytes);
-        List<MethodNode> methods = classNode.methods;
-        for (int i = 0; i < methods.size(); i++) {
-            MethodNode method = methods.get(i);
-            JSRInlinerAdapter adapter = new JSRInlinerAdapter(method, method.access, method.name, method.desc, method.signature, method.exceptions == null ? null : method.exceptions.toArray(new String[0]));
-            method.accept(adapter); //Maybe remove this later if JSR is supported
-            methods.set(i, adapter);
-        }
+        classNode = this.parse(bytes);
+        ClassNode existing = this.classNodes.putIfAbsent(internalName, classNode);
+        return existing == null ? classNode : existing;
+    }
+
+    private ClassNode parse(final byte[] bytes) {
+        ClassReader classReader = new ClassReader(bytes);
+        int parsingOptions = this.parsingOptions;
+        LazyMethodNode.ClassCode classCode = new LazyMethodNode.ClassCode(classReader, parsingOptions);
+        ClassNode classNode = new ClassNode(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(final int access, final String name, final String descriptor, final String signature, final String[] exceptions) {
+                LazyMethodNode method = new LazyMethodNode(classCode, access, name, descriptor, signature, exceptions);
+                this.methods.add(method);
+                return method;
+            }
+        };
+        classReader.accept(classNode, parsingOptions | ClassReader.SKIP_CODE);
         return classNode;
     }
 
@@ -1,23 +1,49 @@
 package net.lenni0451.minijvm;
 
+import net.lenni0451.minijvm.execution.LinkedMethod;
 import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.utils.ExecutorStack;
 import org.objectweb.asm.tree.MethodNode;
 
-import java.util.ArrayList;
-import java.util.List;
+import javax.annotation.Nullable;
+import java.util.Arrays;
 
 /**
  * This class is used to manage the current state of the executor.<br>
- * This is the equivalent of the Thread in the JVM.
+ * This is the equivalent of the Thread in the JVM.<br>
+ * The stack frames of all guest methods are kept in a contiguous frame stack, interpreted methods calling each other
+ * do not use the stack of the host thread.<br>
+ * Frames and their {@link ExecutorStack}s are reused when a method is invoked at the same depth again,
+ * so calls and returns do not allocate once the frame stack has grown large enough.
  */
 public class ExecutionContext {
 
+    /**
+     * The default maximum amount of stack frames before a {@link StackOverflowError} is thrown.
+     */
+    public static final int DEFAULT_MAX_STACK_DEPTH = 8192;
+    /**
+     * The amount of additional stack frames which can be used to create the {@link StackOverflowError}.
+     */
+    private static final int RESERVED_STACK_DEPTH = 256;
+    /**
+     * The maximum amount of compiled methods which can be nested on the stack of the host thread.<br>
+     * Compiled methods call each other recursively, deeper calls are executed by the interpreter instead.
+     * This bounds the host stack used by compiled code, so deep guest recursion still fits into small host thread stacks (tested with 256k).
+     */
+    private static final int MAX_COMPILED_DEPTH = 64;
+
     private final ExecutionManager executionManager;
-    private final List<StackFrame> stackFrames;
+    private StackFrame[] stackFrames;
+    private int stackDepth;
+    private int maxStackDepth;
+    private boolean useReservedStack;
+    private int compiledDepth;
 
     public ExecutionContext(final ExecutionManager executionManager) {
         this.executionManager = executionManager;
-        this.stackFrames = new ArrayList<>();
+        this.stackFrames = new StackFrame[16];
+        this.maxStackDepth = DEFAULT_MAX_STACK_DEPTH;
     }
 
     public ExecutionManager getExecutionManager() {
@@ -25,28 +51,123 @@ public class ExecutionContext {
     }
 
     public StackFrame getCurrentStackFrame() {
-        return this.stackFrames.get(this.stackFrames.size() - 1);
+        return this.stackFrames[this.stackDepth - 1];
+    }
+
+    /**
+     * Get the frame which invoked the current frame.
+     *
+     * @return The calling frame
+     */
+    public StackFrame getCallerStackFrame() {
+        return this.stackFrames[this.stackDepth - 2];
     }
 
+    /**
+     * Get a snapshot of all stack frames.<br>
+     * The frames are copied since they are reused for later invocations.
+     *
+     * @return The stack frames from the bottom to the top of the stack
+     */
     public StackFrame[] getStackFrames() {
-        return this.stackFrames.toArray(new StackFrame[0]);
+        StackFrame[] stackFrames = new StackFrame[this.stackDepth];
+        for (int i = 0; i < stackFrames.length; i++) {
+            StackFrame stackFrame = this.stackFrames[i];
+            stackFrames[i] = new StackFrame(stackFrame.executorClass, stackFrame.methodNode, stackFrame.lineNumber);
+        }
+        return stackFrames;
+    }
+
+    /**
+     * @return The amount of stack frames currently on the stack
+     */
+    public int getStackDepth() {
+        return this.stackDepth;
+    }
+
+    public int getMaxStackDepth() {
+        return this.maxStackDepth;
+    }
+
+    /**
+     * Set the maximum amount of stack frames.<br>
+     * Invoking a method when the stack is full throws a {@link StackOverflowError} in the guest code.
+     *
+     * @param maxStackDepth The maximum stack depth
+     */
+    public void setMaxStackDepth(final int maxStackDepth) {
+        if (maxStackDepth <= 0) throw new IllegalArgumentException("The maximum stack depth must be positive");
+        this.maxStackDepth = maxStackDepth;
+    }
+
+    /**
+     * @return If another stack frame can be pushed without exceeding the maximum stack depth
+     */
+    public boolean canPushStackFrame() {
+        return this.stackDepth < (this.useReservedStack ? this.maxStackDepth + RESERVED_STACK_DEPTH : this.maxStackDepth);
+    }
+
+    /**
+     * Allow using the reserved stack frames.<br>
+     * This is required to create the {@link StackOverflowError} when the stack is full.
+     *
+     * @param useReservedStack If the reserved stack frames can be used
+     * @return If the reserved stack frames could be used before
+     */
+    public boolean setUseReservedStack(final boolean useReservedStack) {
+        boolean previous = this.useReservedStack;
+        this.useReservedStack = useReservedStack;
+        return previous;
+    }
+
+    /**
+     * Enter a compiled method.<br>
+     * Every successful call has to be followed by a call to {@link #exitCompiledCode()}.
+     *
+     * @return If the compiled method can be executed without exceeding the maximum nesting depth
+     */
+    public boolean enterCompiledCode() {
+        if (this.compiledDepth >= MAX_COMPILED_DEPTH) return false;
+        this.compiledDepth++;
+        return true;
+    }
+
+    public void exitCompiledCode() {
+        this.compiledDepth--;
     }
 
     public StackFrame pushStackFrame(final ExecutorClass executorClass, final MethodNode methodNode, final int lineNumber) {
-        StackFrame stackFrame = new StackFrame(executorClass, methodNode, lineNumber);
-        this.stackFrames.add(stackFrame);
+        if (this.stackDepth == this.stackFrames.length) this.stackFrames = Arrays.copyOf(this.stackFrames, this.stackFrames.length * 2);
+        StackFrame stackFrame = this.stackFrames[this.stackDepth];
+        if (stackFrame == null) {
+            stackFrame = new StackFrame(executorClass, methodNode, lineNumber);
+            this.stackFrames[this.stackDepth] = stackFrame;
+        } else {
+            stackFrame.reset(executorClass, methodNode, lineNumber);
+        }
+        this.stackDepth++;
         return stackFrame;
     }
 
-    public StackFrame popStackFrame() {
-        return this.stackFrames.remove(this.stackFrames.size() - 1);
+    /**
+     * Pop the current stack frame.<br>
+     * The frame is kept for later invocations and must not be used after this call.
+     */
+    public void popStackFrame() {
+        this.stackFrames[--this.stackDepth].release();
     }
 
-
     public static class StackFrame {
-        private final ExecutorClass executorClass;
-        private final MethodNode methodNode;
+        private ExecutorClass executorClass;
+        private MethodNode methodNode;
         private int lineNumber;
+        @Nullable
+        private LinkedMethod linkedMethod;
+        @Nullable
+        private ExecutorStack stack;
+        @Nullable
+        private ExecutorStack pooledStack;
+        private int pc;
 
         public StackFrame(final ExecutorClass executorClass, final MethodNode methodNode, final int lineNumber) {
             this.executorClass = executorClass;
@@ -54,6 +175,21 @@ public class ExecutionContext {
             this.lineNumber = lineNumber;
         }
 
+        private void reset(final ExecutorClass executorClass, final MethodNode methodNode, final int lineNumber) {
+            this.executorClass = executorClass;
+            this.methodNode = methodNode;
+            this.lineNumber = lineNumber;
+            this.pc = 0;
+        }
+
+        private void release() {
+            if (this.stack != null) {
+                this.stack.release();
+                this.stack = null;
+            }
+            this.linkedMethod = null;
+        }
+
         public ExecutorClass getExecutorClass() {
             return this.executorClass;
         }
@@ -70,6 +206,60 @@ public class ExecutionContext {
             this.lineNumber = lineNumber;
         }
 
+        /**
+         * @return The linked method if this frame is executed by the interpreter
+         */
+        @Nullable
+        public LinkedMethod getLinkedMethod() {
+            return this.linkedMethod;
+        }
+
+        /**
+         * @return The local variables and operand stack if this frame is executed by the interpreter
+         */
+        @Nullable
+        public ExecutorStack getStack() {
+            return this.stack;
+        }
+
+        /**
+         * Set the state of the interpreter for this frame.
+         *
+         * @param linkedMethod The method executed in this frame
+         * @param stack        The local variables and operand stack
+         */
+        public void setInterpreterState(final LinkedMethod linkedMethod, final ExecutorStack stack) {
+            this.linkedMethod = linkedMethod;
+            this.stack = stack;
+        }
+
+        /**
+         * Get an empty {@link ExecutorStack} for executing the given method in this frame.<br>
+         * The stack is reused by all frames pushed at the same depth and only reallocated if it is too small.
+         *
+         * @param context      The execution context
+         * @param linkedMethod The method which is executed in this frame
+         * @return The stack
+         */
+        public ExecutorStack prepareStack(final ExecutionContext context, final LinkedMethod linkedMethod) {
+            //The frame has to fit the linked code, which can differ from the original method after optimization
+            MethodNode method = linkedMethod.getBody();
+            if (this.pooledStack == null) this.pooledStack = new ExecutorStack(context, method.maxLocals, method.maxStack);
+            this.pooledStack.reset(method.maxLocals, method.maxStack, linkedMethod.isVerified());
+            return this.pooledStack;
+        }
+
+        /**
+         * @return The index of the instruction which is currently executed in this frame
+         */
+        public int getPc() {
+            return this.pc;
+        }
+
+        public void setPc(final int pc) {
+            this.pc = pc;
+        }
+
         public boolean isNativeMethod() {
             return this.lineNumber == -2;
         }
@@ -4,12 +4,14 @@ import lombok.SneakyThrows;
 import net.lenni0451.commons.asm.Modifiers;
 import net.lenni0451.commons.asm.provider.ClassProvider;
 import net.lenni0451.minijvm.exception.ExecutorException;
+import net.lenni0451.minijvm.execution.ExecutionListener;
 import net.lenni0451.minijvm.execution.InvokeDynamicCache;
 import net.lenni0451.minijvm.execution.JVMMethodExecutor;
 import net.lenni0451.minijvm.execution.MethodExecutor;
 import net.lenni0451.minijvm.execution.natives.*;
 import net.lenni0451.minijvm.object.ExecutorClass;
 import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.object.HeapCopier;
 import net.lenni0451.minijvm.object.types.ArrayObject;
 import net.lenni0451.minijvm.object.types.ClassObject;
 import net.lenni0451.minijvm.stack.*;
@@ -21,24 +23,46 @@ import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.MethodNode;
 
-import java.util.HashMap;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.IntFunction;
+import java.util.function.Supplier;
 
 /**
- * This class is used to manage the classes and fields that are loaded by the executor.
+ * This class is used to manage the classes and fields that are loaded by the executor.<br>
+ * Classes and class instances can be loaded from multiple threads at the same time.
+ * Already loaded classes are returned without locking, threads loading the same class wait for the thread which loads it first.<br>
+ * A manager which has already loaded and initialized classes can be {@link #fork() forked} to get independent managers without initializing the classes again.
  */
 public class ExecutionManager {
 
-    public static final boolean DEBUG = true;
+    /**
+     * The key of the default method executor, {@link ConcurrentHashMap} does not allow {@code null} keys.
+     */
+    private static final String DEFAULT_EXECUTOR = "";
 
     private final ClassPool classPool;
     private final Map<Type, ExecutorClass> loadedClasses;
+    private final Map<Type, PendingLoad<ExecutorClass>> loadingClasses;
     private final Map<ExecutorClass, ExecutorObject> classInstances;
+    private final Map<ExecutorClass, PendingLoad<ExecutorObject>> loadingClassInstances;
     private final Map<String, MethodExecutor> methodExecutors;
+    private final List<Consumer<ExecutionManager>> registrations;
+    private int registrationDepth;
     private final MemoryStorage memoryStorage;
     private final InvokeDynamicCache invokeDynamicCache;
+    @Nullable
+    private ExecutionListener executionListener;
+    private volatile int methodExecutorVersion;
+    private volatile boolean verifyMethods;
+    private volatile boolean optimizeMethods;
+    private volatile boolean jitEnabled;
 
     public ExecutionManager(final ClassProvider classProvider) {
         this(new ClassPool(classProvider));
@@ -46,9 +70,12 @@ public class ExecutionManager {
 
     public ExecutionManager(final ClassPool classPool) {
         this.classPool = classPool;
-        this.loadedClasses = new HashMap<>();
-        this.classInstances = new HashMap<>();
-        this.methodExecutors = new HashMap<>();
+        this.loadedClasses = new ConcurrentHashMap<>();
+        this.loadingClasses = new ConcurrentHashMap<>();
+        this.classInstances = new ConcurrentHashMap<>();
+        this.loadingClassInstances = new ConcurrentHashMap<>();
+        this.methodExecutors = new ConcurrentHashMap<>();
+        this.registrations = new ArrayList<>();
         this.memoryStorage = new MemoryStorage();
         this.invokeDynamicCache = new InvokeDynamicCache();
 
@@ -78,6 +105,46 @@ public class ExecutionManager {
         this.accept(new StringConcatFactoryNatives());
     }
 
+    private ExecutionManager(final ExecutionManager source) {
+        this.classPool = source.classPool;
+        this.loadedClasses = new ConcurrentHashMap<>();
+        this.loadingClasses = new ConcurrentHashMap<>();
+        this.classInstances = new ConcurrentHashMap<>();
+        this.loadingClassInstances = new ConcurrentHashMap<>();
+        this.methodExecutors = new ConcurrentHashMap<>();
+        this.registrations = new ArrayList<>();
+        this.memoryStorage = source.memoryStorage.copy();
+        this.executionListener = source.executionListener;
+        this.verifyMethods = source.verifyMethods;
+        this.optimizeMethods = source.optimizeMethods;
+        this.jitEnabled = source.jitEnabled;
+
+        HeapCopier copier = new HeapCopier();
+        source.loadedClasses.forEach((type, executorClass) -> this.loadedClasses.put(type, copier.copy(executorClass)));
+        source.classInstances.forEach((executorClass, classInstance) -> this.classInstances.put(copier.copy(executorClass), copier.copy(classInstance)));
+        this.invokeDynamicCache = source.invokeDynamicCache.copy(copier);
+        copier.finish();
+
+        synchronized (source) {
+            for (Consumer<ExecutionManager> registration : source.registrations) this.accept(registration);
+        }
+    }
+
+    /**
+     * Create an independent copy of this manager.<br>
+     * All loaded classes, their static fields and every object reachable from them are copied,
+     * so code executed in the fork never affects this manager and the other way around.
+     * The class pool is shared, methods are linked and compiled again when they are used in the fork.<br>
+     * Method executors are registered again by replaying all consumers passed to {@link #accept(Consumer)}.<br>
+     * No code may be executed in this manager while it is forked. To start many isolated executions from the same state,
+     * run the bootstrap code once, fork the manager and only execute code in forks of that copy.
+     *
+     * @return The forked manager
+     */
+    public ExecutionManager fork() {
+        return new ExecutionManager(this);
+    }
+
     public MemoryStorage getMemoryStorage() {
         return this.memoryStorage;
     }
@@ -86,16 +153,104 @@ public class ExecutionManager {
         return this.invokeDynamicCache;
     }
 
+    @Nullable
+    public ExecutionListener getExecutionListener() {
+        return this.executionListener;
+    }
+
+    /**
+     * Set the listener which is notified about all execution events.<br>
+     * The listener should be set before any code is executed, running frames may not see the change.
+     *
+     * @param executionListener The listener or {@code null} to disable tracing
+     */
+    public void setExecutionListener(@Nullable final ExecutionListener executionListener) {
+        this.executionListener = executionListener;
+    }
+
+    public boolean isVerifyMethods() {
+        return this.verifyMethods;
+    }
+
+    /**
+     * Verify every method once when it is linked.<br>
+     * Methods which pass the verification are executed without the per instruction type checks,
+     * methods which fail it are still executed with all checks enabled.<br>
+     * This should be set before any code is executed, already linked methods are not affected.
+     *
+     * @param verifyMethods If methods should be verified
+     */
+    public void setVerifyMethods(final boolean verifyMethods) {
+        this.verifyMethods = verifyMethods;
+    }
+
+    public boolean isOptimizeMethods() {
+        return this.optimizeMethods;
+    }
+
+    /**
+     * Optimize the code of every method when it is linked.<br>
+     * Constant conditions, unused computations and unreachable code are removed before the method is executed.
+     * Exceptions and line numbers behave like in the original code.<br>
+     * This should be set before any code is executed, already linked methods are not affected.
+     *
+     * @param optimizeMethods If methods should be optimized
+     * @see net.lenni0451.minijvm.execution.optimizer.PeepholeOptimizer
+     */
+    public void setOptimizeMethods(final boolean optimizeMethods) {
+        this.optimizeMethods = optimizeMethods;
+    }
+
+    public boolean isJitEnabled() {
+        return this.jitEnabled;
+    }
+
+    /**
+     * Compile hot methods to host bytecode.<br>
+     * Methods are compiled once they have been invoked often enough or spent enough iterations in loops.
+     * Compiled methods are not used while an {@link ExecutionListener} is set.
+     *
+     * @param jitEnabled If hot methods should be compiled
+     * @see net.lenni0451.minijvm.execution.jit.JitCompiler
+     */
+    public void setJitEnabled(final boolean jitEnabled) {
+        this.jitEnabled = jitEnabled;
+    }
+
     public ExecutionContext newContext() {
         return new ExecutionContext(this);
     }
 
-    public void accept(final Consumer<ExecutionManager> consumer) {
-        consumer.accept(this);
+    /**
+     * Apply a consumer to this manager, usually to register method executors.<br>
+     * The consumer is applied to every {@link #fork() fork} of this manager again.
+     *
+     * @param consumer The consumer
+     */
+    public synchronized void accept(final Consumer<ExecutionManager> consumer) {
+        if (this.registrationDepth == 0) this.registrations.add(consumer);
+        this.registrationDepth++;
+        try {
+            consumer.accept(this);
+        } finally {
+            this.registrationDepth--;
+        }
     }
 
     public synchronized void registerMethodExecutor(final String classMethodDescriptor, final MethodExecutor methodExecutor) {
-        this.methodExecutors.put(classMethodDescriptor, methodExecutor);
+        if (this.registrationDepth == 0) this.registrations.add(manager -> manager.registerMethodExecutor(classMethodDescriptor, methodExecutor));
+        this.methodExecutors.put(classMethodDescriptor == null ? DEFAULT_EXECUTOR : classMethodDescriptor, methodExecutor);
+        this.methodExecutorVersion++;
+    }
+
+    /**
+     * Get the current version of the registered method executors.<br>
+     * The version changes every time a method executor is registered, so cached bindings can detect that they are outdated.
+     *
+     * @return The current version
+     */
+    public int getMethodExecutorVersion() {
+        return this.methodExecutorVersion;
     }
 
     public MethodExecutor getMethodExecutor(final ExecutionContext context, final String owner, final MethodNode methodNode) {
@@ -104,15 +259,16 @@ public class ExecutionManager {
         if (Modifiers.has(methodNode.access, Opcodes.ACC_NATIVE)) {
             throw new ExecutorException(context, "Native method not implemented: " + owner + "." + methodNode.name + methodNode.desc);
         } else {
-            return this.methodExecutors.get(null);
+            return this.methodExecutors.get(DEFAULT_EXECUTOR);
         }
     }
 
-    @SneakyThrows //TODO: Actually handle if classes can't be loaded
-    public synchronized ExecutorClass loadClass(final ExecutionContext context, final Type type) {
-        ExecutorClass loadedClass = this.loadedClasses.get(type);
-        if (loadedClass != null) return loadedClass;
+    public ExecutorClass loadClass(final ExecutionContext context, final Type type) {
+        return this.getOrLoad(context, this.loadedClasses, this.loadingClasses, type, () -> this.defineClass(context, type));
+    }
 
+    @SneakyThrows //TODO: Actually handle if classes can't be loaded
+    private ExecutorClass defineClass(final ExecutionContext context, final Type type) {
         ClassNode classNode;
         if (type.getSort() >= Type.VOID && type.getSort() <= Type.DOUBLE) {
             classNode = new ClassNode();
@@ -131,14 +287,15 @@ public class ExecutionManager {
             throw new ExecutorException(context, "Unsupported type: " + type.getSort() + " (" + type + ")");
         }
         ExecutorClass executorClass = new ExecutorClass(context, type, classNode);
-        this.loadedClasses.put(type, executorClass);
+        if (this.executionListener != null) this.executionListener.onClassLoad(context, executorClass);
         return executorClass;
     }
 
-    public synchronized ExecutorObject instantiateClass(final ExecutionContext context, final ExecutorClass executorClass) {
-        ExecutorObject instantiatedClass = this.classInstances.get(executorClass);
-        if (instantiatedClass != null) return instantiatedClass;
+    public ExecutorObject instantiateClass(final ExecutionContext context, final ExecutorClass executorClass) {
+        return this.getOrLoad(context, this.classInstances, this.loadingClassInstances, executorClass, () -> this.createClassInstance(context, executorClass));
+    }
 
+    private ExecutorObject createClassInstance(final ExecutionContext context, final ExecutorClass executorClass) {
         ExecutorObject classInstance = new ClassObject(context, executorClass);
         { //Component type
             ExecutorClass.ResolvedField componentTypeField = classInstance.getClazz().findField(context, "componentType", "Ljava/lang/Class;");
@@ -157,10 +314,55 @@ public class ExecutionManager {
                 classInstance.setField(nameField.field(), ExecutorTypeUtils.parse(context, executorClass.getClassNode().name));
             }
         }
-        this.classInstances.put(executorClass, classInstance);
         return classInstance;
     }
 
+    /**
+     * Get a value from a table of loaded values or load it if it is missing.<br>
+     * The first thread requesting a missing value loads it, all other threads requesting the same value wait until it is loaded.
+     * If loading fails, the waiting threads get the same exception and the next request tries to load the value again.
+     *
+     * @param context The execution context
+     * @param loaded  The loaded values
+     * @param loading The values which are currently being loaded
+     * @param key     The key of the value
+     * @param loader  The loader for the value
+     * @param <K>     The type of the key
+     * @param <V>     The type of the value
+     * @return The loaded value
+     */
+    @SneakyThrows
+    private <K, V> V getOrLoad(final ExecutionContext context, final Map<K, V> loaded, final Map<K, PendingLoad<V>> loading, final K key, final Supplier<V> loader) {
+        V value = loaded.get(key);
+        if (value != null) return value;
+
+        PendingLoad<V> pendingLoad = new PendingLoad<>();
+        PendingLoad<V> runningLoad = loading.putIfAbsent(key, pendingLoad);
+        if (runningLoad != null) {
+            if (runningLoad.thread == Thread.currentThread()) throw new ExecutorException(context, "Circular loading of " + key);
+            try {
+                return runningLoad.future.join();
+            } catch (CompletionException e) {
+                throw e.getCause();
+            }
+        }
+        try {
+            //Another thread might have finished loading the value before this load has been registered
+            value = loaded.get(key);
+            if (value == null) {
+                value = loader.get();
+                loaded.put(key, value);
+            }
+            pendingLoad.future.complete(value);
+            return value;
+        } catch (Throwable t) {
+            pendingLoad.future.completeExceptionally(t);
+            throw t;
+        } finally {
+            loading.remove(key, pendingLoad);
+        }
+    }
+
     public ExecutorObject instantiate(final ExecutionContext context, final ExecutorClass executorClass) {
         return new ExecutorObject(context, executorClass);
     }
@@ -194,4 +396,9 @@ public class ExecutionManager {
         return new ArrayObject(context, executorClass, elements);
     }
 
+    private static class PendingLoad<T> {
+        private final Thread thread = Thread.currentThread();
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+    }
+
 }
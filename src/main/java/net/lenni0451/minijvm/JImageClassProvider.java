@@ -0,0 +1,252 @@
+package net.lenni0451.minijvm;
+
+import net.lenni0451.commons.asm.provider.ClassProvider;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static net.lenni0451.commons.asm.ASMUtils.slash;
+
+/**
+ * A {@link ClassProvider} which reads the classes of a JDK directly from its {@code lib/modules} image file.<br>
+ * This allows executing code with the class library of another JDK than the one running the executor.
+ * The image file is memory mapped and resources are located with the hash table of the image,
+ * so only the requested classes are read and only compressed classes are decompressed.<br>
+ * The module of a class is looked up by its package in an index which is built when the image is opened.
+ */
+public class JImageClassProvider implements ClassProvider {
+
+    private static final int MAGIC = 0xCAFEDADA;
+    private static final int MAJOR_VERSION = 1;
+    private static final int HEADER_SIZE = 7 * 4;
+    private static final int HASH_MULTIPLIER = 0x01000193;
+
+    private static final int ATTRIBUTE_END = 0;
+    private static final int ATTRIBUTE_MODULE = 1;
+    private static final int ATTRIBUTE_PARENT = 2;
+    private static final int ATTRIBUTE_BASE = 3;
+    private static final int ATTRIBUTE_EXTENSION = 4;
+    private static final int ATTRIBUTE_OFFSET = 5;
+    private static final int ATTRIBUTE_COMPRESSED = 6;
+    private static final int ATTRIBUTE_UNCOMPRESSED = 7;
+    private static final int ATTRIBUTE_COUNT = 8;
+
+    private static final int COMPRESSED_MAGIC = 0xCAFEFAFA;
+    private static final int COMPRESSED_HEADER_SIZE = 4 + 8 + 8 + 4 + 4 + 1;
+
+    /**
+     * Open the image file of a JDK.
+     *
+     * @param javaHome The home directory of the JDK
+     * @return The opened image
+     * @throws IOException If the image file could not be read
+     */
+    public static JImageClassProvider openJavaHome(final Path javaHome) throws IOException {
+        return open(javaHome.resolve("lib").resolve("modules"));
+    }
+
+    /**
+     * Open an image file.
+     *
+     * @param file The image file
+     * @return The opened image
+     * @throws IOException If the image file could not be read or is not a supported image
+     */
+    public static JImageClassProvider open(final Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        //The image is written in the byte order of the platform which created it
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC) buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.getInt(0) != MAGIC) throw new IOException("Not a jimage file: " + file);
+        int version = buffer.getInt(4);
+        if (version >>> 16 != MAJOR_VERSION) throw new IOException("Unsupported jimage version " + (version >>> 16) + "." + (version & 0xFFFF) + ": " + file);
+        return new JImageClassProvider(buffer);
+    }
+
+    private static int hash(final byte[] name, final int seed) {
+        int hash = seed;
+        for (byte b : name) hash = (hash * HASH_MULTIPLIER) ^ (b & 0xFF);
+        return hash & 0x7FFFFFFF;
+    }
+
+
+    private final ByteBuffer buffer;
+    private final IntBuffer redirects;
+    private final IntBuffer offsets;
+    private final int locationsOffset;
+    private final int stringsOffset;
+    private final int contentOffset;
+    private final Map<String, String> packages;
+
+    private JImageClassProvider(final ByteBuffer buffer) {
+        int tableLength = buffer.getInt(16);
+        int locationsSize = buffer.getInt(20);
+        int stringsSize = buffer.getInt(24);
+        this.buffer = buffer;
+        this.redirects = buffer.slice(HEADER_SIZE, tableLength * 4).order(buffer.order()).asIntBuffer();
+        this.offsets = buffer.slice(HEADER_SIZE + tableLength * 4, tableLength * 4).order(buffer.order()).asIntBuffer();
+        this.locationsOffset = HEADER_SIZE + tableLength * 8;
+        this.stringsOffset = this.locationsOffset + locationsSize;
+        this.contentOffset = this.stringsOffset + stringsSize;
+        this.packages = this.indexPackages();
+    }
+
+    /**
+     * Map every package containing classes to the module it belongs to.<br>
+     * The strings of the image are deduplicated, so each distinct string is only decoded once.
+     */
+    private Map<String, String> indexPackages() {
+        Map<Integer, String> strings = new HashMap<>();
+        Map<String, String> packages = new HashMap<>();
+        for (int i = 0; i < this.offsets.limit(); i++) {
+            long[] attributes = this.readLocation(this.offsets.get(i));
+            int extension = (int) attributes[ATTRIBUTE_EXTENSION];
+            if (!"class".equals(strings.computeIfAbsent(extension, this::readString))) continue;
+            String module = strings.computeIfAbsent((int) attributes[ATTRIBUTE_MODULE], this::readString);
+            String parent = strings.computeIfAbsent((int) attributes[ATTRIBUTE_PARENT], this::readString);
+            packages.putIfAbsent(parent, module);
+        }
+        return packages;
+    }
+
+    /**
+     * @return All packages of the image mapped to the module they belong to
+     */
+    public Map<String, String> getPackages() {
+        return Collections.unmodifiableMap(this.packages);
+    }
+
+    @Override
+    public byte[] getClass(final String name) throws ClassNotFoundException {
+        String internalName = slash(name);
+        int packageEnd = internalName.lastIndexOf('/');
+        String module = this.packages.get(packageEnd < 0 ? "" : internalName.substring(0, packageEnd));
+        if (module == null) throw new ClassNotFoundException(name);
+        ByteBuffer resource = this.getResource("/" + module + "/" + internalName + ".class");
+        if (resource == null) throw new ClassNotFoundException(name);
+        byte[] bytes = new byte[resource.remaining()];
+        resource.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Get the content of a resource in the image.<br>
+     * Uncompressed resources are returned as a read only view of the mapped image file without copying them.
+     *
+     * @param name The full name of the resource (e.g. {@code /java.base/java/lang/Object.class})
+     * @return The content of the resource or {@code null} if the resource does not exist
+     */
+    @Nullable
+    public ByteBuffer getResource(final String name) {
+        int index = this.findLocation(name);
+        if (index < 0) return null;
+        long[] attributes = this.readLocation(this.offsets.get(index));
+        if (!name.equals(this.getName(attributes))) return null; //The hash table only contains the hash of the name
+
+        int offset = Math.toIntExact(this.contentOffset + attributes[ATTRIBUTE_OFFSET]);
+        int compressedSize = (int) attributes[ATTRIBUTE_COMPRESSED];
+        int uncompressedSize = (int) attributes[ATTRIBUTE_UNCOMPRESSED];
+        if (compressedSize == 0) return this.buffer.slice(offset, uncompressedSize).asReadOnlyBuffer();
+        byte[] compressed = new byte[compressedSize];
+        this.buffer.get(offset, compressed);
+        return ByteBuffer.wrap(this.decompress(compressed));
+    }
+
+    private int findLocation(final String name) {
+        int length = this.redirects.limit();
+        if (length == 0) return -1;
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int redirect = this.redirects.get(hash(bytes, HASH_MULTIPLIER) % length);
+        if (redirect < 0) return -1 - redirect;
+        else if (redirect > 0) return hash(bytes, redirect) % length;
+        else return -1;
+    }
+
+    private long[] readLocation(final int offset) {
+        long[] attributes = new long[ATTRIBUTE_COUNT];
+        int position = this.locationsOffset + offset;
+        while (true) {
+            int header = this.buffer.get(position++) & 0xFF;
+            int kind = header >>> 3;
+            if (kind == ATTRIBUTE_END) break;
+            if (kind >= ATTRIBUTE_COUNT) throw new IllegalStateException("Invalid jimage location attribute: " + kind);
+            long value = 0;
+            for (int i = (header & 7) + 1; i > 0; i--) value = (value << 8) | (this.buffer.get(position++) & 0xFF);
+            attributes[kind] = value;
+        }
+        return attributes;
+    }
+
+    private String getName(final long[] attributes) {
+        StringBuilder name = new StringBuilder();
+        String module = this.readString((int) attributes[ATTRIBUTE_MODULE]);
+        if (!module.isEmpty()) name.append('/').append(module).append('/');
+        String parent = this.readString((int) attributes[ATTRIBUTE_PARENT]);
+        if (!parent.isEmpty()) name.append(parent).append('/');
+        name.append(this.readString((int) attributes[ATTRIBUTE_BASE]));
+        String extension = this.readString((int) attributes[ATTRIBUTE_EXTENSION]);
+        if (!extension.isEmpty()) name.append('.').append(extension);
+        return name.toString();
+    }
+
+    private String readString(final int offset) {
+        int start = this.stringsOffset + offset;
+        int end = start;
+        while (this.buffer.get(end) != 0) end++;
+        byte[] bytes = new byte[end - start];
+        this.buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decompress a resource.<br>
+     * Resources can be compressed multiple times, every compression is prefixed with a header naming the decompressor.
+     * Only zip compressed images are supported.
+     */
+    private byte[] decompress(final byte[] resource) {
+        byte[] data = resource;
+        while (data.length >= COMPRESSED_HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.wrap(data).order(this.buffer.order());
+            if (header.getInt(0) != COMPRESSED_MAGIC) break;
+            int compressedSize = Math.toIntExact(header.getLong(4));
+            int uncompressedSize = Math.toIntExact(header.getLong(12));
+            String decompressor = this.readString(header.getInt(20));
+            if (!decompressor.equals("zip")) throw new IllegalStateException("Unsupported jimage compression: " + decompressor);
+
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data, COMPRESSED_HEADER_SIZE, compressedSize);
+                byte[] uncompressed = new byte[uncompressedSize];
+                int length = 0;
+                while (length < uncompressedSize && !inflater.finished()) {
+                    int read = inflater.inflate(uncompressed, length, uncompressedSize - length);
+                    if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                    length += read;
+                }
+                if (length != uncompressedSize) throw new IllegalStateException("Truncated jimage resource");
+                data = uncompressed;
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupted jimage resource", e);
+            } finally {
+                inflater.end();
+            }
+        }
+        return data;
+    }
+
+}
@@ -0,0 +1,105 @@
+package net.lenni0451.minijvm;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.JSRInlinerAdapter;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A method of a class parsed by the {@link ClassPool} whose code is only parsed when it is needed.<br>
+ * Until {@link #materialize()} is called the method has no instructions, exception handlers or local variables.
+ * Subroutines are inlined when the code is parsed.<br>
+ * Method nodes are shared by all managers using the same class pool and their forks. Code which writes to a method node,
+ * like the {@link org.objectweb.asm.tree.analysis.Analyzer} caching the instruction indices, has to synchronize on it.
+ */
+public class LazyMethodNode extends MethodNode {
+
+    private final ClassCode classCode;
+    private final int index;
+    private volatile boolean materialized;
+
+    LazyMethodNode(final ClassCode classCode, final int access, final String name, final String descriptor, final String signature, final String[] exceptions) {
+        super(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+        this.classCode = classCode;
+        this.index = classCode.methods.size();
+        classCode.methods.add(this);
+    }
+
+    /**
+     * @return If the code of this method has been parsed
+     */
+    public boolean isMaterialized() {
+        return this.materialized;
+    }
+
+    /**
+     * Parse the code of this method if it has not been parsed yet.<br>
+     * Other methods of the class may be parsed at the same time (see {@link ClassCode#SINGLE_PARSES}).
+     */
+    public void materialize() {
+        if (this.materialized) return;
+        this.classCode.parse(this);
+    }
+
+    private void setBody(final MethodNode body) {
+        this.instructions = body.instructions;
+        this.tryCatchBlocks = body.tryCatchBlocks;
+        this.localVariables = body.localVariables;
+        this.visibleLocalVariableAnnotations = body.visibleLocalVariableAnnotations;
+        this.invisibleLocalVariableAnnotations = body.invisibleLocalVariableAnnotations;
+        this.maxStack = body.maxStack;
+        this.maxLocals = body.maxLocals;
+        this.materialized = true;
+    }
+
+
+    /**
+     * The unparsed code of all methods of a class.
+     */
+    static class ClassCode {
+
+        /**
+         * The number of methods whose code is parsed on its own.<br>
+         * Parsing a single method still reads the whole class, so after that all remaining methods are parsed in one pass.
+         * Most classes only ever execute a few of their methods, which keeps the code of the others from being parsed.
+         */
+        static final int SINGLE_PARSES = 16;
+
+        private final ClassReader classReader;
+        private final int parsingOptions;
+        private final List<LazyMethodNode> methods = new ArrayList<>();
+        private int parses;
+
+        ClassCode(final ClassReader classReader, final int parsingOptions) {
+            this.classReader = classReader;
+            this.parsingOptions = parsingOptions;
+        }
+
+        private synchronized void parse(final LazyMethodNode method) {
+            if (method.materialized) return;
+            boolean parseAll = ++this.parses > SINGLE_PARSES;
+            MethodNode[] bodies = new MethodNode[this.methods.size()];
+            this.classReader.accept(new ClassVisitor(Opcodes.ASM9) {
+                //The class reader visits the methods in the same order as when the lazy methods were created
+                private int index;
+
+                @Override
+                public MethodVisitor visitMethod(final int access, final String name, final String descriptor, final String signature, final String[] exceptions) {
+                    LazyMethodNode current = ClassCode.this.methods.get(this.index++);
+                    if (current.materialized || (current != method && !parseAll)) return null;
+                    return bodies[current.index] = new JSRInlinerAdapter(null, access, name, descriptor, signature, exceptions);
+                }
+            }, this.parsingOptions);
+            for (int i = 0; i < bodies.length; i++) {
+                if (bodies[i] != null) this.methods.get(i).setBody(bodies[i]);
+            }
+        }
+
+    }
+
+}
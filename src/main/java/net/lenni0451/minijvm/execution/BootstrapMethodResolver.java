@@ -4,6 +4,7 @@ import net.lenni0451.minijvm.ExecutionContext;
 import net.lenni0451.minijvm.ExecutionManager;
 import net.lenni0451.minijvm.object.ExecutorClass;
 import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.object.HeapCopier;
 import net.lenni0451.minijvm.object.types.CallSiteObject;
 import net.lenni0451.minijvm.object.types.MethodHandleObject;
 import net.lenni0451.minijvm.object.types.MethodTypeObject;
@@ -160,6 +161,16 @@ public class BootstrapMethodResolver {
             this.lookupClass = lookupClass;
         }
 
+        protected LookupObject(final LookupObject source, final HeapCopier copier) {
+            super(source, copier);
+            this.lookupClass = copier.copy(source.lookupClass);
+        }
+
+        @Override
+        public LookupObject copy(final HeapCopier copier) {
+            return new LookupObject(this, copier);
+        }
+
         public ExecutorClass getLookupClass() {
             return this.lookupClass;
         }
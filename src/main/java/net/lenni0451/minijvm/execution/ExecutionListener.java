@@ -0,0 +1,84 @@
+package net.lenni0451.minijvm.execution;
+
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.stack.StackElement;
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.MethodNode;
+
+import javax.annotation.Nullable;
+
+/**
+ * A listener for tracing the execution of an {@link net.lenni0451.minijvm.ExecutionManager}.<br>
+ * All methods are no-ops by default so only the required events have to be implemented.<br>
+ * The listener is only checked once per event, so when no listener is set tracing has no measurable cost.
+ */
+public interface ExecutionListener {
+
+    /**
+     * Called before an instruction of a JVM method is executed.
+     *
+     * @param context The execution context
+     * @param method  The method containing the instruction
+     * @param index   The index of the instruction in the linked method
+     * @param stack   The current frame
+     */
+    default void onInstruction(final ExecutionContext context, final LinkedMethod method, final int index, final ExecutorStack stack) {
+    }
+
+    /**
+     * Called before a method is invoked.
+     *
+     * @param context   The execution context
+     * @param owner     The owner of the method
+     * @param method    The invoked method
+     * @param instance  The instance the method is invoked on or {@code null} for static methods
+     * @param arguments The arguments passed to the method
+     */
+    default void onMethodEnter(final ExecutionContext context, final ExecutorClass owner, final MethodNode method, @Nullable final ExecutorObject instance, final StackElement[] arguments) {
+    }
+
+    /**
+     * Called after a method has returned or thrown an exception.
+     *
+     * @param context The execution context
+     * @param owner   The owner of the method
+     * @param method  The invoked method
+     * @param result  The result of the invocation
+     */
+    default void onMethodExit(final ExecutionContext context, final ExecutorClass owner, final MethodNode method, final ExecutionResult result) {
+    }
+
+    /**
+     * Called after a class has been loaded.
+     *
+     * @param context The execution context
+     * @param clazz   The loaded class
+     */
+    default void onClassLoad(final ExecutionContext context, final ExecutorClass clazz) {
+    }
+
+    /**
+     * Called before the executor creates a new exception (e.g. a {@link NullPointerException} for a null access).
+     *
+     * @param context       The execution context
+     * @param exceptionType The type of the exception
+     * @param message       The message of the exception
+     */
+    default void onExceptionCreated(final ExecutionContext context, final Type exceptionType, @Nullable final String message) {
+    }
+
+    /**
+     * Called when an instruction of a JVM method threw an exception, before searching for a matching handler.
+     *
+     * @param context   The execution context
+     * @param method    The method containing the instruction
+     * @param index     The index of the instruction in the linked method
+     * @param exception The thrown exception
+     */
+    default void onExceptionThrown(final ExecutionContext context, final LinkedMethod method, final int index, final ExecutorObject exception) {
+    }
+
+}
@@ -5,8 +5,10 @@ import net.lenni0451.minijvm.stack.StackElement;
 
 public class ExecutionResult {
 
+    private static final ExecutionResult VOID = new ExecutionResult(null, null);
+
     public static ExecutionResult voidResult() {
-        return new ExecutionResult(null, null);
+        return VOID;
     }
 
     public static ExecutionResult returnValue(final StackElement returnValue) {
@@ -2,39 +2,172 @@ package net.lenni0451.minijvm.execution;
 
 import net.lenni0451.commons.asm.Modifiers;
 import net.lenni0451.minijvm.ExecutionContext;
-import net.lenni0451.minijvm.ExecutionManager;
 import net.lenni0451.minijvm.exception.ExecutorException;
+import net.lenni0451.minijvm.execution.jit.CompiledMethod;
 import net.lenni0451.minijvm.object.ExecutorClass;
 import net.lenni0451.minijvm.object.ExecutorObject;
 import net.lenni0451.minijvm.stack.StackElement;
+import net.lenni0451.minijvm.utils.ExceptionUtils;
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import net.lenni0451.minijvm.utils.ExecutorTypeUtils;
+import net.lenni0451.minijvm.utils.MethodDescriptor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.MethodNode;
 
+import javax.annotation.Nullable;
+
 public class Executor {
 
+    private static final JVMMethodExecutor INTERPRETER = new JVMMethodExecutor();
+
     public static ExecutionResult execute(final ExecutionContext context, final ExecutorClass currentClass, final MethodNode currentMethod, final ExecutorObject instance, final StackElement... arguments) {
-        if (ExecutionManager.DEBUG) {
-            System.out.println("Invoking method: " + currentClass.getClassNode().name + " " + currentMethod.name + currentMethod.desc);
-        }
+        ExecutionListener listener = context.getExecutionManager().getExecutionListener();
+        if (listener != null) listener.onMethodEnter(context, currentClass, currentMethod, instance, arguments);
         boolean isStatic = Modifiers.has(currentMethod.access, Opcodes.ACC_STATIC);
         if (isStatic && instance != null) {
             throw new IllegalStateException("Tried to execute a static method with an instance");
         } else if (!isStatic && instance == null) {
             throw new IllegalStateException("Tried to execute an instance method without an instance");
         }
+        if (!context.canPushStackFrame()) {
+            ExecutionResult result = ExceptionUtils.newStackOverflowError(context);
+            if (listener != null) listener.onMethodExit(context, currentClass, currentMethod, result);
+            return result;
+        }
 
         context.pushStackFrame(currentClass, currentMethod, Modifiers.has(currentMethod.access, Opcodes.ACC_NATIVE) ? -2 : -1);
-        MethodExecutor methodExecutor = context.getExecutionManager().getMethodExecutor(context, currentClass.getClassNode().name, currentMethod);
+        ExecutorClass.ResolvedMethod resolvedMethod = currentClass.getDeclaredMethod(currentMethod);
+        MethodExecutor methodExecutor;
+        MethodDescriptor descriptor;
+        if (resolvedMethod != null) {
+            methodExecutor = resolvedMethod.getMethodExecutor(context);
+            descriptor = resolvedMethod.getDescriptor();
+        } else {
+            methodExecutor = context.getExecutionManager().getMethodExecutor(context, currentClass.getClassNode().name, currentMethod);
+            descriptor = MethodDescriptor.of(currentMethod.desc);
+        }
+        ExecutionResult result = methodExecutor.execute(context, currentClass, currentMethod, instance, arguments);
+        return finish(context, currentClass, currentMethod, descriptor, result, listener);
+    }
+
+    /**
+     * Invoke a method with the receiver and arguments taken from the operand stack of the calling frame.<br>
+     * Interpreted methods are not executed here. A new stack frame is pushed with the stack slots moved directly into
+     * its local variables and the calling interpreter loop continues in that frame.<br>
+     * Methods which have been compiled by the JIT are executed immediately in the new stack frame,
+     * their return value is pushed onto the stack of the caller and a void result is returned.<br>
+     * Other method executors and executions with a listener receive the arguments as {@link StackElement}s and are executed immediately.<br>
+     * The caller has to make sure that the receiver is not {@code null} and the method matches the instruction.
+     *
+     * @param context        The execution context
+     * @param resolvedMethod The method to invoke
+     * @param stack          The frame of the caller
+     * @return The result of the invocation or {@code null} if a new interpreter frame has been entered
+     */
+    @Nullable
+    public static ExecutionResult invoke(final ExecutionContext context, final ExecutorClass.ResolvedMethod resolvedMethod, final ExecutorStack stack) {
+        ExecutorClass currentClass = resolvedMethod.owner();
+        MethodNode currentMethod = resolvedMethod.method();
+        ExecutionListener listener = context.getExecutionManager().getExecutionListener();
+        if (listener != null) {
+            StackElement[] arguments = popArguments(context, stack, resolvedMethod.getDescriptor());
+            ExecutorObject instance = Modifiers.has(currentMethod.access, Opcodes.ACC_STATIC) ? null : stack.popReference();
+            return execute(context, currentClass, currentMethod, instance, arguments);
+        }
+        if (!context.canPushStackFrame()) return ExceptionUtils.newStackOverflowError(context);
+
+        ExecutionContext.StackFrame stackFrame = context.pushStackFrame(currentClass, currentMethod, Modifiers.has(currentMethod.access, Opcodes.ACC_NATIVE) ? -2 : -1);
+        MethodExecutor methodExecutor = resolvedMethod.getMethodExecutor(context);
+        if (methodExecutor instanceof JVMMethodExecutor) {
+            LinkedMethod linkedMethod = currentClass.getLinkedMethod(context, currentMethod);
+            ExecutorStack frame = stackFrame.prepareStack(context, linkedMethod);
+            stack.moveArguments(frame, linkedMethod.parameterTypes, linkedMethod.parameterSlots);
+            stackFrame.setInterpreterState(linkedMethod, frame);
+            CompiledMethod compiledMethod = linkedMethod.getCompiledMethod(context);
+            if (compiledMethod != null && context.enterCompiledCode()) {
+                ExecutionResult result;
+                try {
+                    result = compiledMethod.execute(context, frame);
+                } finally {
+                    context.exitCompiledCode();
+                }
+                if (result.hasException()) return finish(context, currentClass, currentMethod, linkedMethod.getDescriptor(), result, null);
+                //The return value is moved like in the interpreter, without creating a stack element
+                byte returnKind = linkedMethod.getDescriptor().getReturnKind();
+                if (returnKind != ExecutorStack.EMPTY) frame.moveReturnValue(stack, returnKind);
+                context.popStackFrame();
+                return ExecutionResult.voidResult();
+            }
+            return null;
+        }
+        StackElement[] arguments = popArguments(context, stack, resolvedMethod.getDescriptor());
+        ExecutorObject instance = Modifiers.has(currentMethod.access, Opcodes.ACC_STATIC) ? null : stack.popReference();
         ExecutionResult result = methodExecutor.execute(context, currentClass, currentMethod, instance, arguments);
-        if (!currentMethod.desc.endsWith("V") && !result.hasException() && !result.hasReturnValue()) {
+        return finish(context, currentClass, currentMethod, resolvedMethod.getDescriptor(), result, null);
+    }
+
+    /**
+     * Execute the interpreter frame entered by {@link #invoke} until it returns.<br>
+     * This is used by callers which can not continue in the new frame themselves, like compiled methods.
+     * The return value is pushed onto the stack of the caller.
+     *
+     * @param context The execution context
+     * @param stack   The frame of the caller
+     * @return {@code null} if the method returned normally or the exception result that should be thrown
+     */
+    @Nullable
+    public static ExecutionResult completeInvoke(final ExecutionContext context, final ExecutorStack stack) {
+        ExecutionContext.StackFrame stackFrame = context.getCurrentStackFrame();
+        LinkedMethod linkedMethod = stackFrame.getLinkedMethod();
+        MethodDescriptor descriptor = linkedMethod.getDescriptor();
+        ExecutionResult result = INTERPRETER.execute(context, linkedMethod, stackFrame.getStack());
+        finish(context, linkedMethod.getOwner(), linkedMethod.getMethod(), descriptor, result, null);
+        if (result.hasException()) return result;
+        if (result.hasReturnValue()) {
+            ExecutorTypeUtils.verifyType(context, result.getReturnValue(), descriptor.getReturnStackType());
+            stack.pushSized(result.getReturnValue());
+        }
+        return null;
+    }
+
+    /**
+     * Pop the arguments of a method from the operand stack and verify their types.
+     *
+     * @param context    The execution context
+     * @param stack      The operand stack
+     * @param descriptor The descriptor of the method
+     * @return The arguments in the order of the descriptor
+     */
+    public static StackElement[] popArguments(final ExecutionContext context, final ExecutorStack stack, final MethodDescriptor descriptor) {
+        Class<? extends StackElement>[] argumentStackTypes = descriptor.getArgumentStackTypes();
+        StackElement[] arguments = new StackElement[argumentStackTypes.length];
+        for (int i = argumentStackTypes.length - 1; i >= 0; i--) {
+            StackElement argument = stack.popSized();
+            ExecutorTypeUtils.verifyType(context, argument, argumentStackTypes[i]);
+            arguments[i] = argument;
+        }
+        return arguments;
+    }
+
+    /**
+     * Verify the result of a method and pop its stack frame.
+     *
+     * @param context       The execution context
+     * @param currentClass  The owner of the method
+     * @param currentMethod The method
+     * @param descriptor    The descriptor of the method
+     * @param result        The result of the method
+     * @param listener      The listener to notify or {@code null}
+     * @return The result
+     */
+    static ExecutionResult finish(final ExecutionContext context, final ExecutorClass currentClass, final MethodNode currentMethod, final MethodDescriptor descriptor, final ExecutionResult result, @Nullable final ExecutionListener listener) {
+        if (!descriptor.isVoid() && !result.hasException() && !result.hasReturnValue()) {
             throw new ExecutorException(context, "Method " + currentClass.getClassNode().name + "." + currentMethod.name + currentMethod.desc + " did not return a value");
-        } else if (currentMethod.desc.endsWith("V") && result.hasReturnValue()) {
+        } else if (descriptor.isVoid() && result.hasReturnValue()) {
             throw new ExecutorException(context, "Void method " + currentClass.getClassNode().name + "." + currentMethod.name + currentMethod.desc + " returned a value");
         }
         context.popStackFrame();
-        if (ExecutionManager.DEBUG) {
-            System.out.println("----- Finished " + currentClass.getClassNode().name + " " + currentMethod.name + currentMethod.desc + " execution with result " + result + " -----");
-        }
+        if (listener != null) listener.onMethodExit(context, currentClass, currentMethod, result);
         return result;
     }
 
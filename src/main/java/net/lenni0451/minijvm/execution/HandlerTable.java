@@ -0,0 +1,65 @@
+package net.lenni0451.minijvm.execution;
+
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import org.objectweb.asm.Type;
+
+import javax.annotation.Nullable;
+
+/**
+ * The exception handlers of a linked method.<br>
+ * All ranges and handler targets are instruction indices in the {@link LinkedMethod}, a handler covers the range {@code [start, end)}.<br>
+ * The catch classes are loaded when the handler is checked for the first time and are cached afterward.
+ */
+public class HandlerTable {
+
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] handlers;
+    private final String[] catchTypes;
+    private final ExecutorClass[] catchClasses;
+
+    HandlerTable(final int[] starts, final int[] ends, final int[] handlers, final String[] catchTypes) {
+        this.starts = starts;
+        this.ends = ends;
+        this.handlers = handlers;
+        this.catchTypes = catchTypes;
+        this.catchClasses = new ExecutorClass[catchTypes.length];
+    }
+
+    /**
+     * @return The amount of exception handlers
+     */
+    public int size() {
+        return this.handlers.length;
+    }
+
+    /**
+     * Find the first handler covering the given instruction which catches the given exception class.
+     *
+     * @param context        The execution context
+     * @param index          The index of the instruction which threw the exception
+     * @param exceptionClass The class of the thrown exception
+     * @return The instruction index of the handler or {@code -1} if no handler matches
+     */
+    public int findHandler(final ExecutionContext context, final int index, final ExecutorClass exceptionClass) {
+        for (int i = 0; i < this.handlers.length; i++) {
+            if (index < this.starts[i] || index >= this.ends[i]) continue;
+            ExecutorClass catchClass = this.getCatchClass(context, i);
+            if (catchClass == null || exceptionClass.isInstance(context, catchClass)) return this.handlers[i];
+        }
+        return -1;
+    }
+
+    @Nullable
+    private ExecutorClass getCatchClass(final ExecutionContext context, final int handler) {
+        if (this.catchTypes[handler] == null) return null;
+        ExecutorClass catchClass = this.catchClasses[handler];
+        if (catchClass == null) {
+            catchClass = context.getExecutionManager().loadClass(context, Type.getObjectType(this.catchTypes[handler]));
+            this.catchClasses[handler] = catchClass;
+        }
+        return catchClass;
+    }
+
+}
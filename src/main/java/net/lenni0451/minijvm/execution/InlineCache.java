@@ -0,0 +1,102 @@
+package net.lenni0451.minijvm.execution;
+
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.utils.MethodDescriptor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+import javax.annotation.Nullable;
+
+/**
+ * A per call site cache for {@code INVOKEVIRTUAL} and {@code INVOKEINTERFACE} instructions.<br>
+ * The resolved target is cached by the class of the receiver. A call site starts monomorphic, becomes polymorphic
+ * for up to {@link #MAX_ENTRIES} receiver classes and is then marked megamorphic, where every call is resolved again.<br>
+ * Misses are resolved through the method table index of the symbolic owner instead of searching by name and descriptor.<br>
+ * The entries are replaced copy-on-write, so lookups from multiple threads never need to lock.
+ */
+public class InlineCache {
+
+    public static final int MAX_ENTRIES = 4;
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private final MethodInsnNode instruction;
+    private final MethodDescriptor descriptor;
+    @Nullable
+    private volatile Entry[] entries = EMPTY;
+    @Nullable
+    private volatile ResolvedOwner resolvedOwner;
+
+    public InlineCache(final MethodInsnNode instruction) {
+        this.instruction = instruction;
+        this.descriptor = MethodDescriptor.of(instruction.desc);
+    }
+
+    public MethodInsnNode getInstruction() {
+        return this.instruction;
+    }
+
+    public MethodDescriptor getDescriptor() {
+        return this.descriptor;
+    }
+
+    /**
+     * @return If more than {@link #MAX_ENTRIES} receiver classes have been seen at this call site
+     */
+    public boolean isMegamorphic() {
+        return this.entries == null;
+    }
+
+    /**
+     * Get the method which should be invoked for the given receiver class.
+     *
+     * @param context       The execution context
+     * @param receiverClass The class of the receiver
+     * @return The resolved method or {@code null} if the class has no such method
+     */
+    @Nullable
+    public ExecutorClass.ResolvedMethod lookup(final ExecutionContext context, final ExecutorClass receiverClass) {
+        Entry[] entries = this.entries;
+        if (entries != null) {
+            for (Entry entry : entries) {
+                if (entry.receiverClass == receiverClass) return entry.method;
+            }
+        }
+
+        ExecutorClass.ResolvedMethod method = this.resolve(context, receiverClass);
+        //Receivers which are still being initialized by another thread must not be able to skip the initialization through the cache
+        if (method != null && entries != null && receiverClass.isInitialized()) {
+            if (entries.length >= MAX_ENTRIES) {
+                this.entries = null;
+            } else {
+                Entry[] newEntries = new Entry[entries.length + 1];
+                System.arraycopy(entries, 0, newEntries, 0, entries.length);
+                newEntries[entries.length] = new Entry(receiverClass, method);
+                this.entries = newEntries;
+            }
+        }
+        return method;
+    }
+
+    @Nullable
+    private ExecutorClass.ResolvedMethod resolve(final ExecutionContext context, final ExecutorClass receiverClass) {
+        ResolvedOwner owner = this.resolvedOwner;
+        if (owner == null) {
+            ExecutorClass ownerClass = context.getExecutionManager().loadClass(context, Type.getObjectType(this.instruction.owner));
+            owner = new ResolvedOwner(ownerClass, ownerClass.getMethodIndex(this.instruction.name, this.instruction.desc));
+            this.resolvedOwner = owner;
+        }
+        if (owner.index >= 0 && receiverClass.isSubclassOf(owner.ownerClass)) {
+            return receiverClass.findMethod(context, owner.ownerClass, owner.index);
+        } else {
+            return receiverClass.findMethod(context, this.instruction.name, this.instruction.desc);
+        }
+    }
+
+    private record ResolvedOwner(ExecutorClass ownerClass, int index) {
+    }
+
+    private record Entry(ExecutorClass receiverClass, ExecutorClass.ResolvedMethod method) {
+    }
+
+}
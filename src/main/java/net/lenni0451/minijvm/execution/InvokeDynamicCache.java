@@ -1,5 +1,6 @@
 package net.lenni0451.minijvm.execution;
 
+import net.lenni0451.minijvm.object.HeapCopier;
 import net.lenni0451.minijvm.object.types.CallSiteObject;
 
 import java.util.Map;
@@ -64,6 +65,18 @@ public class InvokeDynamicCache {
         return this.cache.size();
     }
 
+    /**
+     * Copy all cached CallSites for another heap.
+     *
+     * @param copier The copier of the heap
+     * @return The copied cache
+     */
+    public InvokeDynamicCache copy(final HeapCopier copier) {
+        InvokeDynamicCache copy = new InvokeDynamicCache();
+        this.cache.forEach((key, callSite) -> copy.cache.put(key, copier.copy(callSite)));
+        return copy;
+    }
+
     /**
      * Key for identifying a unique invokedynamic instruction.
      */
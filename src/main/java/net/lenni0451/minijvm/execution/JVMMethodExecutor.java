@@ -2,119 +2,253 @@ package net.lenni0451.minijvm.execution;
 
 import net.lenni0451.commons.asm.Modifiers;
 import net.lenni0451.minijvm.ExecutionContext;
-import net.lenni0451.minijvm.ExecutionManager;
 import net.lenni0451.minijvm.exception.ExecutorException;
+import net.lenni0451.minijvm.execution.instructions.*;
+import net.lenni0451.minijvm.execution.jit.CompiledMethod;
 import net.lenni0451.minijvm.object.ExecutorClass;
 import net.lenni0451.minijvm.object.ExecutorObject;
-import net.lenni0451.minijvm.object.types.ArrayObject;
-import net.lenni0451.minijvm.object.types.CallSiteObject;
-import net.lenni0451.minijvm.object.types.MethodHandleObject;
 import net.lenni0451.minijvm.stack.*;
-import net.lenni0451.minijvm.utils.ExceptionUtils;
 import net.lenni0451.minijvm.utils.ExecutorStack;
 import net.lenni0451.minijvm.utils.ExecutorTypeUtils;
-import net.lenni0451.minijvm.utils.Types;
+import net.lenni0451.minijvm.utils.MethodDescriptor;
 import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.function.IntFunction;
-import java.util.stream.Collectors;
 
 public class JVMMethodExecutor implements MethodExecutor {
 
+    /**
+     * The slot type of the value returned by the return instructions, starting at {@link Opcodes#IRETURN}.
+     */
+    private static final byte[] RETURN_TYPES = {ExecutorStack.INT, ExecutorStack.LONG, ExecutorStack.FLOAT, ExecutorStack.DOUBLE, ExecutorStack.REFERENCE, ExecutorStack.EMPTY};
+
     @Override
     public ExecutionResult execute(ExecutionContext context, ExecutorClass currentClass, MethodNode currentMethod, ExecutorObject instance, StackElement[] arguments) {
-        ExecutionManager manager = context.getExecutionManager();
         boolean isStatic = Modifiers.has(currentMethod.access, Opcodes.ACC_STATIC);
-        StackElement[] locals = new StackElement[currentMethod.maxLocals];
+        LinkedMethod linkedMethod = currentClass.getLinkedMethod(context, currentMethod);
+        ExecutorStack stack = context.getCurrentStackFrame().prepareStack(context, linkedMethod);
         {
-            if (!isStatic) locals[0] = new StackObject(instance);
+            //Verified methods do not check the types of their locals, so the arguments have to match the descriptor
+            Class<? extends StackElement>[] argumentStackTypes = linkedMethod.isVerified() ? linkedMethod.getDescriptor().getArgumentStackTypes() : null;
+            if (argumentStackTypes != null && argumentStackTypes.length != arguments.length) {
+                throw new ExecutorException(context, "Expected " + argumentStackTypes.length + " arguments but got " + arguments.length);
+            }
+            if (!isStatic) stack.setLocal(0, new StackObject(instance));
             int currentIndex = isStatic ? 0 : 1;
-            for (StackElement argument : arguments) {
-                locals[currentIndex] = argument;
-                currentIndex += argument.size();
+            for (int i = 0; i < arguments.length; i++) {
+                if (argumentStackTypes != null) ExecutorTypeUtils.verifyType(context, arguments[i], argumentStackTypes[i]);
+                stack.setLocal(currentIndex, arguments[i]);
+                currentIndex += arguments[i].size();
+            }
+        }
+        CompiledMethod compiledMethod = context.getExecutionManager().getExecutionListener() == null ? linkedMethod.getCompiledMethod(context) : null;
+        if (compiledMethod != null && context.enterCompiledCode()) {
+            context.getCurrentStackFrame().setInterpreterState(linkedMethod, stack);
+            try {
+                return CompiledMethod.toResult(compiledMethod.execute(context, stack), stack, linkedMethod.getDescriptor());
+            } finally {
+                context.exitCompiledCode();
             }
         }
+        return this.execute(context, linkedMethod, stack);
+    }
+
+    /**
+     * Execute a method in an already prepared frame.<br>
+     * The local variables of the frame have to contain the receiver and the arguments of the method.<br>
+     * Interpreted methods invoked by the method are executed by this loop using the frame stack of the context,
+     * so the depth of the guest stack does not depend on the stack of the host thread.
+     *
+     * @param context      The execution context
+     * @param linkedMethod The method to execute
+     * @param stack        The frame of the method
+     * @return The result of the execution
+     */
+    public ExecutionResult execute(final ExecutionContext context, final LinkedMethod linkedMethod, final ExecutorStack stack) {
+        ExecutionListener listener = context.getExecutionManager().getExecutionListener();
         ExecutionContext.StackFrame stackFrame = context.getCurrentStackFrame();
-        ExecutorStack stack = new ExecutorStack(context, currentMethod.maxStack);
-        AbstractInsnNode currentInstruction = currentMethod.instructions.getFirst();
-        ExecutionResult result = null;
+        stackFrame.setInterpreterState(linkedMethod, stack);
+        int entryDepth = context.getStackDepth();
         while (true) {
-            if (ExecutionManager.DEBUG) {
-                System.out.println("  " + currentInstruction.getClass().getSimpleName() + " " + currentInstruction.getOpcode() + " -> " + Arrays.stream(stack.getStack()).map(StackElement::toString).collect(Collectors.joining(", ")));
+            ExecutionResult result = this.run(context, stackFrame, entryDepth, listener);
+            if (result == null) {
+                //An interpreted method has been invoked or returned, continue in the new current frame
+                stackFrame = context.getCurrentStackFrame();
+                continue;
+            } else if (context.getStackDepth() == entryDepth) {
+                return result;
             }
-            int opcode = currentInstruction.getOpcode();
+
+            //Returns to a calling frame are handled by the frame itself, so only exceptions end up here
+            //Throw the exception to the calling frames until one of them handles it
+            ExecutorObject exception = result.getException();
+            int handler;
+            do {
+                LinkedMethod throwingMethod = stackFrame.getLinkedMethod();
+                Executor.finish(context, throwingMethod.getOwner(), throwingMethod.getMethod(), throwingMethod.getDescriptor(), result, null);
+                stackFrame = context.getCurrentStackFrame();
+                handler = this.findHandler(context, stackFrame, exception, listener);
+            } while (handler == -1 && context.getStackDepth() > entryDepth);
+            if (handler == -1) return result;
+            stackFrame.getStack().clear();
+            stackFrame.getStack().pushReference(exception);
+            stackFrame.setPc(handler);
+        }
+    }
+
+    private void returnToCaller(final ExecutionContext context, final LinkedMethod linkedMethod, final ExecutorStack stack, final byte returnType) {
+        MethodDescriptor descriptor = linkedMethod.getDescriptor();
+        if (!stack.isVerified() && returnType != descriptor.getReturnKind()) {
+            String method = linkedMethod.getOwner().getClassNode().name + "." + linkedMethod.getMethod().name + linkedMethod.getMethod().desc;
+            if (returnType == ExecutorStack.EMPTY) throw new ExecutorException(context, "Method " + method + " did not return a value");
+            else if (descriptor.isVoid()) throw new ExecutorException(context, "Void method " + method + " returned a value");
+            else throw new ExecutorException(context, "Method " + method + " returned a value of the wrong type");
+        }
+        ExecutionContext.StackFrame caller = context.getCallerStackFrame();
+        if (returnType != ExecutorStack.EMPTY) stack.moveReturnValue(caller.getStack(), returnType);
+        context.popStackFrame();
+        caller.setPc(caller.getPc() + 1);
+    }
+
+    /**
+     * Return the result of a frame which has been completed by a compiled method.
+     *
+     * @param context    The execution context
+     * @param stackFrame The completed frame
+     * @param entryDepth The depth of the first frame executed by this interpreter loop
+     * @param result     The result of the compiled method
+     * @return The result or {@code null} if the result has been returned to a calling frame of this loop
+     */
+    @Nullable
+    private ExecutionResult returnCompiled(final ExecutionContext context, final ExecutionContext.StackFrame stackFrame, final int entryDepth, final ExecutionResult result) {
+        //Exceptions returned by a compiled method have not been caught by it, so they are thrown to the caller by the trampoline
+        if (result.hasException()) return result;
+        LinkedMethod linkedMethod = stackFrame.getLinkedMethod();
+        if (context.getStackDepth() == entryDepth) return CompiledMethod.toResult(result, stackFrame.getStack(), linkedMethod.getDescriptor());
+        ExecutionContext.StackFrame caller = context.getCallerStackFrame();
+        byte returnKind = linkedMethod.getDescriptor().getReturnKind();
+        if (returnKind != ExecutorStack.EMPTY) stackFrame.getStack().moveReturnValue(caller.getStack(), returnKind);
+        context.popStackFrame();
+        caller.setPc(caller.getPc() + 1);
+        return null;
+    }
+
+    private int findHandler(final ExecutionContext context, final ExecutionContext.StackFrame stackFrame, final ExecutorObject exception, @Nullable final ExecutionListener listener) {
+        if (listener != null) listener.onExceptionThrown(context, stackFrame.getLinkedMethod(), stackFrame.getPc(), exception);
+        return stackFrame.getLinkedMethod().getHandlerTable().findHandler(context, stackFrame.getPc(), exception.getClazz());
+    }
+
+    /**
+     * Execute the instructions of a frame starting at its current instruction index.<br>
+     * Exceptions which are caught by the frame itself are handled here.
+     *
+     * @param context    The execution context
+     * @param stackFrame The frame to execute
+     * @param entryDepth The depth of the first frame executed by this interpreter loop
+     * @param listener   The execution listener or {@code null}
+     * @return The result of the frame or {@code null} if the current frame has changed by invoking or returning from a method
+     */
+    @Nullable
+    private ExecutionResult run(final ExecutionContext context, final ExecutionContext.StackFrame stackFrame, final int entryDepth, @Nullable final ExecutionListener listener) {
+        LinkedMethod linkedMethod = stackFrame.getLinkedMethod();
+        ExecutorStack stack = stackFrame.getStack();
+        ExecutorClass currentClass = linkedMethod.getOwner();
+        MethodNode currentMethod = linkedMethod.getMethod();
+        //Superinstructions skip the events of the fused instructions, so they are only used without a listener
+        int[] opcodes = listener == null ? linkedMethod.code : linkedMethod.opcodes;
+        int[] operands = linkedMethod.operands;
+        int[] increments = linkedMethod.increments;
+        Object[] references = linkedMethod.references;
+        int[] lineNumbers = linkedMethod.lineNumbers;
+        HandlerTable handlers = linkedMethod.getHandlerTable();
+        //Back edges are only counted for on-stack replacement, which is not used with a listener
+        boolean countBackEdges = listener == null && context.getExecutionManager().isJitEnabled();
+        int pc = stackFrame.getPc();
+        ExecutionResult result = null;
+        while (true) {
+            if (listener != null) listener.onInstruction(context, linkedMethod, pc, stack);
+            if (lineNumbers[pc] != stackFrame.getLineNumber()) stackFrame.setLineNumber(lineNumbers[pc]);
+            int opcode = opcodes[pc];
+            int nextPc = pc + 1;
             switch (opcode) {
                 case Opcodes.NOP:
                     break;
                 case Opcodes.ACONST_NULL:
-                    stack.pushSized(StackObject.NULL);
+                    stack.pushReference(null);
                     break;
                 case Opcodes.ICONST_M1:
-                    stack.pushSized(StackInt.MINUS1);
+                    stack.pushInt(-1);
                     break;
                 case Opcodes.ICONST_0:
-                    stack.pushSized(StackInt.ZERO);
+                    stack.pushInt(0);
                     break;
                 case Opcodes.ICONST_1:
-                    stack.pushSized(StackInt.ONE);
+                    stack.pushInt(1);
                     break;
                 case Opcodes.ICONST_2:
-                    stack.pushSized(StackInt.TWO);
+                    stack.pushInt(2);
                     break;
                 case Opcodes.ICONST_3:
-                    stack.pushSized(StackInt.THREE);
+                    stack.pushInt(3);
                     break;
                 case Opcodes.ICONST_4:
-                    stack.pushSized(StackInt.FOUR);
+                    stack.pushInt(4);
                     break;
                 case Opcodes.ICONST_5:
-                    stack.pushSized(StackInt.FIVE);
+                    stack.pushInt(5);
                     break;
                 case Opcodes.LCONST_0:
-                    stack.pushSized(StackLong.ZERO);
+                    stack.pushLong(0L);
                     break;
                 case Opcodes.LCONST_1:
-                    stack.pushSized(StackLong.ONE);
+                    stack.pushLong(1L);
                     break;
                 case Opcodes.FCONST_0:
-                    stack.pushSized(StackFloat.ZERO);
+                    stack.pushFloat(0.0F);
                     break;
                 case Opcodes.FCONST_1:
-                    stack.pushSized(StackFloat.ONE);
+                    stack.pushFloat(1.0F);
                     break;
                 case Opcodes.FCONST_2:
-                    stack.pushSized(StackFloat.TWO);
+                    stack.pushFloat(2.0F);
                     break;
                 case Opcodes.DCONST_0:
-                    stack.pushSized(StackDouble.ZERO);
+                    stack.pushDouble(0.0D);
                     break;
                 case Opcodes.DCONST_1:
-                    stack.pushSized(StackDouble.ONE);
+                    stack.pushDouble(1.0D);
                     break;
                 case Opcodes.BIPUSH:
                 case Opcodes.SIPUSH:
-                    IntInsnNode intInsnNode1 = (IntInsnNode) currentInstruction;
-                    stack.pushSized(new StackInt(intInsnNode1.operand));
+                    stack.pushInt(operands[pc]);
                     break;
                 case Opcodes.LDC:
-                    LdcInsnNode ldcInsnNode = (LdcInsnNode) currentInstruction;
-                    stack.pushSized(ExecutorTypeUtils.parse(context, ldcInsnNode.cst));
+                    stack.pushSized(ExecutorTypeUtils.parse(context, references[pc]));
                     break;
                 case Opcodes.ILOAD:
+                    stack.load(operands[pc], ExecutorStack.INT);
+                    break;
                 case Opcodes.LLOAD:
+                    stack.load(operands[pc], ExecutorStack.LONG);
+                    break;
                 case Opcodes.FLOAD:
+                    stack.load(operands[pc], ExecutorStack.FLOAT);
+                    break;
                 case Opcodes.DLOAD:
+                    stack.load(operands[pc], ExecutorStack.DOUBLE);
+                    break;
                 case Opcodes.ALOAD:
-                    VarInsnNode varInsnNode = (VarInsnNode) currentInstruction;
-                    StackElement value = locals[varInsnNode.var];
-                    verifyType(context, value, getTypeFromOpcode(opcode));
-                    stack.pushSized(value);
+                    stack.load(operands[pc], ExecutorStack.REFERENCE);
+                    break;
+                case Superinstructions.ALOAD_ILOAD_ARRAYLOAD:
+                    stack.load(operands[pc], ExecutorStack.REFERENCE);
+                    stack.load(operands[pc + 1], ExecutorStack.INT);
+                    pc += 2;
+                    nextPc = pc + 1;
+                    //The array load can throw, so its line has to be current
+                    if (lineNumbers[pc] != stackFrame.getLineNumber()) stackFrame.setLineNumber(lineNumbers[pc]);
+                    result = ArrayInstructions.load(context, stack, opcodes[pc]);
                     break;
                 case Opcodes.IALOAD:
                 case Opcodes.LALOAD:
@@ -124,29 +258,22 @@ public class JVMMethodExecutor implements MethodExecutor {
                 case Opcodes.BALOAD:
                 case Opcodes.CALOAD:
                 case Opcodes.SALOAD:
-                    StackInt index = stack.popSized(StackInt.class);
-                    StackObject array = stack.popSized(StackObject.class);
-                    StackElement[] arrayElements = ((ArrayObject) array.value()).getElements();
-                    //TODO: Type checks
-                    if (index.value() < 0 || index.value() >= arrayElements.length) {
-                        result = ExceptionUtils.newException(context, Types.ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION, "Index: " + index.value() + ", Length: " + arrayElements.length);
-                    } else {
-                        value = arrayElements[index.value()];
-                        if (opcode == Opcodes.BALOAD) value = new StackInt((byte) ((StackInt) value).value());
-                        else if (opcode == Opcodes.CALOAD) value = new StackInt((char) ((StackInt) value).value());
-                        else if (opcode == Opcodes.SALOAD) value = new StackInt((short) ((StackInt) value).value());
-                        stack.pushSized(value);
-                    }
+                    result = ArrayInstructions.load(context, stack, opcode);
                     break;
                 case Opcodes.ISTORE:
+                    stack.store(operands[pc], ExecutorStack.INT);
+                    break;
                 case Opcodes.LSTORE:
+                    stack.store(operands[pc], ExecutorStack.LONG);
+                    break;
                 case Opcodes.FSTORE:
+                    stack.store(operands[pc], ExecutorStack.FLOAT);
+                    break;
                 case Opcodes.DSTORE:
+                    stack.store(operands[pc], ExecutorStack.DOUBLE);
+                    break;
                 case Opcodes.ASTORE:
-                    varInsnNode = (VarInsnNode) currentInstruction;
-                    value = stack.popSized();
-                    verifyType(context, value, getTypeFromOpcode(opcode));
-                    locals[varInsnNode.var] = value;
+                    stack.store(operands[pc], ExecutorStack.REFERENCE);
                     break;
                 case Opcodes.IASTORE:
                 case Opcodes.LASTORE:
@@ -156,19 +283,7 @@ public class JVMMethodExecutor implements MethodExecutor {
                 case Opcodes.BASTORE:
                 case Opcodes.CASTORE:
                 case Opcodes.SASTORE:
-                    value = stack.popSized();
-                    index = stack.popSized(StackInt.class);
-                    array = stack.popSized(StackObject.class);
-                    //TODO: Type checks
-                    arrayElements = ((ArrayObject) array.value()).getElements();
-                    if (index.value() < 0 || index.value() >= arrayElements.length) {
-                        result = ExceptionUtils.newException(context, Types.ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION, "Index: " + index.value() + ", Length: " + arrayElements.length);
-                    } else {
-                        if (opcode == Opcodes.BASTORE) value = new StackInt((byte) ((StackInt) value).value());
-                        else if (opcode == Opcodes.CASTORE) value = new StackInt((char) ((StackInt) value).value());
-                        else if (opcode == Opcodes.SASTORE) value = new StackInt((short) ((StackInt) value).value());
-                        ((ArrayObject) array.value()).getElements()[index.value()] = value;
-                    }
+                    result = ArrayInstructions.store(context, stack, opcode);
                     break;
                 case Opcodes.POP:
                     stack.pop();
@@ -199,718 +314,315 @@ public class JVMMethodExecutor implements MethodExecutor {
                     stack.swap();
                     break;
                 case Opcodes.IADD:
-                    StackInt int1 = stack.popSized(StackInt.class);
-                    StackInt int2 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt(int2.value() + int1.value()));
-                    break;
-                case Opcodes.LADD:
-                    StackLong long1 = stack.popSized(StackLong.class);
-                    StackLong long2 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackLong(long2.value() + long1.value()));
+                    int int1 = stack.popInt();
+                    stack.pushInt(stack.popInt() + int1);
                     break;
-                case Opcodes.FADD:
-                    StackFloat float1 = stack.popSized(StackFloat.class);
-                    StackFloat float2 = stack.popSized(StackFloat.class);
-                    stack.pushSized(new StackFloat(float2.value() + float1.value()));
+                case Opcodes.ISUB:
+                    int1 = stack.popInt();
+                    stack.pushInt(stack.popInt() - int1);
                     break;
-                case Opcodes.DADD:
-                    StackDouble double1 = stack.popSized(StackDouble.class);
-                    StackDouble double2 = stack.popSized(StackDouble.class);
-                    stack.pushSized(new StackDouble(double2.value() + double1.value()));
+                case Opcodes.IMUL:
+                    int1 = stack.popInt();
+                    stack.pushInt(stack.popInt() * int1);
                     break;
-                case Opcodes.ISUB:
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt(int2.value() - int1.value()));
+                case Opcodes.IDIV:
+                    int1 = stack.popInt();
+                    stack.pushInt(stack.popInt() / int1);
                     break;
-                case Opcodes.LSUB:
-                    long1 = stack.popSized(StackLong.class);
-                    long2 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackLong(long2.value() - long1.value()));
+                case Opcodes.IREM:
+                    int1 = stack.popInt();
+                    stack.pushInt(stack.popInt() % int1);
                     break;
-                case Opcodes.FSUB:
-                    float1 = stack.popSized(StackFloat.class);
-                    float2 = stack.popSized(StackFloat.class);
-                    stack.pushSized(new StackFloat(float2.value() - float1.value()));
+                case Opcodes.ISHL:
+                    int1 = stack.popInt();
+                    stack.pushInt(stack.popInt() << int1);
                     break;
-                case Opcodes.DSUB:
-                    double1 = stack.popSized(StackDouble.class);
-                    double2 = stack.popSized(StackDouble.class);
-                    stack.pushSized(new StackDouble(double2.value() - double1.value()));
+                case Opcodes.ISHR:
+                    int1 = stack.popInt();
+                    stack.pushInt(stack.popInt() >> int1);
                     break;
-                case Opcodes.IMUL:
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt(int2.value() * int1.value()));
+                case Opcodes.IUSHR:
+                    int1 = stack.popInt();
+                    stack.pushInt(stack.popInt() >>> int1);
                     break;
-                case Opcodes.LMUL:
-                    long1 = stack.popSized(StackLong.class);
-                    long2 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackLong(long2.value() * long1.value()));
+                case Opcodes.IAND:
+                    int1 = stack.popInt();
+                    stack.pushInt(stack.popInt() & int1);
                     break;
-                case Opcodes.FMUL:
-                    float1 = stack.popSized(StackFloat.class);
-                    float2 = stack.popSized(StackFloat.class);
-                    stack.pushSized(new StackFloat(float2.value() * float1.value()));
+                case Opcodes.IOR:
+                    int1 = stack.popInt();
+                    stack.pushInt(stack.popInt() | int1);
                     break;
-                case Opcodes.DMUL:
-                    double1 = stack.popSized(StackDouble.class);
-                    double2 = stack.popSized(StackDouble.class);
-                    stack.pushSized(new StackDouble(double2.value() * double1.value()));
+                case Opcodes.IXOR:
+                    int1 = stack.popInt();
+                    stack.pushInt(stack.popInt() ^ int1);
                     break;
-                case Opcodes.IDIV:
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt(int2.value() / int1.value()));
+                case Opcodes.INEG:
+                    stack.pushInt(-stack.popInt());
                     break;
+                case Opcodes.LADD:
+                case Opcodes.FADD:
+                case Opcodes.DADD:
+                case Opcodes.LSUB:
+                case Opcodes.FSUB:
+                case Opcodes.DSUB:
+                case Opcodes.LMUL:
+                case Opcodes.FMUL:
+                case Opcodes.DMUL:
                 case Opcodes.LDIV:
-                    long1 = stack.popSized(StackLong.class);
-                    long2 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackLong(long2.value() / long1.value()));
-                    break;
                 case Opcodes.FDIV:
-                    float1 = stack.popSized(StackFloat.class);
-                    float2 = stack.popSized(StackFloat.class);
-                    stack.pushSized(new StackFloat(float2.value() / float1.value()));
-                    break;
                 case Opcodes.DDIV:
-                    double1 = stack.popSized(StackDouble.class);
-                    double2 = stack.popSized(StackDouble.class);
-                    stack.pushSized(new StackDouble(double2.value() / double1.value()));
-                    break;
-                case Opcodes.IREM:
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt(int2.value() % int1.value()));
-                    break;
                 case Opcodes.LREM:
-                    long1 = stack.popSized(StackLong.class);
-                    long2 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackLong(long2.value() % long1.value()));
-                    break;
                 case Opcodes.FREM:
-                    float1 = stack.popSized(StackFloat.class);
-                    float2 = stack.popSized(StackFloat.class);
-                    stack.pushSized(new StackFloat(float2.value() % float1.value()));
-                    break;
                 case Opcodes.DREM:
-                    double1 = stack.popSized(StackDouble.class);
-                    double2 = stack.popSized(StackDouble.class);
-                    stack.pushSized(new StackDouble(double2.value() % double1.value()));
-                    break;
-                case Opcodes.INEG:
-                    int1 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt(-int1.value()));
-                    break;
                 case Opcodes.LNEG:
-                    long1 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackLong(-long1.value()));
-                    break;
                 case Opcodes.FNEG:
-                    float1 = stack.popSized(StackFloat.class);
-                    stack.pushSized(new StackFloat(-float1.value()));
-                    break;
                 case Opcodes.DNEG:
-                    double1 = stack.popSized(StackDouble.class);
-                    stack.pushSized(new StackDouble(-double1.value()));
-                    break;
-                case Opcodes.ISHL:
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt(int2.value() << int1.value()));
-                    break;
                 case Opcodes.LSHL:
-                    int1 = stack.popSized(StackInt.class);
-                    long1 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackLong(long1.value() << int1.value()));
-                    break;
-                case Opcodes.ISHR:
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt(int2.value() >> int1.value()));
-                    break;
                 case Opcodes.LSHR:
-                    int1 = stack.popSized(StackInt.class);
-                    long1 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackLong(long1.value() >> int1.value()));
-                    break;
-                case Opcodes.IUSHR:
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt(int2.value() >>> int1.value()));
-                    break;
                 case Opcodes.LUSHR:
-                    int1 = stack.popSized(StackInt.class);
-                    long1 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackLong(long1.value() >>> int1.value()));
-                    break;
-                case Opcodes.IAND:
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt(int2.value() & int1.value()));
-                    break;
                 case Opcodes.LAND:
-                    long1 = stack.popSized(StackLong.class);
-                    long2 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackLong(long2.value() & long1.value()));
-                    break;
-                case Opcodes.IOR:
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt(int2.value() | int1.value()));
-                    break;
                 case Opcodes.LOR:
-                    long1 = stack.popSized(StackLong.class);
-                    long2 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackLong(long2.value() | long1.value()));
-                    break;
-                case Opcodes.IXOR:
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt(int2.value() ^ int1.value()));
-                    break;
                 case Opcodes.LXOR:
-                    long1 = stack.popSized(StackLong.class);
-                    long2 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackLong(long2.value() ^ long1.value()));
+                    MathInstructions.arithmetic(stack, opcode);
                     break;
                 case Opcodes.IINC:
-                    IincInsnNode iincInsnNode = (IincInsnNode) currentInstruction;
-                    StackElement local = locals[iincInsnNode.var];
-                    verifyType(context, local, StackInt.class);
-                    locals[iincInsnNode.var] = new StackInt(((StackInt) local).value() + iincInsnNode.incr);
+                    stack.increment(operands[pc], increments[pc]);
                     break;
                 case Opcodes.I2L:
-                    int1 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackLong(int1.value()));
-                    break;
                 case Opcodes.I2F:
-                    int1 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackFloat(int1.value()));
-                    break;
                 case Opcodes.I2D:
-                    int1 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackDouble(int1.value()));
-                    break;
                 case Opcodes.L2I:
-                    long1 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackInt((int) long1.value()));
-                    break;
                 case Opcodes.L2F:
-                    long1 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackFloat(long1.value()));
-                    break;
                 case Opcodes.L2D:
-                    long1 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackDouble(long1.value()));
-                    break;
                 case Opcodes.F2I:
-                    float1 = stack.popSized(StackFloat.class);
-                    stack.pushSized(new StackInt((int) float1.value()));
-                    break;
                 case Opcodes.F2L:
-                    float1 = stack.popSized(StackFloat.class);
-                    stack.pushSized(new StackLong((long) float1.value()));
-                    break;
                 case Opcodes.F2D:
-                    float1 = stack.popSized(StackFloat.class);
-                    stack.pushSized(new StackDouble(float1.value()));
-                    break;
                 case Opcodes.D2I:
-                    double1 = stack.popSized(StackDouble.class);
-                    stack.pushSized(new StackInt((int) double1.value()));
-                    break;
                 case Opcodes.D2L:
-                    double1 = stack.popSized(StackDouble.class);
-                    stack.pushSized(new StackLong((long) double1.value()));
-                    break;
                 case Opcodes.D2F:
-                    double1 = stack.popSized(StackDouble.class);
-                    stack.pushSized(new StackFloat((float) double1.value()));
-                    break;
                 case Opcodes.I2B:
-                    int1 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt((byte) int1.value()));
-                    break;
                 case Opcodes.I2C:
-                    int1 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt((char) int1.value()));
-                    break;
                 case Opcodes.I2S:
-                    int1 = stack.popSized(StackInt.class);
-                    stack.pushSized(new StackInt((short) int1.value()));
+                    MathInstructions.convert(stack, opcode);
                     break;
                 case Opcodes.LCMP:
-                    long1 = stack.popSized(StackLong.class);
-                    long2 = stack.popSized(StackLong.class);
-                    stack.pushSized(new StackInt(Long.compare(long2.value(), long1.value())));
-                    break;
                 case Opcodes.FCMPL:
-                    float1 = stack.popSized(StackFloat.class);
-                    float2 = stack.popSized(StackFloat.class);
-                    if (Float.isNaN(float1.value()) || Float.isNaN(float2.value())) stack.pushSized(StackInt.MINUS1);
-                    stack.pushSized(new StackInt(Float.compare(float2.value(), float1.value())));
-                    break;
                 case Opcodes.FCMPG:
-                    float1 = stack.popSized(StackFloat.class);
-                    float2 = stack.popSized(StackFloat.class);
-                    if (Float.isNaN(float1.value()) || Float.isNaN(float2.value())) stack.pushSized(StackInt.ONE);
-                    stack.pushSized(new StackInt(Float.compare(float2.value(), float1.value())));
-                    break;
                 case Opcodes.DCMPL:
-                    double1 = stack.popSized(StackDouble.class);
-                    double2 = stack.popSized(StackDouble.class);
-                    if (Double.isNaN(double1.value()) || Double.isNaN(double2.value())) stack.pushSized(StackInt.MINUS1);
-                    stack.pushSized(new StackInt(Double.compare(double2.value(), double1.value())));
-                    break;
                 case Opcodes.DCMPG:
-                    double1 = stack.popSized(StackDouble.class);
-                    double2 = stack.popSized(StackDouble.class);
-                    if (Double.isNaN(double1.value()) || Double.isNaN(double2.value())) stack.pushSized(StackInt.ONE);
-                    stack.pushSized(new StackInt(Double.compare(double2.value(), double1.value())));
+                    MathInstructions.compare(stack, opcode);
                     break;
                 case Opcodes.IFEQ:
-                    JumpInsnNode jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    if (int1.value() == 0) {
+                    if (stack.popInt() == 0) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IFNE:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    if (int1.value() != 0) {
+                    if (stack.popInt() != 0) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IFLT:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    if (int1.value() < 0) {
+                    if (stack.popInt() < 0) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IFGE:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    if (int1.value() >= 0) {
+                    if (stack.popInt() >= 0) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IFGT:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    if (int1.value() > 0) {
+                    if (stack.popInt() > 0) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IFLE:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    if (int1.value() <= 0) {
+                    if (stack.popInt() <= 0) {
+                        //Jump
+                        nextPc = operands[pc];
+                    }
+                    break;
+                case Superinstructions.ILOAD_ILOAD_IF_ICMP:
+                case Superinstructions.ILOAD_CONST_IF_ICMP:
+                    //None of the fused instructions can throw, so the line number is not needed
+                    int1 = opcode == Superinstructions.ILOAD_CONST_IF_ICMP ? operands[pc + 1] : stack.getLocalInt(operands[pc + 1]);
+                    if (Superinstructions.compare(opcodes[pc + 2], stack.getLocalInt(operands[pc]), int1)) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc + 2];
+                    } else {
+                        nextPc = pc + 3;
                     }
                     break;
                 case Opcodes.IF_ICMPEQ:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    if (int1.value() == int2.value()) {
+                    int1 = stack.popInt();
+                    if (stack.popInt() == int1) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IF_ICMPNE:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    if (int1.value() != int2.value()) {
+                    int1 = stack.popInt();
+                    if (stack.popInt() != int1) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IF_ICMPLT:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    if (int2.value() < int1.value()) {
+                    int1 = stack.popInt();
+                    if (stack.popInt() < int1) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IF_ICMPGE:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    if (int2.value() >= int1.value()) {
+                    int1 = stack.popInt();
+                    if (stack.popInt() >= int1) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IF_ICMPGT:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    if (int2.value() > int1.value()) {
+                    int1 = stack.popInt();
+                    if (stack.popInt() > int1) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IF_ICMPLE:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    int2 = stack.popSized(StackInt.class);
-                    if (int2.value() <= int1.value()) {
+                    int1 = stack.popInt();
+                    if (stack.popInt() <= int1) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IF_ACMPEQ:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    StackObject object1 = stack.popSized(StackObject.class);
-                    StackObject object2 = stack.popSized(StackObject.class);
-                    if (object1.value() == object2.value()) {
+                    ExecutorObject object = stack.popReference();
+                    if (stack.popReference() == object) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IF_ACMPNE:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    object1 = stack.popSized(StackObject.class);
-                    object2 = stack.popSized(StackObject.class);
-                    if (object1.value() != object2.value()) {
+                    object = stack.popReference();
+                    if (stack.popReference() != object) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.GOTO:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    currentInstruction = jumpInsnNode.label;
+                    nextPc = operands[pc];
                     break; //Jump
                 case Opcodes.JSR:
-                    throw new UnsupportedOperationException(currentInstruction.getClass().getSimpleName() + " " + opcode); //TODO
+                    throw new UnsupportedOperationException(linkedMethod.getInstruction(pc).getClass().getSimpleName() + " " + opcode); //TODO
                 case Opcodes.RET:
-                    throw new UnsupportedOperationException(currentInstruction.getClass().getSimpleName() + " " + opcode); //TODO
+                    throw new UnsupportedOperationException(linkedMethod.getInstruction(pc).getClass().getSimpleName() + " " + opcode); //TODO
                 case Opcodes.TABLESWITCH:
-                    TableSwitchInsnNode tableSwitchInsnNode = (TableSwitchInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    if (int1.value() >= tableSwitchInsnNode.min && int1.value() <= tableSwitchInsnNode.max) {
-                        currentInstruction = tableSwitchInsnNode.labels.get(int1.value() - tableSwitchInsnNode.min);
-                    } else {
-                        currentInstruction = tableSwitchInsnNode.dflt;
-                    }
-                    break; //Jump
                 case Opcodes.LOOKUPSWITCH:
-                    LookupSwitchInsnNode lookupSwitchInsnNode = (LookupSwitchInsnNode) currentInstruction;
-                    int1 = stack.popSized(StackInt.class);
-                    int caseIndex = lookupSwitchInsnNode.keys.indexOf(int1.value());
-                    if (caseIndex != -1) {
-                        currentInstruction = lookupSwitchInsnNode.labels.get(caseIndex);
-                    } else {
-                        currentInstruction = lookupSwitchInsnNode.dflt;
-                    }
+                    nextPc = ((SwitchTable) references[pc]).getTarget(stack.popInt());
                     break; //Jump
                 case Opcodes.IRETURN:
-                    result = ExecutionResult.returnValue(stack.popSized(StackInt.class));
-                    break;
                 case Opcodes.LRETURN:
-                    result = ExecutionResult.returnValue(stack.popSized(StackLong.class));
-                    break;
                 case Opcodes.FRETURN:
-                    result = ExecutionResult.returnValue(stack.popSized(StackFloat.class));
-                    break;
                 case Opcodes.DRETURN:
-                    result = ExecutionResult.returnValue(stack.popSized(StackDouble.class));
-                    break;
                 case Opcodes.ARETURN:
-                    result = ExecutionResult.returnValue(stack.popSized(StackObject.class));
-                    break;
                 case Opcodes.RETURN:
-                    result = ExecutionResult.voidResult();
+                    if (context.getStackDepth() > entryDepth) {
+                        //The caller is executed by this loop as well, move the return value directly onto its stack
+                        this.returnToCaller(context, linkedMethod, stack, RETURN_TYPES[opcode - Opcodes.IRETURN]);
+                        return null;
+                    }
+                    result = switch (opcode) {
+                        case Opcodes.IRETURN -> ExecutionResult.returnValue(stack.popSized(StackInt.class));
+                        case Opcodes.LRETURN -> ExecutionResult.returnValue(stack.popSized(StackLong.class));
+                        case Opcodes.FRETURN -> ExecutionResult.returnValue(stack.popSized(StackFloat.class));
+                        case Opcodes.DRETURN -> ExecutionResult.returnValue(stack.popSized(StackDouble.class));
+                        case Opcodes.ARETURN -> ExecutionResult.returnValue(stack.popSized(StackObject.class));
+                        default -> ExecutionResult.voidResult();
+                    };
+                    break;
+                case Opcodes.GETSTATIC:
+                    result = FieldInstructions.getStatic(context, stack, linkedMethod, pc);
                     break;
-                case Opcodes.GETSTATIC: //TODO: Access checks for all fields and methods
                 case Opcodes.PUTSTATIC:
-                    FieldInsnNode fieldInsnNode = (FieldInsnNode) currentInstruction;
-                    ExecutorClass owner = manager.loadClass(context, Type.getObjectType(fieldInsnNode.owner));
-                    ExecutorClass.ResolvedField fieldNode = owner.findField(context, fieldInsnNode.name, fieldInsnNode.desc);
-                    if (fieldNode == null) {
-                        result = ExceptionUtils.newException(context, Types.NO_SUCH_FIELD_ERROR, fieldInsnNode.name);
-                    } else {
-                        if (opcode == Opcodes.GETSTATIC) {
-                            stack.pushSized(fieldNode.get());
-                        } else {
-                            value = stack.popSized();
-                            verifyType(context, value, ExecutorTypeUtils.typeToStackType(Type.getType(fieldNode.field().desc)));
-                            fieldNode.set(value);
-                        }
-                    }
+                    result = FieldInstructions.putStatic(context, stack, linkedMethod, pc);
+                    break;
+                case Superinstructions.ALOAD_GETFIELD:
+                    stack.load(operands[pc], ExecutorStack.REFERENCE);
+                    pc++;
+                    nextPc = pc + 1;
+                    //The field access can throw, so its line has to be current
+                    if (lineNumbers[pc] != stackFrame.getLineNumber()) stackFrame.setLineNumber(lineNumbers[pc]);
+                    result = FieldInstructions.getField(context, stack, linkedMethod, pc);
                     break;
                 case Opcodes.GETFIELD:
-                    fieldInsnNode = (FieldInsnNode) currentInstruction;
-                    StackObject object = stack.popSized(StackObject.class);
-                    if (object.isNull()) {
-                        result = ExceptionUtils.newException(context, Types.NULL_POINTER_EXCEPTION, "Tried to access field of null object");
-                    } else {
-                        fieldNode = object.value().getClazz().findField(context, fieldInsnNode.name, fieldInsnNode.desc);
-                        if (fieldNode == null) {
-                            result = ExceptionUtils.newException(context, Types.NO_SUCH_FIELD_ERROR, fieldInsnNode.name);
-                        } else {
-                            stack.pushSized(object.value().getField(fieldNode.field()));
-                        }
-                    }
+                    result = FieldInstructions.getField(context, stack, linkedMethod, pc);
                     break;
                 case Opcodes.PUTFIELD:
-                    fieldInsnNode = (FieldInsnNode) currentInstruction;
-                    value = stack.popSized();
-                    object = stack.popSized(StackObject.class);
-                    if (object.isNull()) {
-                        result = ExceptionUtils.newException(context, Types.NULL_POINTER_EXCEPTION, "Tried to access field of null object");
-                    } else {
-                        fieldNode = object.value().getClazz().findField(context, fieldInsnNode.name, fieldInsnNode.desc);
-                        if (fieldNode == null) {
-                            result = ExceptionUtils.newException(context, Types.NO_SUCH_FIELD_ERROR, fieldInsnNode.name);
-                        } else {
-                            verifyType(context, value, ExecutorTypeUtils.typeToStackType(Type.getType(fieldNode.field().desc)));
-                            object.value().setField(fieldNode.field(), value);
-                        }
-                    }
+                    result = FieldInstructions.putField(context, stack, linkedMethod, pc);
                     break;
                 case Opcodes.INVOKEVIRTUAL:
-                case Opcodes.INVOKESPECIAL:
                 case Opcodes.INVOKEINTERFACE:
-                    MethodInsnNode methodInsnNode = (MethodInsnNode) currentInstruction;
-                    Type[] argumentTypes = Types.argumentTypes(methodInsnNode);
-                    List<StackElement> stackElements = new ArrayList<>(argumentTypes.length);
-                    for (int i = argumentTypes.length - 1; i >= 0; i--) {
-                        StackElement argumentType = stack.popSized();
-                        verifyType(context, argumentType, ExecutorTypeUtils.typeToStackType(argumentTypes[i]));
-                        stackElements.add(0, argumentType);
-                    }
-                    StackObject ownerElement = stack.popSized(StackObject.class);
-                    if (ownerElement.isNull()) {
-                        result = ExceptionUtils.newException(context, Types.NULL_POINTER_EXCEPTION, "Tried to invoke method on null object");
-                    } else {
-                        ExecutorObject ownerObject = ownerElement.value();
-                        //TODO: Interface checks
-                        ExecutorClass.ResolvedMethod methodNode;
-                        if (opcode == Opcodes.INVOKESPECIAL) {
-                            ExecutorClass ownerClass = manager.loadClass(context, Type.getObjectType(methodInsnNode.owner));
-                            methodNode = ownerClass.findMethod(context, methodInsnNode.name, methodInsnNode.desc);
-                        } else {
-                            methodNode = ownerObject.getClazz().findMethod(context, methodInsnNode.name, methodInsnNode.desc);
-                        }
-                        if (methodNode == null) {
-                            if (ExecutionManager.DEBUG) {
-                                System.out.println("Cannot find method " + methodInsnNode.owner + "." + methodInsnNode.name + methodInsnNode.desc + " in " + ownerObject.getClazz().getClassNode().name);
-                            }
-                            result = ExceptionUtils.newException(context, Types.NO_SUCH_METHOD_ERROR, methodInsnNode.name);
-                        } else if (Modifiers.has(methodNode.method().access, Opcodes.ACC_STATIC)) {
-                            result = ExceptionUtils.newException(context, Types.INCOMPATIBLE_CLASS_CHANGE_ERROR, "Expecting non-static method " + methodInsnNode.owner + "." + methodInsnNode.name + methodInsnNode.desc);
-                        } else {
-                            ExecutionResult invokeResult = Executor.execute(context, methodNode.owner(), methodNode.method(), ownerObject, stackElements.toArray(new StackElement[0]));
-                            if (invokeResult.hasReturnValue()) {
-                                verifyType(context, invokeResult.getReturnValue(), ExecutorTypeUtils.typeToStackType(Types.returnType(methodNode.method())));
-                                stack.pushSized(invokeResult.getReturnValue());
-                            } else if (invokeResult.hasException()) {
-                                result = invokeResult;
-                            }
-                        }
-                    }
-                    break;
+                case Opcodes.INVOKESPECIAL:
                 case Opcodes.INVOKESTATIC:
-                    methodInsnNode = (MethodInsnNode) currentInstruction;
-                    argumentTypes = Types.argumentTypes(methodInsnNode);
-                    stackElements = new ArrayList<>(argumentTypes.length);
-                    for (int i = argumentTypes.length - 1; i >= 0; i--) {
-                        StackElement argumentType = stack.popSized();
-                        verifyType(context, argumentType, ExecutorTypeUtils.typeToStackType(argumentTypes[i]));
-                        stackElements.add(0, argumentType);
-                    }
-                    ExecutorClass ownerClass = manager.loadClass(context, Type.getObjectType(methodInsnNode.owner));
-                    ExecutorClass.ResolvedMethod methodNode = ownerClass.findMethod(context, methodInsnNode.name, methodInsnNode.desc);
-                    if (methodNode == null) {
-                        if (ExecutionManager.DEBUG) {
-                            System.out.println("Cannot find method " + methodInsnNode.owner + "." + methodInsnNode.name + methodInsnNode.desc + " in " + ownerClass.getClassNode().name);
-                        }
-                        result = ExceptionUtils.newException(context, Types.NO_SUCH_METHOD_ERROR, methodInsnNode.name);
-                    } else if (!Modifiers.has(methodNode.method().access, Opcodes.ACC_STATIC)) {
-                        result = ExceptionUtils.newException(context, Types.INCOMPATIBLE_CLASS_CHANGE_ERROR, "Expecting static method " + methodInsnNode.owner + "." + methodInsnNode.name + methodInsnNode.desc);
-                    } else {
-                        ExecutionResult invokeResult = Executor.execute(context, methodNode.owner(), methodNode.method(), null, stackElements.toArray(new StackElement[0]));
-                        if (invokeResult.hasReturnValue()) {
-                            verifyType(context, invokeResult.getReturnValue(), ExecutorTypeUtils.typeToStackType(Types.returnType(methodNode.method())));
-                            stack.pushSized(invokeResult.getReturnValue());
-                        } else if (invokeResult.hasException()) {
-                            result = invokeResult;
-                        }
+                    if (opcode == Opcodes.INVOKESTATIC) result = InvokeInstructions.invokeStatic(context, stack, linkedMethod, pc);
+                    else if (opcode == Opcodes.INVOKESPECIAL) result = InvokeInstructions.invokeSpecial(context, stack, linkedMethod, pc);
+                    else result = InvokeInstructions.invokeVirtual(context, stack, (InlineCache) references[pc]);
+                    if (result == null && context.getCurrentStackFrame() != stackFrame) {
+                        //An interpreted method has been invoked, remember where to continue after it returned
+                        stackFrame.setPc(pc);
+                        return null;
                     }
                     break;
                 case Opcodes.INVOKEDYNAMIC:
-                    InvokeDynamicInsnNode indyNode = (InvokeDynamicInsnNode) currentInstruction;
-
-                    // Get or create CallSite from cache
-                    InvokeDynamicCache cache = manager.getInvokeDynamicCache();
-                    String className = currentClass.getClassNode().name;
-                    String methodSignature = currentMethod.name + currentMethod.desc;
-                    int instructionIndex = currentMethod.instructions.indexOf(currentInstruction);
-
-                    CallSiteObject callSite = cache.get(className, methodSignature, instructionIndex);
-                    if (callSite == null) {
-                        // Bootstrap method not yet invoked - resolve the call site
-                        callSite = BootstrapMethodResolver.resolve(context, indyNode, currentClass);
-                        cache.put(className, methodSignature, instructionIndex, callSite);
-                    }
-
-                    // Get target MethodHandle from CallSite
-                    MethodHandleObject target = callSite.getTarget();
-                    if (target == null) {
-                        result = ExceptionUtils.newException(context, Types.NULL_POINTER_EXCEPTION, "CallSite target is null");
-                        break;
-                    }
-
-                    // Pop arguments from stack (same pattern as other invokes)
-                    Type[] indyArgTypes = Type.getArgumentTypes(indyNode.desc);
-                    List<StackElement> indyArgs = new ArrayList<>(indyArgTypes.length);
-                    for (int i = indyArgTypes.length - 1; i >= 0; i--) {
-                        StackElement arg = stack.popSized();
-                        verifyType(context, arg, ExecutorTypeUtils.typeToStackType(indyArgTypes[i]));
-                        indyArgs.add(0, arg);
-                    }
-
-                    // Invoke the method handle
-                    ExecutionResult indyResult = target.invoke(context, indyArgs.toArray(new StackElement[0]));
-
-                    // Handle return value or exception
-                    if (indyResult.hasException()) {
-                        result = indyResult;
-                    } else if (indyResult.hasReturnValue()) {
-                        Type returnType = Type.getReturnType(indyNode.desc);
-                        if (!returnType.equals(Type.VOID_TYPE)) {
-                            verifyType(context, indyResult.getReturnValue(), ExecutorTypeUtils.typeToStackType(returnType));
-                            stack.pushSized(indyResult.getReturnValue());
-                        }
-                    }
+                    result = InvokeInstructions.invokeDynamic(context, stack, currentClass, currentMethod, pc, (InvokeDynamicInsnNode) references[pc]);
                     break;
                 case Opcodes.NEW:
-                    TypeInsnNode typeInsnNode = (TypeInsnNode) currentInstruction;
-                    ExecutorClass newClass = manager.loadClass(context, Type.getObjectType(typeInsnNode.desc));
-                    ExecutorObject newObject = manager.instantiate(context, newClass);
-                    stack.pushSized(new StackObject(newObject));
+                    result = ObjectInstructions.newObject(context, stack, linkedMethod, pc);
                     break;
                 case Opcodes.NEWARRAY:
-                    IntInsnNode intInsnNode = (IntInsnNode) currentInstruction;
-                    int length = stack.popSized(StackInt.class).value();
-                    switch (intInsnNode.operand) {
-                        case Opcodes.T_BOOLEAN -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(boolean[].class), length, () -> StackInt.ZERO));
-                        case Opcodes.T_BYTE -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(byte[].class), length, () -> StackInt.ZERO));
-                        case Opcodes.T_CHAR -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(char[].class), length, () -> StackInt.ZERO));
-                        case Opcodes.T_SHORT -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(short[].class), length, () -> StackInt.ZERO));
-                        case Opcodes.T_INT -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(int[].class), length, () -> StackInt.ZERO));
-                        case Opcodes.T_LONG -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(long[].class), length, () -> StackLong.ZERO));
-                        case Opcodes.T_FLOAT -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(float[].class), length, () -> StackFloat.ZERO));
-                        case Opcodes.T_DOUBLE -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(double[].class), length, () -> StackDouble.ZERO));
-                        default -> throw new ExecutorException(context, "Unknown array type: " + intInsnNode.operand);
-                    }
+                    ArrayInstructions.newArray(context, stack, operands[pc]);
                     break;
                 case Opcodes.ANEWARRAY:
-                    typeInsnNode = (TypeInsnNode) currentInstruction;
-                    length = stack.popSized(StackInt.class).value();
-                    newClass = manager.loadClass(context, Types.asArray(Type.getObjectType(typeInsnNode.desc), 1));
-                    stack.pushSized(new StackObject(manager.instantiateArray(context, newClass, length)));
+                    ArrayInstructions.newObjectArray(context, stack, linkedMethod, pc);
                     break;
                 case Opcodes.ARRAYLENGTH:
-                    array = stack.popSized(StackObject.class);
-                    if (!(array.value() instanceof ArrayObject)) {
-                        throw new ExecutorException(context, "Expected array but got " + array.getClass().getSimpleName());
-                    }
-                    stack.pushSized(new StackInt(((ArrayObject) array.value()).getElements().length));
+                    ArrayInstructions.length(context, stack);
                     break;
                 case Opcodes.ATHROW:
-                    object = stack.popSized(StackObject.class);
-                    if (object.isNull()) {
-                        result = ExceptionUtils.newException(context, Types.NULL_POINTER_EXCEPTION);
-                    } else if (!object.value().getClazz().isInstance(context, Types.THROWABLE)) {
-                        throw new ExecutorException(context, "Expected throwable but got " + object.value().getClazz().getClassNode().name);
-                    } else {
-                        result = ExecutionResult.exception(object.value());
-                    }
+                    result = ObjectInstructions.throwException(context, stack);
                     break;
                 case Opcodes.CHECKCAST:
-                    typeInsnNode = (TypeInsnNode) currentInstruction;
-                    object = stack.popSized(StackObject.class);
-                    if (object != StackObject.NULL && !object.value().getClazz().isInstance(context, Type.getObjectType(typeInsnNode.desc))) {
-                        result = ExceptionUtils.newException(context, Types.CLASS_CAST_EXCEPTION, "Cannot cast " + object.value().getClazz().getClassNode().name + " to " + typeInsnNode.desc);
-                    } else {
-                        stack.pushSized(object.withType(Type.getObjectType(typeInsnNode.desc)));
-                    }
+                    result = ObjectInstructions.checkCast(context, stack, linkedMethod, pc);
                     break;
                 case Opcodes.INSTANCEOF:
-                    typeInsnNode = (TypeInsnNode) currentInstruction;
-                    object = stack.popSized(StackObject.class);
-                    if (object.isNull()) {
-                        stack.pushSized(StackInt.ZERO);
-                    } else {
-                        boolean isInstance = object.value().getClazz().isInstance(context, Type.getObjectType(typeInsnNode.desc));
-                        stack.pushSized(isInstance ? StackInt.ONE : StackInt.ZERO);
-                    }
+                    ObjectInstructions.instanceOf(context, stack, linkedMethod, pc);
                     break;
                 case Opcodes.MONITORENTER:
-                    stack.popSized(); //The object to synchronize on
+                    stack.popReference(); //The object to synchronize on
                     break; //TODO
                 case Opcodes.MONITOREXIT:
-                    stack.popSized(); //The object stop synchronizing on
+                    stack.popReference(); //The object stop synchronizing on
                     break; //TODO
                 case Opcodes.MULTIANEWARRAY:
-                    MultiANewArrayInsnNode multiANewArrayInsnNode = (MultiANewArrayInsnNode) currentInstruction;
-                    Type arrayType = Type.getType(multiANewArrayInsnNode.desc);
-                    Type elementType = arrayType.getElementType();
-                    if (arrayType.getSort() != Type.ARRAY && arrayType.getDimensions() != multiANewArrayInsnNode.dims) {
-                        throw new ExecutorException(context, "Expected array type with " + multiANewArrayInsnNode.dims + " dimensions but got " + arrayType);
-                    }
-                    IntFunction<StackElement> arrayInitializer = null;
-                    for (int i = multiANewArrayInsnNode.dims - 1; i >= 1; i--) {
-                        int dimensions = stack.popSized(StackInt.class).value();
-                        if (dimensions < 0) {
-                            result = ExceptionUtils.newException(context, Types.NEGATIVE_ARRAY_SIZE_EXCEPTION, "Dimension: " + dimensions);
-                            break;
-                        }
-                        ExecutorClass arrayClass = manager.loadClass(context, Types.asArray(elementType, i));
-                        final IntFunction<StackElement> finalArrayInitializer = arrayInitializer;
-                        arrayInitializer = j -> {
-                            if (finalArrayInitializer == null) {
-                                return new StackObject(manager.instantiateArray(context, arrayClass, dimensions));
-                            } else {
-                                return new StackObject(manager.instantiateArray(context, arrayClass, dimensions, finalArrayInitializer));
-                            }
-                        };
-                    }
-                    stack.pushSized(new StackObject(manager.instantiateArray(context, manager.loadClass(context, arrayType), stack.popSized(StackInt.class).value(), arrayInitializer)));
+                    result = ArrayInstructions.newMultiArray(context, stack, (MultiANewArrayInsnNode) references[pc]);
                     break;
                 case Opcodes.IFNULL:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    object = stack.popSized(StackObject.class);
-                    if (object.isNull()) {
+                    if (stack.popReference() == null) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
+                        nextPc = operands[pc];
                     }
                     break;
                 case Opcodes.IFNONNULL:
-                    jumpInsnNode = (JumpInsnNode) currentInstruction;
-                    object = stack.popSized(StackObject.class);
-                    if (!object.isNull()) {
+                    if (stack.popReference() != null) {
                         //Jump
-                        currentInstruction = jumpInsnNode.label;
-                    }
-                    break;
-                case -1:
-                    if (currentInstruction instanceof LineNumberNode) {
-                        stackFrame.setLineNumber(((LineNumberNode) currentInstruction).line);
+                        nextPc = operands[pc];
                     }
                     break;
                 default:
@@ -919,65 +631,41 @@ public class JVMMethodExecutor implements MethodExecutor {
 
             if (result != null) {
                 if (result.hasException()) {
-                    TryCatchBlockNode matchingTryCatchBlock = getMatchingTryCatchBlock(context, currentMethod, currentInstruction, result.getException().getClazz());
-                    if (matchingTryCatchBlock == null) {
+                    if (listener != null) listener.onExceptionThrown(context, linkedMethod, pc, result.getException());
+                    int handler = handlers.findHandler(context, pc, result.getException().getClazz());
+                    if (handler == -1) {
                         //If no try catch block was found, throw the exception to the caller
                         break;
                     } else {
                         //A try catch block was found, jump to the handler, clear the stack and push the exception
-                        currentInstruction = matchingTryCatchBlock.handler; //Jump
+                        //Handlers before the throwing instruction are not loops, so this is not counted as a back edge
+                        pc = handler; //Jump
                         stack.clear();
-                        stack.pushSized(new StackObject(result.getException()));
+                        stack.pushReference(result.getException());
                         result = null;
+                        continue;
                     }
                 } else {
                     break;
                 }
             }
 
-            currentInstruction = currentInstruction.getNext();
-        }
-        return result;
-    }
-
-    private static Class<? extends StackElement> getTypeFromOpcode(final int opcode) {
-        return switch (opcode) {
-            case Opcodes.ILOAD, Opcodes.ISTORE -> StackInt.class;
-            case Opcodes.LLOAD, Opcodes.LSTORE -> StackLong.class;
-            case Opcodes.FLOAD, Opcodes.FSTORE -> StackFloat.class;
-            case Opcodes.DLOAD, Opcodes.DSTORE -> StackDouble.class;
-            case Opcodes.ALOAD, Opcodes.ASTORE -> StackObject.class;
-            default -> throw new IllegalStateException("Unknown opcode: " + opcode);
-        };
-    }
-
-    private static void verifyType(final ExecutionContext context, final StackElement element, final Class<? extends StackElement> expectedType) {
-        if (element == null) {
-            throw new ExecutorException(context, "Tried to load empty " + element.getClass().getSimpleName() + " value from stack");
-        }
-        if (!expectedType.isInstance(element)) {
-            throw new ExecutorException(context, "Expected " + expectedType.getSimpleName() + " but got " + element.getClass().getSimpleName());
-        }
-    }
-
-    @Nullable
-    private static TryCatchBlockNode getMatchingTryCatchBlock(final ExecutionContext context, final MethodNode method, final AbstractInsnNode currentInstruction, final ExecutorClass exceptionClass) {
-        int index = method.instructions.indexOf(currentInstruction);
-        for (TryCatchBlockNode tryCatchBlock : method.tryCatchBlocks) {
-            int start = method.instructions.indexOf(tryCatchBlock.start);
-            int end = method.instructions.indexOf(tryCatchBlock.end);
-            if (start < index && end > index) {
-                if (tryCatchBlock.type == null) {
-                    return tryCatchBlock;
-                } else {
-                    ExecutorClass catchClass = context.getExecutionManager().loadClass(context, Type.getObjectType(tryCatchBlock.type));
-                    if (exceptionClass.isInstance(context, catchClass.getType())) {
-                        return tryCatchBlock;
-                    }
+            if (countBackEdges && nextPc <= pc && linkedMethod.countBackEdge()) {
+                //The loop is hot, continue it in the compiled method
+                CompiledMethod osrMethod = linkedMethod.getOsrMethod(context, nextPc);
+                if (osrMethod != null && context.enterCompiledCode()) {
+                    stackFrame.setPc(nextPc);
+                    try {
+                        result = osrMethod.execute(context, stack);
+                    } finally {
+                        context.exitCompiledCode();
+                    }
+                    return this.returnCompiled(context, stackFrame, entryDepth, result);
                 }
             }
+            pc = nextPc;
         }
-        return null;
+        return result;
     }
 
 }
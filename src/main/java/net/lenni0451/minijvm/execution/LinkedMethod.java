@@ -0,0 +1,237 @@
+package net.lenni0451.minijvm.execution;
+
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.execution.jit.CompiledMethod;
+import net.lenni0451.minijvm.execution.jit.JitCompiler;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.utils.MethodDescriptor;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The pre-decoded form of a method body.<br>
+ * Pseudo instructions (labels, line numbers and frames) are removed and all jump targets are resolved to instruction indices.
+ */
+public class LinkedMethod {
+
+    /**
+     * Marks loop headers at which the method can not be entered by on-stack replacement.
+     */
+    private static final CompiledMethod OSR_FAILED = (context, frame) -> {
+        throw new IllegalStateException("Method could not be compiled");
+    };
+
+    private final ExecutorClass owner;
+    private final MethodNode method;
+    private final MethodNode body;
+    private final MethodDescriptor descriptor;
+    final int[] opcodes;
+    /**
+     * The opcodes executed by the interpreter, with the first instruction of fused sequences replaced by a {@link Superinstructions superinstruction}.
+     */
+    final int[] code;
+    final int[] operands;
+    final int[] increments;
+    final Object[] references;
+    final AbstractInsnNode[] instructions;
+    final int[] lineNumbers;
+    private final Map<LabelNode, Integer> labelIndices;
+    private final HandlerTable handlerTable;
+    final byte[] parameterTypes;
+    final int parameterSlots;
+    private final boolean verified;
+    private int invocationCount;
+    /**
+     * The amount of taken back edges while this method was interpreted with the JIT enabled and without a listener.<br>
+     * Like the invocation count this is a heuristic which is shared by all contexts and not synchronized,
+     * lost updates only delay the compilation.
+     */
+    private int backEdgeCount;
+    @Nullable
+    private volatile CompiledMethod compiledMethod;
+    private volatile boolean compilationFailed;
+    /**
+     * The compiled methods entered at loop headers, indexed by the loop header.<br>
+     * The table is created and filled while holding the lock of this method, but read without it.
+     */
+    @Nullable
+    private volatile AtomicReferenceArray<CompiledMethod> osrMethods;
+
+    LinkedMethod(final ExecutorClass owner, final MethodNode method, final MethodNode body, final MethodDescriptor descriptor, final int[] opcodes, final int[] code, final int[] operands, final int[] increments, final Object[] references, final AbstractInsnNode[] instructions, final int[] lineNumbers, final Map<LabelNode, Integer> labelIndices, final HandlerTable handlerTable, final byte[] parameterTypes, final int parameterSlots, final boolean verified) {
+        this.owner = owner;
+        this.method = method;
+        this.body = body;
+        this.descriptor = descriptor;
+        this.opcodes = opcodes;
+        this.code = code;
+        this.operands = operands;
+        this.increments = increments;
+        this.references = references;
+        this.instructions = instructions;
+        this.lineNumbers = lineNumbers;
+        this.labelIndices = labelIndices;
+        this.handlerTable = handlerTable;
+        this.parameterTypes = parameterTypes;
+        this.parameterSlots = parameterSlots;
+        this.verified = verified;
+    }
+
+    public ExecutorClass getOwner() {
+        return this.owner;
+    }
+
+    public MethodNode getMethod() {
+        return this.method;
+    }
+
+    /**
+     * Get the code which has been linked.<br>
+     * This is an optimized copy of the method if the {@link net.lenni0451.minijvm.execution.optimizer.PeepholeOptimizer} is enabled, otherwise the method itself.
+     *
+     * @return The linked code of this method
+     */
+    public MethodNode getBody() {
+        return this.body;
+    }
+
+    public MethodDescriptor getDescriptor() {
+        return this.descriptor;
+    }
+
+    /**
+     * @return If the method passed the bytecode verification and can be executed without dynamic type checks
+     */
+    public boolean isVerified() {
+        return this.verified;
+    }
+
+    /**
+     * Get the compiled form of this method.<br>
+     * Every call counts as an invocation of the method. When the method becomes hot it is compiled by the {@link JitCompiler}.
+     *
+     * @param context The execution context
+     * @return The compiled method or {@code null} if the method should be interpreted
+     */
+    @Nullable
+    public CompiledMethod getCompiledMethod(final ExecutionContext context) {
+        if (!context.getExecutionManager().isJitEnabled()) return null;
+        CompiledMethod compiledMethod = this.compiledMethod;
+        if (compiledMethod != null || this.compilationFailed) return compiledMethod;
+        //The counters are not synchronized, lost updates only delay the compilation
+        if (++this.invocationCount < JitCompiler.INVOCATION_THRESHOLD && this.backEdgeCount < JitCompiler.BACK_EDGE_THRESHOLD) return null;
+        synchronized (this) {
+            if (this.compiledMethod == null && !this.compilationFailed) {
+                compiledMethod = JitCompiler.compile(this);
+                if (compiledMethod == null) this.compilationFailed = true;
+                else this.compiledMethod = compiledMethod;
+            }
+            return this.compiledMethod;
+        }
+    }
+
+    /**
+     * Count a taken back edge of a loop.<br>
+     * The counter stops at the {@link JitCompiler#BACK_EDGE_THRESHOLD}, so it can not overflow and hot loops stop writing it.
+     *
+     * @return If the loop is hot and should be continued in compiled code
+     */
+    boolean countBackEdge() {
+        int backEdgeCount = this.backEdgeCount;
+        if (backEdgeCount >= JitCompiler.BACK_EDGE_THRESHOLD) return true;
+        this.backEdgeCount = backEdgeCount + 1;
+        return false;
+    }
+
+    /**
+     * Get the compiled form of this method which is entered at the given loop header.<br>
+     * The method is compiled on the first request for the loop header.
+     *
+     * @param context    The execution context
+     * @param entryIndex The index of the first instruction of the loop
+     * @return The compiled method or {@code null} if the loop should stay interpreted
+     */
+    @Nullable
+    public CompiledMethod getOsrMethod(final ExecutionContext context, final int entryIndex) {
+        if (!context.getExecutionManager().isJitEnabled()) return null;
+        AtomicReferenceArray<CompiledMethod> osrMethods = this.osrMethods;
+        CompiledMethod osrMethod = osrMethods == null ? null : osrMethods.get(entryIndex);
+        if (osrMethod == null) {
+            synchronized (this) {
+                osrMethods = this.osrMethods;
+                if (osrMethods == null) this.osrMethods = osrMethods = new AtomicReferenceArray<>(this.opcodes.length);
+                osrMethod = osrMethods.get(entryIndex);
+                if (osrMethod == null) {
+                    osrMethod = JitCompiler.compileOsr(this, entryIndex);
+                    if (osrMethod == null) osrMethod = OSR_FAILED;
+                    osrMethods.set(entryIndex, osrMethod);
+                }
+            }
+        }
+        return osrMethod == OSR_FAILED ? null : osrMethod;
+    }
+
+    /**
+     * @return The amount of instructions in this method
+     */
+    public int size() {
+        return this.opcodes.length;
+    }
+
+    public int getOpcode(final int index) {
+        return this.opcodes[index];
+    }
+
+    public AbstractInsnNode getInstruction(final int index) {
+        return this.instructions[index];
+    }
+
+    /**
+     * Get the reference of an instruction.<br>
+     * This is either the symbolic reference created by the {@link MethodLinker} or the resolved form set using {@link #quicken(int, Object)}.
+     *
+     * @param index The index of the instruction
+     * @return The reference or {@code null} if the instruction has none
+     */
+    @Nullable
+    public Object getReference(final int index) {
+        return this.references[index];
+    }
+
+    /**
+     * Replace the reference of an instruction with its resolved form.<br>
+     * Further executions of the instruction can use the resolved reference instead of resolving it again.<br>
+     * The resolved reference has to be immutable since the same method may be executed by multiple threads.
+     *
+     * @param index     The index of the instruction
+     * @param reference The resolved reference
+     */
+    public void quicken(final int index, final Object reference) {
+        this.references[index] = reference;
+    }
+
+    public int getLineNumber(final int index) {
+        return this.lineNumbers[index];
+    }
+
+    public HandlerTable getHandlerTable() {
+        return this.handlerTable;
+    }
+
+    /**
+     * Get the index of the first instruction following the given label.
+     *
+     * @param label The label to resolve
+     * @return The instruction index
+     */
+    public int getLabelIndex(final LabelNode label) {
+        Integer index = this.labelIndices.get(label);
+        if (index == null) throw new IllegalArgumentException("Label is not part of method " + this.method.name + this.method.desc);
+        return index;
+    }
+
+}
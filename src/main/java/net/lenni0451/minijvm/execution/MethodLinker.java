@@ -0,0 +1,149 @@
+package net.lenni0451.minijvm.execution;
+
+import net.lenni0451.commons.asm.Modifiers;
+import net.lenni0451.minijvm.LazyMethodNode;
+import net.lenni0451.minijvm.execution.optimizer.PeepholeOptimizer;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import net.lenni0451.minijvm.utils.MethodDescriptor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicVerifier;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts the ASM instruction list of a method into the compact form used by the {@link JVMMethodExecutor}.
+ */
+public class MethodLinker {
+
+    /**
+     * Link a method.
+     *
+     * @param owner    The owner of the method
+     * @param method   The method to link
+     * @param verify   If the method should be verified, methods which fail the verification are still linked but keep all dynamic type checks
+     * @param optimize If the code of the method should be optimized by the {@link PeepholeOptimizer} before it is linked
+     * @return The linked method
+     */
+    public static LinkedMethod link(final ExecutorClass owner, final MethodNode method, final boolean verify, final boolean optimize) {
+        if (method instanceof LazyMethodNode lazyMethod) lazyMethod.materialize();
+        //The method node can be shared with other managers and the verifier writes to it, see LazyMethodNode
+        synchronized (method) {
+            return linkBody(owner, method, verify, optimize);
+        }
+    }
+
+    private static LinkedMethod linkBody(final ExecutorClass owner, final MethodNode method, final boolean verify, final boolean optimize) {
+        MethodNode body = optimize ? PeepholeOptimizer.optimize(owner.getClassNode().name, method) : method;
+        Map<LabelNode, Integer> labelIndices = new HashMap<>();
+        int size = 0;
+        for (AbstractInsnNode instruction : body.instructions) {
+            if (instruction instanceof LabelNode label) labelIndices.put(label, size);
+            else if (instruction.getOpcode() >= 0) size++;
+        }
+
+        int[] opcodes = new int[size];
+        int[] operands = new int[size];
+        int[] increments = new int[size];
+        Object[] references = new Object[size];
+        AbstractInsnNode[] instructions = new AbstractInsnNode[size];
+        int[] lineNumbers = new int[size];
+        int index = 0;
+        int lineNumber = -1;
+        for (AbstractInsnNode instruction : body.instructions) {
+            if (instruction instanceof LineNumberNode lineNumberNode) {
+                lineNumber = lineNumberNode.line;
+                continue;
+            }
+            if (instruction.getOpcode() < 0) continue;
+
+            opcodes[index] = instruction.getOpcode();
+            instructions[index] = instruction;
+            lineNumbers[index] = lineNumber;
+            if (instruction.getOpcode() >= Opcodes.ICONST_M1 && instruction.getOpcode() <= Opcodes.ICONST_5) {
+                operands[index] = instruction.getOpcode() - Opcodes.ICONST_0;
+            } else if (instruction instanceof IntInsnNode intInsnNode) {
+                operands[index] = intInsnNode.operand;
+            } else if (instruction instanceof VarInsnNode varInsnNode) {
+                operands[index] = varInsnNode.var;
+            } else if (instruction instanceof IincInsnNode iincInsnNode) {
+                operands[index] = iincInsnNode.var;
+                increments[index] = iincInsnNode.incr;
+            } else if (instruction instanceof JumpInsnNode jumpInsnNode) {
+                operands[index] = labelIndices.get(jumpInsnNode.label);
+            } else if (instruction instanceof TableSwitchInsnNode tableSwitchInsnNode) {
+                operands[index] = labelIndices.get(tableSwitchInsnNode.dflt);
+                int[] targets = tableSwitchInsnNode.labels.stream().mapToInt(labelIndices::get).toArray();
+                references[index] = SwitchTable.table(tableSwitchInsnNode.min, targets, operands[index]);
+            } else if (instruction instanceof LookupSwitchInsnNode lookupSwitchInsnNode) {
+                operands[index] = labelIndices.get(lookupSwitchInsnNode.dflt);
+                int[] keys = lookupSwitchInsnNode.keys.stream().mapToInt(Integer::intValue).toArray();
+                int[] targets = lookupSwitchInsnNode.labels.stream().mapToInt(labelIndices::get).toArray();
+                references[index] = SwitchTable.lookup(keys, targets, operands[index]);
+            } else if (instruction instanceof LdcInsnNode ldcInsnNode) {
+                references[index] = ldcInsnNode.cst;
+            } else if (instruction instanceof MultiANewArrayInsnNode multiANewArrayInsnNode) {
+                operands[index] = multiANewArrayInsnNode.dims;
+                references[index] = multiANewArrayInsnNode;
+            } else if (instruction instanceof MethodInsnNode methodInsnNode && (methodInsnNode.getOpcode() == Opcodes.INVOKEVIRTUAL || methodInsnNode.getOpcode() == Opcodes.INVOKEINTERFACE)) {
+                references[index] = new InlineCache(methodInsnNode);
+            } else if (instruction instanceof FieldInsnNode || instruction instanceof MethodInsnNode || instruction instanceof InvokeDynamicInsnNode || instruction instanceof TypeInsnNode) {
+                references[index] = instruction;
+            }
+            index++;
+        }
+        boolean isStatic = Modifiers.has(method.access, Opcodes.ACC_STATIC);
+        MethodDescriptor descriptor = MethodDescriptor.of(method.desc);
+        byte[] parameterTypes = descriptor.getArgumentKinds();
+        int parameterSlots = descriptor.getArgumentSlots();
+        if (!isStatic) {
+            byte[] argumentKinds = parameterTypes;
+            parameterTypes = new byte[argumentKinds.length + 1];
+            parameterTypes[0] = ExecutorStack.REFERENCE;
+            System.arraycopy(argumentKinds, 0, parameterTypes, 1, argumentKinds.length);
+            parameterSlots++;
+        }
+        int[] code = Superinstructions.fuse(opcodes, labelIndices.values());
+        return new LinkedMethod(owner, method, body, descriptor, opcodes, code, operands, increments, references, instructions, lineNumbers, labelIndices, linkHandlers(body, labelIndices), parameterTypes, parameterSlots, verify && verify(owner, body));
+    }
+
+    /**
+     * Run the bytecode verifier over a method.<br>
+     * The verifier proves that every instruction finds values of the expected kind on the stack and in the local variables,
+     * the stack never over- or underflows and all values passed to methods, fields and returns match their descriptors.
+     * The verifier writes to the method node, so shared method nodes have to be locked by the caller (see {@link LazyMethodNode}).
+     *
+     * @param owner  The owner of the method
+     * @param method The method to verify
+     * @return If the method passed the verification
+     */
+    public static boolean verify(final ExecutorClass owner, final MethodNode method) {
+        try {
+            new Analyzer<>(new BasicVerifier()).analyze(owner.getClassNode().name, method);
+            return true;
+        } catch (AnalyzerException e) {
+            return false;
+        }
+    }
+
+    private static HandlerTable linkHandlers(final MethodNode method, final Map<LabelNode, Integer> labelIndices) {
+        int count = method.tryCatchBlocks == null ? 0 : method.tryCatchBlocks.size();
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        int[] handlers = new int[count];
+        String[] catchTypes = new String[count];
+        for (int i = 0; i < count; i++) {
+            TryCatchBlockNode tryCatchBlock = method.tryCatchBlocks.get(i);
+            starts[i] = labelIndices.get(tryCatchBlock.start);
+            ends[i] = labelIndices.get(tryCatchBlock.end);
+            handlers[i] = labelIndices.get(tryCatchBlock.handler);
+            catchTypes[i] = tryCatchBlock.type;
+        }
+        return new HandlerTable(starts, ends, handlers, catchTypes);
+    }
+
+}
@@ -0,0 +1,90 @@
+package net.lenni0451.minijvm.execution;
+
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import org.objectweb.asm.Opcodes;
+
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An {@link ExecutionListener} which counts how often two instructions are executed directly after each other.<br>
+ * Only instructions which follow each other in the same method are counted, jumps and method calls end a sequence.
+ * The counts can be used to find frequent instruction sequences which should be fused into {@link Superinstructions}.
+ */
+public class OpcodePairListener implements ExecutionListener {
+
+    private static final String[] OPCODE_NAMES = opcodeNames();
+
+    private final AtomicLongArray counts = new AtomicLongArray(256 * 256);
+    private final ThreadLocal<Previous> previous = ThreadLocal.withInitial(Previous::new);
+
+    @Override
+    public void onInstruction(final ExecutionContext context, final LinkedMethod method, final int index, final ExecutorStack stack) {
+        Previous previous = this.previous.get();
+        if (previous.method == method && previous.index == index - 1) {
+            this.counts.incrementAndGet(method.getOpcode(index - 1) << 8 | method.getOpcode(index));
+        }
+        previous.method = method;
+        previous.index = index;
+    }
+
+    /**
+     * Get how often an instruction has been directly followed by another instruction.
+     *
+     * @param first  The opcode of the first instruction
+     * @param second The opcode of the second instruction
+     * @return The amount of executions
+     */
+    public long getCount(final int first, final int second) {
+        return this.counts.get(first << 8 | second);
+    }
+
+    /**
+     * Print the most frequent opcode pairs.
+     *
+     * @param out   The stream to print to
+     * @param limit The maximum amount of pairs to print
+     */
+    public void dump(final PrintStream out, final int limit) {
+        List<Integer> pairs = new ArrayList<>();
+        for (int i = 0; i < this.counts.length(); i++) {
+            if (this.counts.get(i) > 0) pairs.add(i);
+        }
+        pairs.sort(Comparator.comparingLong((Integer pair) -> this.counts.get(pair)).reversed());
+        for (int i = 0; i < Math.min(limit, pairs.size()); i++) {
+            int pair = pairs.get(i);
+            out.printf("%12d  %s %s%n", this.counts.get(pair), OPCODE_NAMES[pair >> 8], OPCODE_NAMES[pair & 0xFF]);
+        }
+    }
+
+    private static String[] opcodeNames() {
+        String[] names = new String[256];
+        for (Field field : Opcodes.class.getFields()) {
+            if (field.getType() != int.class || !Modifier.isStatic(field.getModifiers())) continue;
+            String name = field.getName();
+            //Skip the constants which are not opcodes
+            if (name.startsWith("ACC_") || name.startsWith("T_") || name.startsWith("H_") || name.startsWith("F_") || name.startsWith("V") || name.startsWith("ASM") || name.startsWith("SOURCE_")) continue;
+            try {
+                int opcode = field.getInt(null);
+                if (opcode >= 0 && opcode < names.length) names[opcode] = name;
+            } catch (IllegalAccessException ignored) {
+            }
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == null) names[i] = String.valueOf(i);
+        }
+        return names;
+    }
+
+    private static class Previous {
+        private LinkedMethod method;
+        private int index;
+    }
+
+}
@@ -0,0 +1,71 @@
+package net.lenni0451.minijvm.execution;
+
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.stack.StackElement;
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.MethodNode;
+
+import javax.annotation.Nullable;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link ExecutionListener} which prints all events to a {@link PrintStream}.<br>
+ * Printing every instruction is very slow and should only be used for debugging.
+ */
+public class PrintingExecutionListener implements ExecutionListener {
+
+    private final PrintStream out;
+    private final boolean instructions;
+
+    public PrintingExecutionListener() {
+        this(System.out, true);
+    }
+
+    /**
+     * @param out          The stream to print to
+     * @param instructions If every executed instruction and the stack should be printed
+     */
+    public PrintingExecutionListener(final PrintStream out, final boolean instructions) {
+        this.out = out;
+        this.instructions = instructions;
+    }
+
+    @Override
+    public void onInstruction(final ExecutionContext context, final LinkedMethod method, final int index, final ExecutorStack stack) {
+        if (!this.instructions) return;
+        this.out.println("  " + method.getInstruction(index).getClass().getSimpleName() + " " + method.getOpcode(index) + " -> " + Arrays.stream(stack.getStack()).map(StackElement::toString).collect(Collectors.joining(", ")));
+    }
+
+    @Override
+    public void onMethodEnter(final ExecutionContext context, final ExecutorClass owner, final MethodNode method, @Nullable final ExecutorObject instance, final StackElement[] arguments) {
+        this.out.println("Invoking method: " + owner.getClassNode().name + " " + method.name + method.desc);
+    }
+
+    @Override
+    public void onMethodExit(final ExecutionContext context, final ExecutorClass owner, final MethodNode method, final ExecutionResult result) {
+        this.out.println("----- Finished " + owner.getClassNode().name + " " + method.name + method.desc + " execution with result " + result + " -----");
+    }
+
+    @Override
+    public void onClassLoad(final ExecutionContext context, final ExecutorClass clazz) {
+        this.out.println("Loaded class: " + clazz.getType());
+    }
+
+    @Override
+    public void onExceptionCreated(final ExecutionContext context, final Type exceptionType, @Nullable final String message) {
+        if (message == null) this.out.println("Creating new exception: " + exceptionType);
+        else this.out.println("Creating new exception: " + exceptionType + " with message: " + message);
+        for (ExecutionContext.StackFrame stackFrame : context.getStackFrames()) this.out.println(" -> " + stackFrame);
+    }
+
+    @Override
+    public void onExceptionThrown(final ExecutionContext context, final LinkedMethod method, final int index, final ExecutorObject exception) {
+        this.out.println("Exception " + exception.getClazz().getType() + " thrown in " + method.getOwner().getClassNode().name + "." + method.getMethod().name + method.getMethod().desc + " at instruction " + index);
+    }
+
+}
@@ -0,0 +1,14 @@
+package net.lenni0451.minijvm.execution;
+
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.stack.StackElement;
+
+/**
+ * The resolved form of a field instruction reference.<br>
+ * Holds the resolved field together with the stack type of its descriptor.
+ *
+ * @param field     The resolved field
+ * @param stackType The stack type of the field
+ */
+public record QuickField(ExecutorClass.ResolvedField field, Class<? extends StackElement> stackType) {
+}
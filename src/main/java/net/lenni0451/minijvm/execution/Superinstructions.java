@@ -0,0 +1,111 @@
+package net.lenni0451.minijvm.execution;
+
+import org.objectweb.asm.Opcodes;
+
+import java.util.Collection;
+
+/**
+ * Synthetic opcodes which execute a frequent sequence of instructions in a single dispatch of the interpreter.<br>
+ * Only the opcode of the first instruction of a sequence is replaced, all other instructions keep their opcodes and operands.
+ * The superinstruction reads the operands of the fused instructions and continues after the last one.<br>
+ * Sequences are never fused across a label, so they are never entered in the middle and never span exception handler ranges.
+ * The interpreter still updates the line number before a fused instruction which can throw,
+ * so stack traces do not depend on the optimized code keeping its line labels.<br>
+ * The candidates have been chosen using the counts of an {@link OpcodePairListener} (see {@code test.OpcodePairs}),
+ * only sequences whose fusion measurably speeds up the interpreter are fused.
+ */
+public class Superinstructions {
+
+    /**
+     * {@code aload; getfield}
+     */
+    public static final int ALOAD_GETFIELD = 256;
+    /**
+     * {@code aload; iload; iaload/laload/faload/daload/aaload/baload/caload/saload}
+     */
+    public static final int ALOAD_ILOAD_ARRAYLOAD = 257;
+    /**
+     * {@code iload; iload; if_icmpXX}
+     */
+    public static final int ILOAD_ILOAD_IF_ICMP = 258;
+    /**
+     * {@code iload; iconst/bipush/sipush; if_icmpXX}
+     */
+    public static final int ILOAD_CONST_IF_ICMP = 259;
+
+    /**
+     * Fuse the instruction sequences of a method.
+     *
+     * @param opcodes      The opcodes of the method
+     * @param labelIndices The indices of all instructions which follow a label
+     * @return The opcodes with the superinstructions
+     */
+    public static int[] fuse(final int[] opcodes, final Collection<Integer> labelIndices) {
+        boolean[] labelled = new boolean[opcodes.length + 1];
+        for (int index : labelIndices) labelled[index] = true;
+
+        int[] code = opcodes.clone();
+        int index = 0;
+        while (index < opcodes.length) {
+            int op0 = opcodes[index];
+            int op1 = index + 1 < opcodes.length && !labelled[index + 1] ? opcodes[index + 1] : -1;
+            int op2 = op1 != -1 && index + 2 < opcodes.length && !labelled[index + 2] ? opcodes[index + 2] : -1;
+            int superinstruction = -1;
+            int length = 0;
+            if (op0 == Opcodes.ALOAD && op1 == Opcodes.GETFIELD) {
+                superinstruction = ALOAD_GETFIELD;
+                length = 2;
+            } else if (op0 == Opcodes.ALOAD && op1 == Opcodes.ILOAD && isArrayLoad(op2)) {
+                superinstruction = ALOAD_ILOAD_ARRAYLOAD;
+                length = 3;
+            } else if (op0 == Opcodes.ILOAD && op1 == Opcodes.ILOAD && isIntCompare(op2)) {
+                superinstruction = ILOAD_ILOAD_IF_ICMP;
+                length = 3;
+            } else if (op0 == Opcodes.ILOAD && isIntConstant(op1) && isIntCompare(op2)) {
+                superinstruction = ILOAD_CONST_IF_ICMP;
+                length = 3;
+            }
+
+            if (superinstruction == -1) {
+                index++;
+            } else {
+                code[index] = superinstruction;
+                index += length;
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Evaluate the condition of an {@code if_icmpXX} instruction.
+     *
+     * @param opcode The opcode of the instruction
+     * @param value1 The first value
+     * @param value2 The second value
+     * @return If the instruction jumps
+     */
+    public static boolean compare(final int opcode, final int value1, final int value2) {
+        return switch (opcode) {
+            case Opcodes.IF_ICMPEQ -> value1 == value2;
+            case Opcodes.IF_ICMPNE -> value1 != value2;
+            case Opcodes.IF_ICMPLT -> value1 < value2;
+            case Opcodes.IF_ICMPGE -> value1 >= value2;
+            case Opcodes.IF_ICMPGT -> value1 > value2;
+            case Opcodes.IF_ICMPLE -> value1 <= value2;
+            default -> throw new IllegalArgumentException("Unknown compare opcode: " + opcode);
+        };
+    }
+
+    private static boolean isArrayLoad(final int opcode) {
+        return opcode >= Opcodes.IALOAD && opcode <= Opcodes.SALOAD;
+    }
+
+    private static boolean isIntCompare(final int opcode) {
+        return opcode >= Opcodes.IF_ICMPEQ && opcode <= Opcodes.IF_ICMPLE;
+    }
+
+    private static boolean isIntConstant(final int opcode) {
+        return (opcode >= Opcodes.ICONST_M1 && opcode <= Opcodes.ICONST_5) || opcode == Opcodes.BIPUSH || opcode == Opcodes.SIPUSH;
+    }
+
+}
@@ -0,0 +1,97 @@
+package net.lenni0451.minijvm.execution;
+
+import java.util.Arrays;
+
+/**
+ * The jump table of a {@code TABLESWITCH} or {@code LOOKUPSWITCH} instruction.<br>
+ * Table switches and dense lookup switches jump through a flat target array indexed by {@code key - min}.
+ * Sparse lookup switches use a binary search over their sorted keys.<br>
+ * All targets are instruction indices in the {@link LinkedMethod}.
+ */
+public class SwitchTable {
+
+    /**
+     * The maximum ratio between the range of the keys and the amount of keys for a lookup switch to be flattened into a table.
+     */
+    private static final int MAX_DENSITY = 3;
+
+    /**
+     * Create the jump table of a {@code TABLESWITCH} instruction.
+     *
+     * @param min           The smallest key
+     * @param targets       The targets for all keys from {@code min} to {@code min + targets.length - 1}
+     * @param defaultTarget The target if no key matches
+     * @return The switch table
+     */
+    public static SwitchTable table(final int min, final int[] targets, final int defaultTarget) {
+        return new SwitchTable(min, null, targets, defaultTarget);
+    }
+
+    /**
+     * Create the jump table of a {@code LOOKUPSWITCH} instruction.<br>
+     * If the keys are dense enough the switch is converted into a table switch.
+     *
+     * @param keys          The keys
+     * @param targets       The targets for the keys
+     * @param defaultTarget The target if no key matches
+     * @return The switch table
+     */
+    public static SwitchTable lookup(final int[] keys, final int[] targets, final int defaultTarget) {
+        sort(keys, targets);
+        if (keys.length == 0) return new SwitchTable(0, null, new int[0], defaultTarget);
+        long range = (long) keys[keys.length - 1] - keys[0] + 1;
+        if (range <= (long) keys.length * MAX_DENSITY) {
+            int[] tableTargets = new int[(int) range];
+            Arrays.fill(tableTargets, defaultTarget);
+            for (int i = 0; i < keys.length; i++) tableTargets[keys[i] - keys[0]] = targets[i];
+            return new SwitchTable(keys[0], null, tableTargets, defaultTarget);
+        }
+        return new SwitchTable(0, keys, targets, defaultTarget);
+    }
+
+    private static void sort(final int[] keys, final int[] targets) {
+        //The keys of a valid class file are already sorted, so this is only needed for generated code
+        for (int i = 1; i < keys.length; i++) {
+            int key = keys[i];
+            int target = targets[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                targets[j + 1] = targets[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            targets[j + 1] = target;
+        }
+    }
+
+    private final int min;
+    private final int[] keys;
+    private final int[] targets;
+    private final int defaultTarget;
+
+    private SwitchTable(final int min, final int[] keys, final int[] targets, final int defaultTarget) {
+        this.min = min;
+        this.keys = keys;
+        this.targets = targets;
+        this.defaultTarget = defaultTarget;
+    }
+
+    /**
+     * Get the jump target for the given key.
+     *
+     * @param key The key popped from the stack
+     * @return The instruction index to jump to
+     */
+    public int getTarget(final int key) {
+        if (this.keys == null) {
+            long index = (long) key - this.min;
+            if (index >= 0 && index < this.targets.length) return this.targets[(int) index];
+        } else {
+            int index = Arrays.binarySearch(this.keys, key);
+            if (index >= 0) return this.targets[index];
+        }
+        return this.defaultTarget;
+    }
+
+}
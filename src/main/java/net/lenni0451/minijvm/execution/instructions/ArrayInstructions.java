@@ -0,0 +1,120 @@
+package net.lenni0451.minijvm.execution.instructions;
+
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.ExecutionManager;
+import net.lenni0451.minijvm.exception.ExecutorException;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.execution.LinkedMethod;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.object.types.ArrayObject;
+import net.lenni0451.minijvm.stack.*;
+import net.lenni0451.minijvm.utils.ExceptionUtils;
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import net.lenni0451.minijvm.utils.ExecutorTypeUtils;
+import net.lenni0451.minijvm.utils.Types;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+
+import javax.annotation.Nullable;
+import java.util.function.IntFunction;
+
+/**
+ * Array creation and access instructions.<br>
+ * All methods return {@code null} if the instruction completed normally or the exception result that should be thrown.
+ */
+public class ArrayInstructions {
+
+    @Nullable
+    public static ExecutionResult load(final ExecutionContext context, final ExecutorStack stack, final int opcode) {
+        int index = stack.popInt();
+        ExecutorObject array = stack.popReference();
+        StackElement[] arrayElements = ((ArrayObject) array).getElements();
+        //TODO: Type checks
+        if (index < 0 || index >= arrayElements.length) {
+            return ExceptionUtils.newException(context, Types.ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION, "Index: " + index + ", Length: " + arrayElements.length);
+        }
+        StackElement value = arrayElements[index];
+        if (opcode == Opcodes.BALOAD) stack.pushInt((byte) ((StackInt) value).value());
+        else if (opcode == Opcodes.CALOAD) stack.pushInt((char) ((StackInt) value).value());
+        else if (opcode == Opcodes.SALOAD) stack.pushInt((short) ((StackInt) value).value());
+        else stack.pushSized(value);
+        return null;
+    }
+
+    @Nullable
+    public static ExecutionResult store(final ExecutionContext context, final ExecutorStack stack, final int opcode) {
+        StackElement value = stack.popSized();
+        int index = stack.popInt();
+        ExecutorObject array = stack.popReference();
+        //TODO: Type checks
+        StackElement[] arrayElements = ((ArrayObject) array).getElements();
+        if (index < 0 || index >= arrayElements.length) {
+            return ExceptionUtils.newException(context, Types.ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION, "Index: " + index + ", Length: " + arrayElements.length);
+        }
+        if (opcode == Opcodes.BASTORE) value = StackInt.of((byte) ((StackInt) value).value());
+        else if (opcode == Opcodes.CASTORE) value = StackInt.of((char) ((StackInt) value).value());
+        else if (opcode == Opcodes.SASTORE) value = StackInt.of((short) ((StackInt) value).value());
+        arrayElements[index] = value;
+        return null;
+    }
+
+    public static void length(final ExecutionContext context, final ExecutorStack stack) {
+        ExecutorObject array = stack.popReference();
+        if (!(array instanceof ArrayObject arrayObject)) {
+            throw new ExecutorException(context, "Expected array but got " + (array == null ? "null" : array.getClass().getSimpleName()));
+        }
+        stack.pushInt(arrayObject.getElements().length);
+    }
+
+    public static void newArray(final ExecutionContext context, final ExecutorStack stack, final int type) {
+        int length = stack.popInt();
+        switch (type) {
+            case Opcodes.T_BOOLEAN -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(boolean[].class), length, () -> StackInt.ZERO));
+            case Opcodes.T_BYTE -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(byte[].class), length, () -> StackInt.ZERO));
+            case Opcodes.T_CHAR -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(char[].class), length, () -> StackInt.ZERO));
+            case Opcodes.T_SHORT -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(short[].class), length, () -> StackInt.ZERO));
+            case Opcodes.T_INT -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(int[].class), length, () -> StackInt.ZERO));
+            case Opcodes.T_LONG -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(long[].class), length, () -> StackLong.ZERO));
+            case Opcodes.T_FLOAT -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(float[].class), length, () -> StackFloat.ZERO));
+            case Opcodes.T_DOUBLE -> stack.pushSized(ExecutorTypeUtils.newArray(context, Type.getType(double[].class), length, () -> StackDouble.ZERO));
+            default -> throw new ExecutorException(context, "Unknown array type: " + type);
+        }
+    }
+
+    public static void newObjectArray(final ExecutionContext context, final ExecutorStack stack, final LinkedMethod method, final int index) {
+        int length = stack.popInt();
+        ExecutorClass arrayClass = ObjectInstructions.resolveClass(context, method, index);
+        stack.pushReference(context.getExecutionManager().instantiateArray(context, arrayClass, length));
+    }
+
+    @Nullable
+    public static ExecutionResult newMultiArray(final ExecutionContext context, final ExecutorStack stack, final MultiANewArrayInsnNode multiANewArrayInsnNode) {
+        ExecutionManager manager = context.getExecutionManager();
+        Type arrayType = Type.getType(multiANewArrayInsnNode.desc);
+        Type elementType = arrayType.getElementType();
+        if (arrayType.getSort() != Type.ARRAY && arrayType.getDimensions() != multiANewArrayInsnNode.dims) {
+            throw new ExecutorException(context, "Expected array type with " + multiANewArrayInsnNode.dims + " dimensions but got " + arrayType);
+        }
+        IntFunction<StackElement> arrayInitializer = null;
+        for (int i = multiANewArrayInsnNode.dims - 1; i >= 1; i--) {
+            int dimensions = stack.popInt();
+            if (dimensions < 0) {
+                return ExceptionUtils.newException(context, Types.NEGATIVE_ARRAY_SIZE_EXCEPTION, "Dimension: " + dimensions);
+            }
+            ExecutorClass arrayClass = manager.loadClass(context, Types.asArray(elementType, i));
+            final IntFunction<StackElement> finalArrayInitializer = arrayInitializer;
+            arrayInitializer = j -> {
+                if (finalArrayInitializer == null) {
+                    return new StackObject(manager.instantiateArray(context, arrayClass, dimensions));
+                } else {
+                    return new StackObject(manager.instantiateArray(context, arrayClass, dimensions, finalArrayInitializer));
+                }
+            };
+        }
+        stack.pushReference(manager.instantiateArray(context, manager.loadClass(context, arrayType), stack.popInt(), arrayInitializer));
+        return null;
+    }
+
+}
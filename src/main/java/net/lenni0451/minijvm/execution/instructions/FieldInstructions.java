@@ -0,0 +1,155 @@
+package net.lenni0451.minijvm.execution.instructions;
+
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.execution.LinkedMethod;
+import net.lenni0451.minijvm.execution.QuickField;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.stack.StackElement;
+import net.lenni0451.minijvm.utils.ExceptionUtils;
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import net.lenni0451.minijvm.utils.ExecutorTypeUtils;
+import net.lenni0451.minijvm.utils.Types;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.FieldInsnNode;
+
+import javax.annotation.Nullable;
+
+/**
+ * Static and instance field access instructions.<br>
+ * The field is resolved against the owner of the instruction on the first execution and the instruction is quickened to a {@link QuickField}
+ * once the owner is initialized.<br>
+ * All methods return {@code null} if the instruction completed normally or the exception result that should be thrown.
+ */
+public class FieldInstructions {
+
+    //TODO: Access checks for all fields and methods
+    @Nullable
+    public static ExecutionResult getStatic(final ExecutionContext context, final ExecutorStack stack, final LinkedMethod method, final int index) {
+        ExecutionResult initResult = initializeOwner(context, method, index);
+        if (initResult != null) return initResult;
+        QuickField field = resolveField(context, method, index);
+        if (field == null) return noSuchField(context, method, index);
+        initResult = initializeDeclaringClass(context, method, index, field);
+        if (initResult != null) return initResult;
+        stack.pushSized(field.field().get());
+        return null;
+    }
+
+    @Nullable
+    public static ExecutionResult putStatic(final ExecutionContext context, final ExecutorStack stack, final LinkedMethod method, final int index) {
+        ExecutionResult initResult = initializeOwner(context, method, index);
+        if (initResult != null) return initResult;
+        QuickField field = resolveField(context, method, index);
+        if (field == null) return noSuchField(context, method, index);
+        initResult = initializeDeclaringClass(context, method, index, field);
+        if (initResult != null) return initResult;
+        StackElement value = stack.popSized();
+        if (!method.isVerified()) ExecutorTypeUtils.verifyType(context, value, field.stackType());
+        field.field().set(value);
+        return null;
+    }
+
+    @Nullable
+    public static ExecutionResult getField(final ExecutionContext context, final ExecutorStack stack, final LinkedMethod method, final int index) {
+        ExecutorObject object = stack.popReference();
+        if (object == null) {
+            return ExceptionUtils.newException(context, Types.NULL_POINTER_EXCEPTION, "Tried to access field of null object");
+        }
+        ExecutionResult initResult = initializeOwner(context, method, index);
+        if (initResult != null) return initResult;
+        QuickField field = resolveInstanceField(context, method, index, resolveField(context, method, index), object);
+        if (field == null) return noSuchField(context, method, index);
+        if (field.field().isStatic()) return expectedInstanceField(context, method, index);
+        ExecutorClass.ResolvedField resolvedField = field.field();
+        if (resolvedField.kind() == ExecutorStack.REFERENCE) stack.pushReference(object.getReference(resolvedField.slot()));
+        else stack.pushPrimitive(resolvedField.kind(), object.getPrimitive(resolvedField.slot()));
+        return null;
+    }
+
+    @Nullable
+    public static ExecutionResult putField(final ExecutionContext context, final ExecutorStack stack, final LinkedMethod method, final int index) {
+        //The value is popped with the type of the field, so the field has to be resolved before the stack is modified
+        ExecutionResult initResult = initializeOwner(context, method, index);
+        if (initResult != null) return initResult;
+        QuickField field = resolveField(context, method, index);
+        if (field == null) return noSuchField(context, method, index);
+        byte kind = field.field().kind();
+        ExecutorObject object = stack.peekReference(kind == ExecutorStack.LONG || kind == ExecutorStack.DOUBLE ? 2 : 1);
+        if (object == null) {
+            return ExceptionUtils.newException(context, Types.NULL_POINTER_EXCEPTION, "Tried to access field of null object");
+        }
+        field = resolveInstanceField(context, method, index, field, object);
+        if (field == null) return noSuchField(context, method, index);
+        if (field.field().isStatic()) return expectedInstanceField(context, method, index);
+        int slot = field.field().slot();
+        if (kind == ExecutorStack.REFERENCE) object.setReference(slot, stack.popReference());
+        else object.setPrimitive(slot, stack.popPrimitive(kind));
+        stack.popReference();
+        return null;
+    }
+
+    /**
+     * Initialize the owner of a field instruction which has not been quickened yet.<br>
+     * Instructions are only quickened once their owner is initialized, so the quickened instruction does not need to check it again.
+     */
+    @Nullable
+    private static ExecutionResult initializeOwner(final ExecutionContext context, final LinkedMethod method, final int index) {
+        if (method.getReference(index) instanceof QuickField) return null;
+        FieldInsnNode fieldInsnNode = (FieldInsnNode) method.getInstruction(index);
+        return context.getExecutionManager().loadClass(context, Type.getObjectType(fieldInsnNode.owner)).invokeStaticInit(context);
+    }
+
+    /**
+     * Initialize the class declaring a static field.<br>
+     * The field can be declared in a super interface of the owner, which is not initialized together with the owner.
+     * Quickened instructions have already initialized it.
+     */
+    @Nullable
+    private static ExecutionResult initializeDeclaringClass(final ExecutionContext context, final LinkedMethod method, final int index, final QuickField field) {
+        if (method.getReference(index) == field) return null;
+        return field.field().owner().invokeStaticInit(context);
+    }
+
+    @Nullable
+    private static QuickField resolveField(final ExecutionContext context, final LinkedMethod method, final int index) {
+        if (method.getReference(index) instanceof QuickField quickField) return quickField;
+
+        FieldInsnNode fieldInsnNode = (FieldInsnNode) method.getInstruction(index);
+        ExecutorClass owner = context.getExecutionManager().loadClass(context, Type.getObjectType(fieldInsnNode.owner));
+        ExecutorClass.ResolvedField field = owner.findField(context, fieldInsnNode.name, fieldInsnNode.desc);
+        if (field == null) return null;
+        QuickField quickField = new QuickField(field, ExecutorTypeUtils.typeToStackType(Type.getType(fieldInsnNode.desc)));
+        //While the owner is being initialized by this thread, other threads have to wait for the initialization
+        if (owner.isInitialized() && field.owner().isInitialized()) method.quicken(index, quickField);
+        return quickField;
+    }
+
+    /**
+     * Resolve an instance field for the given object.<br>
+     * Since the field layout of a class is a prefix of the layout of all its subclasses, the slot resolved from the
+     * owner of the instruction is valid for all objects which are an instance of the declaring class.
+     * Objects of unrelated classes are looked up by name.
+     */
+    @Nullable
+    private static QuickField resolveInstanceField(final ExecutionContext context, final LinkedMethod method, final int index, @Nullable final QuickField field, final ExecutorObject object) {
+        ExecutorClass receiverClass = object.getClazz();
+        if (field == null || receiverClass == field.field().owner() || receiverClass.isSubclassOf(field.field().owner())) return field;
+
+        FieldInsnNode fieldInsnNode = (FieldInsnNode) method.getInstruction(index);
+        ExecutorClass.ResolvedField receiverField = receiverClass.findField(context, fieldInsnNode.name, fieldInsnNode.desc);
+        if (receiverField == null) return null;
+        return new QuickField(receiverField, field.stackType());
+    }
+
+    private static ExecutionResult noSuchField(final ExecutionContext context, final LinkedMethod method, final int index) {
+        return ExceptionUtils.newException(context, Types.NO_SUCH_FIELD_ERROR, ((FieldInsnNode) method.getInstruction(index)).name);
+    }
+
+    private static ExecutionResult expectedInstanceField(final ExecutionContext context, final LinkedMethod method, final int index) {
+        FieldInsnNode fieldInsnNode = (FieldInsnNode) method.getInstruction(index);
+        return ExceptionUtils.newException(context, Types.INCOMPATIBLE_CLASS_CHANGE_ERROR, "Expected non-static field " + fieldInsnNode.owner + "." + fieldInsnNode.name);
+    }
+
+}
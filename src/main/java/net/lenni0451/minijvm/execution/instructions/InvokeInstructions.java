@@ -0,0 +1,173 @@
+package net.lenni0451.minijvm.execution.instructions;
+
+import net.lenni0451.commons.asm.Modifiers;
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.execution.BootstrapMethodResolver;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.execution.Executor;
+import net.lenni0451.minijvm.execution.InlineCache;
+import net.lenni0451.minijvm.execution.InvokeDynamicCache;
+import net.lenni0451.minijvm.execution.LinkedMethod;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.object.types.CallSiteObject;
+import net.lenni0451.minijvm.object.types.MethodHandleObject;
+import net.lenni0451.minijvm.stack.StackElement;
+import net.lenni0451.minijvm.utils.ExceptionUtils;
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import net.lenni0451.minijvm.utils.ExecutorTypeUtils;
+import net.lenni0451.minijvm.utils.MethodDescriptor;
+import net.lenni0451.minijvm.utils.Types;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import javax.annotation.Nullable;
+
+/**
+ * Method invocation instructions.<br>
+ * All methods return {@code null} if the invocation completed normally or the exception result that should be thrown.<br>
+ * Invoking an interpreted method also returns {@code null}, the interpreter then continues in the new stack frame.
+ */
+public class InvokeInstructions {
+
+    /**
+     * Execute an {@code INVOKEVIRTUAL} or {@code INVOKEINTERFACE} instruction.<br>
+     * The target method is looked up in the inline cache of the call site.
+     */
+    @Nullable
+    public static ExecutionResult invokeVirtual(final ExecutionContext context, final ExecutorStack stack, final InlineCache inlineCache) {
+        MethodInsnNode methodInsnNode = inlineCache.getInstruction();
+        ExecutorObject ownerObject = stack.peekReference(inlineCache.getDescriptor().getArgumentSlots());
+        if (ownerObject == null) {
+            return ExceptionUtils.newException(context, Types.NULL_POINTER_EXCEPTION, "Tried to invoke method on null object");
+        }
+        //TODO: Interface checks
+        ExecutorClass.ResolvedMethod methodNode = inlineCache.lookup(context, ownerObject.getClazz());
+        return invokeInstance(context, stack, methodInsnNode, methodNode, ownerObject);
+    }
+
+    /**
+     * Execute an {@code INVOKESPECIAL} instruction.<br>
+     * The target method does not depend on the receiver, so the instruction is quickened to the resolved method.
+     */
+    @Nullable
+    public static ExecutionResult invokeSpecial(final ExecutionContext context, final ExecutorStack stack, final LinkedMethod method, final int index) {
+        MethodInsnNode methodInsnNode = (MethodInsnNode) method.getInstruction(index);
+        ExecutionResult initResult = initializeOwner(context, method, index, methodInsnNode);
+        if (initResult != null) return initResult;
+        MethodDescriptor descriptor = method.getReference(index) instanceof ExecutorClass.ResolvedMethod resolvedMethod ? resolvedMethod.getDescriptor() : MethodDescriptor.of(methodInsnNode.desc);
+        ExecutorObject ownerObject = stack.peekReference(descriptor.getArgumentSlots());
+        if (ownerObject == null) {
+            return ExceptionUtils.newException(context, Types.NULL_POINTER_EXCEPTION, "Tried to invoke method on null object");
+        }
+        ExecutorClass.ResolvedMethod methodNode = resolveMethod(context, method, index, methodInsnNode);
+        return invokeInstance(context, stack, methodInsnNode, methodNode, ownerObject);
+    }
+
+    @Nullable
+    private static ExecutionResult invokeInstance(final ExecutionContext context, final ExecutorStack stack, final MethodInsnNode methodInsnNode, @Nullable final ExecutorClass.ResolvedMethod methodNode, final ExecutorObject ownerObject) {
+        if (methodNode == null) {
+            return ExceptionUtils.newException(context, Types.NO_SUCH_METHOD_ERROR, methodInsnNode.owner + "." + methodInsnNode.name + methodInsnNode.desc + " in " + ownerObject.getClazz().getClassNode().name);
+        } else if (Modifiers.has(methodNode.method().access, Opcodes.ACC_STATIC)) {
+            return ExceptionUtils.newException(context, Types.INCOMPATIBLE_CLASS_CHANGE_ERROR, "Expecting non-static method " + methodInsnNode.owner + "." + methodInsnNode.name + methodInsnNode.desc);
+        }
+        ExecutionResult invokeResult = Executor.invoke(context, methodNode, stack);
+        return handleResult(context, stack, invokeResult, methodNode);
+    }
+
+    /**
+     * Execute an {@code INVOKESTATIC} instruction.<br>
+     * The instruction is quickened to the resolved method on the first execution after the owner has been initialized.
+     */
+    @Nullable
+    public static ExecutionResult invokeStatic(final ExecutionContext context, final ExecutorStack stack, final LinkedMethod method, final int index) {
+        MethodInsnNode methodInsnNode = (MethodInsnNode) method.getInstruction(index);
+        ExecutionResult initResult = initializeOwner(context, method, index, methodInsnNode);
+        if (initResult != null) return initResult;
+        ExecutorClass.ResolvedMethod methodNode = resolveMethod(context, method, index, methodInsnNode);
+        if (methodNode == null) {
+            return ExceptionUtils.newException(context, Types.NO_SUCH_METHOD_ERROR, methodInsnNode.owner + "." + methodInsnNode.name + methodInsnNode.desc);
+        } else if (!Modifiers.has(methodNode.method().access, Opcodes.ACC_STATIC)) {
+            return ExceptionUtils.newException(context, Types.INCOMPATIBLE_CLASS_CHANGE_ERROR, "Expecting static method " + methodInsnNode.owner + "." + methodInsnNode.name + methodInsnNode.desc);
+        }
+        ExecutionResult invokeResult = Executor.invoke(context, methodNode, stack);
+        return handleResult(context, stack, invokeResult, methodNode);
+    }
+
+    /**
+     * Initialize the owner of an invoke instruction which has not been quickened yet.<br>
+     * Instructions are only quickened once their owner is initialized, so the quickened instruction does not need to check it again.
+     */
+    @Nullable
+    private static ExecutionResult initializeOwner(final ExecutionContext context, final LinkedMethod method, final int index, final MethodInsnNode methodInsnNode) {
+        if (method.getReference(index) instanceof ExecutorClass.ResolvedMethod) return null;
+        return context.getExecutionManager().loadClass(context, Type.getObjectType(methodInsnNode.owner)).invokeStaticInit(context);
+    }
+
+    @Nullable
+    private static ExecutorClass.ResolvedMethod resolveMethod(final ExecutionContext context, final LinkedMethod method, final int index, final MethodInsnNode methodInsnNode) {
+        if (method.getReference(index) instanceof ExecutorClass.ResolvedMethod resolvedMethod) return resolvedMethod;
+
+        ExecutorClass ownerClass = context.getExecutionManager().loadClass(context, Type.getObjectType(methodInsnNode.owner));
+        ExecutorClass.ResolvedMethod resolvedMethod = ownerClass.findMethod(context, methodInsnNode.name, methodInsnNode.desc);
+        //While the owner is being initialized by this thread, other threads have to wait for the initialization
+        if (resolvedMethod != null && ownerClass.isInitialized()) method.quicken(index, resolvedMethod);
+        return resolvedMethod;
+    }
+
+    /**
+     * Execute an {@code INVOKEDYNAMIC} instruction.<br>
+     * The call site is bootstrapped on the first execution and cached by the instruction index.
+     */
+    @Nullable
+    public static ExecutionResult invokeDynamic(final ExecutionContext context, final ExecutorStack stack, final ExecutorClass currentClass, final MethodNode currentMethod, final int index, final InvokeDynamicInsnNode indyNode) {
+        // Get or create CallSite from cache
+        InvokeDynamicCache cache = context.getExecutionManager().getInvokeDynamicCache();
+        String className = currentClass.getClassNode().name;
+        String methodSignature = currentMethod.name + currentMethod.desc;
+        CallSiteObject callSite = cache.get(className, methodSignature, index);
+        if (callSite == null) {
+            // Bootstrap method not yet invoked - resolve the call site
+            callSite = BootstrapMethodResolver.resolve(context, indyNode, currentClass);
+            cache.put(className, methodSignature, index, callSite);
+        }
+
+        // Get target MethodHandle from CallSite
+        MethodHandleObject target = callSite.getTarget();
+        if (target == null) {
+            return ExceptionUtils.newException(context, Types.NULL_POINTER_EXCEPTION, "CallSite target is null");
+        }
+
+        // Invoke the method handle
+        MethodDescriptor descriptor = MethodDescriptor.of(indyNode.desc);
+        StackElement[] arguments = Executor.popArguments(context, stack, descriptor);
+        ExecutionResult indyResult = target.invoke(context, arguments);
+
+        // Handle return value or exception
+        if (indyResult.hasException()) {
+            return indyResult;
+        } else if (indyResult.hasReturnValue() && !descriptor.isVoid()) {
+            ExecutorTypeUtils.verifyType(context, indyResult.getReturnValue(), descriptor.getReturnStackType());
+            stack.pushSized(indyResult.getReturnValue());
+        }
+        return null;
+    }
+
+    @Nullable
+    private static ExecutionResult handleResult(final ExecutionContext context, final ExecutorStack stack, @Nullable final ExecutionResult invokeResult, final ExecutorClass.ResolvedMethod method) {
+        if (invokeResult == null) {
+            //The method is executed in a new interpreter frame
+            return null;
+        } else if (invokeResult.hasReturnValue()) {
+            ExecutorTypeUtils.verifyType(context, invokeResult.getReturnValue(), method.getDescriptor().getReturnStackType());
+            stack.pushSized(invokeResult.getReturnValue());
+        } else if (invokeResult.hasException()) {
+            return invokeResult;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,110 @@
+package net.lenni0451.minijvm.execution.instructions;
+
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Arithmetic, conversion and comparison instructions for long, float and double values.<br>
+ * The int variants are cheap enough to be handled directly in the interpreter loop.
+ */
+public class MathInstructions {
+
+    public static void arithmetic(final ExecutorStack stack, final int opcode) {
+        switch (opcode) {
+            case Opcodes.LADD, Opcodes.LSUB, Opcodes.LMUL, Opcodes.LDIV, Opcodes.LREM, Opcodes.LAND, Opcodes.LOR, Opcodes.LXOR -> {
+                long long1 = stack.popLong();
+                long long2 = stack.popLong();
+                stack.pushLong(switch (opcode) {
+                    case Opcodes.LADD -> long2 + long1;
+                    case Opcodes.LSUB -> long2 - long1;
+                    case Opcodes.LMUL -> long2 * long1;
+                    case Opcodes.LDIV -> long2 / long1;
+                    case Opcodes.LREM -> long2 % long1;
+                    case Opcodes.LAND -> long2 & long1;
+                    case Opcodes.LOR -> long2 | long1;
+                    default -> long2 ^ long1;
+                });
+            }
+            case Opcodes.LSHL, Opcodes.LSHR, Opcodes.LUSHR -> {
+                int int1 = stack.popInt();
+                long long1 = stack.popLong();
+                stack.pushLong(switch (opcode) {
+                    case Opcodes.LSHL -> long1 << int1;
+                    case Opcodes.LSHR -> long1 >> int1;
+                    default -> long1 >>> int1;
+                });
+            }
+            case Opcodes.FADD, Opcodes.FSUB, Opcodes.FMUL, Opcodes.FDIV, Opcodes.FREM -> {
+                float float1 = stack.popFloat();
+                float float2 = stack.popFloat();
+                stack.pushFloat(switch (opcode) {
+                    case Opcodes.FADD -> float2 + float1;
+                    case Opcodes.FSUB -> float2 - float1;
+                    case Opcodes.FMUL -> float2 * float1;
+                    case Opcodes.FDIV -> float2 / float1;
+                    default -> float2 % float1;
+                });
+            }
+            case Opcodes.DADD, Opcodes.DSUB, Opcodes.DMUL, Opcodes.DDIV, Opcodes.DREM -> {
+                double double1 = stack.popDouble();
+                double double2 = stack.popDouble();
+                stack.pushDouble(switch (opcode) {
+                    case Opcodes.DADD -> double2 + double1;
+                    case Opcodes.DSUB -> double2 - double1;
+                    case Opcodes.DMUL -> double2 * double1;
+                    case Opcodes.DDIV -> double2 / double1;
+                    default -> double2 % double1;
+                });
+            }
+            case Opcodes.LNEG -> stack.pushLong(-stack.popLong());
+            case Opcodes.FNEG -> stack.pushFloat(-stack.popFloat());
+            case Opcodes.DNEG -> stack.pushDouble(-stack.popDouble());
+            default -> throw new IllegalStateException("Unknown arithmetic opcode: " + opcode);
+        }
+    }
+
+    public static void convert(final ExecutorStack stack, final int opcode) {
+        switch (opcode) {
+            case Opcodes.I2L -> stack.pushLong(stack.popInt());
+            case Opcodes.I2F -> stack.pushFloat(stack.popInt());
+            case Opcodes.I2D -> stack.pushDouble(stack.popInt());
+            case Opcodes.L2I -> stack.pushInt((int) stack.popLong());
+            case Opcodes.L2F -> stack.pushFloat(stack.popLong());
+            case Opcodes.L2D -> stack.pushDouble(stack.popLong());
+            case Opcodes.F2I -> stack.pushInt((int) stack.popFloat());
+            case Opcodes.F2L -> stack.pushLong((long) stack.popFloat());
+            case Opcodes.F2D -> stack.pushDouble(stack.popFloat());
+            case Opcodes.D2I -> stack.pushInt((int) stack.popDouble());
+            case Opcodes.D2L -> stack.pushLong((long) stack.popDouble());
+            case Opcodes.D2F -> stack.pushFloat((float) stack.popDouble());
+            case Opcodes.I2B -> stack.pushInt((byte) stack.popInt());
+            case Opcodes.I2C -> stack.pushInt((char) stack.popInt());
+            case Opcodes.I2S -> stack.pushInt((short) stack.popInt());
+            default -> throw new IllegalStateException("Unknown conversion opcode: " + opcode);
+        }
+    }
+
+    public static void compare(final ExecutorStack stack, final int opcode) {
+        switch (opcode) {
+            case Opcodes.LCMP -> {
+                long long1 = stack.popLong();
+                long long2 = stack.popLong();
+                stack.pushInt(Long.compare(long2, long1));
+            }
+            case Opcodes.FCMPL, Opcodes.FCMPG -> {
+                float float1 = stack.popFloat();
+                float float2 = stack.popFloat();
+                if (Float.isNaN(float1) || Float.isNaN(float2)) stack.pushInt(opcode == Opcodes.FCMPL ? -1 : 1);
+                else stack.pushInt(Float.compare(float2, float1));
+            }
+            case Opcodes.DCMPL, Opcodes.DCMPG -> {
+                double double1 = stack.popDouble();
+                double double2 = stack.popDouble();
+                if (Double.isNaN(double1) || Double.isNaN(double2)) stack.pushInt(opcode == Opcodes.DCMPL ? -1 : 1);
+                else stack.pushInt(Double.compare(double2, double1));
+            }
+            default -> throw new IllegalStateException("Unknown compare opcode: " + opcode);
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package net.lenni0451.minijvm.execution.instructions;
+
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.exception.ExecutorException;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.execution.LinkedMethod;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.utils.ExceptionUtils;
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import net.lenni0451.minijvm.utils.Types;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import javax.annotation.Nullable;
+
+/**
+ * Object creation, type check and throw instructions.<br>
+ * All methods returning an {@link ExecutionResult} return {@code null} if the instruction completed normally.
+ */
+public class ObjectInstructions {
+
+    /**
+     * Execute a {@code NEW} instruction.<br>
+     * The quickened class can still be initializing in another thread, so the initialization is checked on every execution.
+     */
+    @Nullable
+    public static ExecutionResult newObject(final ExecutionContext context, final ExecutorStack stack, final LinkedMethod method, final int index) {
+        ExecutorClass newClass = resolveClass(context, method, index);
+        if (!newClass.isInitialized()) {
+            ExecutionResult initResult = newClass.invokeStaticInit(context);
+            if (initResult != null) return initResult;
+        }
+        stack.pushReference(context.getExecutionManager().instantiate(context, newClass));
+        return null;
+    }
+
+    public static ExecutionResult throwException(final ExecutionContext context, final ExecutorStack stack) {
+        ExecutorObject object = stack.popReference();
+        if (object == null) {
+            return ExceptionUtils.newException(context, Types.NULL_POINTER_EXCEPTION);
+        } else if (!object.getClazz().isInstance(context, Types.THROWABLE)) {
+            throw new ExecutorException(context, "Expected throwable but got " + object.getClazz().getClassNode().name);
+        } else {
+            return ExecutionResult.exception(object);
+        }
+    }
+
+    @Nullable
+    public static ExecutionResult checkCast(final ExecutionContext context, final ExecutorStack stack, final LinkedMethod method, final int index) {
+        ExecutorObject object = stack.popReference();
+        if (object != null) {
+            ExecutorClass castClass = resolveClass(context, method, index);
+            if (!object.getClazz().isInstance(context, castClass)) {
+                return ExceptionUtils.newException(context, Types.CLASS_CAST_EXCEPTION, "Cannot cast " + object.getClazz().getClassNode().name + " to " + castClass.getClassNode().name);
+            }
+        }
+        stack.pushReference(object);
+        return null;
+    }
+
+    public static void instanceOf(final ExecutionContext context, final ExecutorStack stack, final LinkedMethod method, final int index) {
+        ExecutorObject object = stack.popReference();
+        if (object == null) {
+            stack.pushInt(0);
+        } else {
+            boolean isInstance = object.getClazz().isInstance(context, resolveClass(context, method, index));
+            stack.pushInt(isInstance ? 1 : 0);
+        }
+    }
+
+    /**
+     * Resolve the class referenced by a type instruction.<br>
+     * The instruction is quickened to the loaded class on the first execution.
+     */
+    static ExecutorClass resolveClass(final ExecutionContext context, final LinkedMethod method, final int index) {
+        if (method.getReference(index) instanceof ExecutorClass executorClass) return executorClass;
+
+        TypeInsnNode typeInsnNode = (TypeInsnNode) method.getInstruction(index);
+        Type type = Type.getObjectType(typeInsnNode.desc);
+        if (typeInsnNode.getOpcode() == Opcodes.ANEWARRAY) type = Types.asArray(type, 1);
+        ExecutorClass executorClass = context.getExecutionManager().loadClass(context, type);
+        method.quicken(index, executorClass);
+        return executorClass;
+    }
+
+}
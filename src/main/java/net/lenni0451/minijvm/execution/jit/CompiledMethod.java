@@ -0,0 +1,37 @@
+package net.lenni0451.minijvm.execution.jit;
+
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import net.lenni0451.minijvm.utils.MethodDescriptor;
+
+/**
+ * A method which has been compiled to host bytecode by the {@link JitCompiler}.
+ */
+public interface CompiledMethod {
+
+    /**
+     * Convert the result of a compiled method to a result containing the return value.
+     *
+     * @param result     The result of the compiled method
+     * @param frame      The frame of the compiled method
+     * @param descriptor The descriptor of the method
+     * @return The result with the return value taken from the frame
+     */
+    static ExecutionResult toResult(final ExecutionResult result, final ExecutorStack frame, final MethodDescriptor descriptor) {
+        if (result.hasException() || descriptor.isVoid()) return result;
+        return ExecutionResult.returnValue(frame.popSized());
+    }
+
+    /**
+     * Execute the compiled method.<br>
+     * The current stack frame of the context has to belong to the method.
+     * Like in the interpreter, the return value is left on the operand stack of the frame, so no {@link net.lenni0451.minijvm.stack.StackElement} has to be created.
+     *
+     * @param context The execution context
+     * @param frame   The frame of the method with the receiver and the arguments in its local variables
+     * @return The exception result if the method threw an exception, otherwise {@link ExecutionResult#voidResult()}
+     */
+    ExecutionResult execute(final ExecutionContext context, final ExecutorStack frame);
+
+}
@@ -0,0 +1,663 @@
+package net.lenni0451.minijvm.execution.jit;
+
+import net.lenni0451.commons.asm.Modifiers;
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.execution.LinkedMethod;
+import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.BasicVerifier;
+import org.objectweb.asm.tree.analysis.Frame;
+
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiles hot methods to host bytecode which is then executed and optimized by the host JVM.<br>
+ * Guest locals and operand stack values are kept in host locals and on the host operand stack,
+ * so arithmetic, local variable access, jumps and switches are translated one to one.
+ * References are kept as {@link ExecutorObject}s.<br>
+ * Instructions which access the object model or invoke methods move their operands to the frame of the method
+ * and are executed by the same instruction handlers as in the interpreter.
+ * Natives, method executors and class initialization therefore behave exactly like in interpreted code.<br>
+ * If such an instruction throws, the {@link net.lenni0451.minijvm.execution.HandlerTable} of the method is searched
+ * and the compiled code jumps to the handler or returns the exception to the caller.<br>
+ * Only methods which pass the verifier are compiled, all other methods stay interpreted.
+ */
+public class JitCompiler {
+
+    /**
+     * The amount of invocations after which a method is compiled.
+     */
+    public static final int INVOCATION_THRESHOLD = 1000;
+    /**
+     * The amount of backward jumps after which a method is compiled on its next invocation.
+     */
+    public static final int BACK_EDGE_THRESHOLD = 10000;
+    /**
+     * Larger methods would be too large to be compiled by the host JIT.
+     */
+    private static final int MAX_INSTRUCTIONS = 2000;
+
+    private static final String COMPILED_METHOD = Type.getInternalName(CompiledMethod.class);
+    private static final String RUNTIME = Type.getInternalName(JitRuntime.class);
+    private static final String EXECUTOR_STACK = Type.getInternalName(ExecutorStack.class);
+    private static final String EXECUTION_RESULT = Type.getInternalName(ExecutionResult.class);
+    private static final String EXECUTOR_OBJECT = Type.getInternalName(ExecutorObject.class);
+    private static final String LINKED_METHOD_DESC = Type.getDescriptor(LinkedMethod.class);
+    private static final String EXECUTE_DESC = Type.getMethodDescriptor(Type.getType(ExecutionResult.class), Type.getType(ExecutionContext.class), Type.getType(ExecutorStack.class));
+    private static final String RUNTIME_EXECUTE_DESC = Type.getMethodDescriptor(Type.getType(ExecutionResult.class), Type.getType(ExecutionContext.class), Type.getType(ExecutorStack.class), Type.getType(LinkedMethod.class), Type.INT_TYPE);
+    private static final String RUNTIME_FIELD_SLOT_DESC = Type.getMethodDescriptor(Type.INT_TYPE, Type.getType(ExecutorObject.class), Type.getType(LinkedMethod.class), Type.INT_TYPE);
+    private static final String RUNTIME_FIND_HANDLER_DESC = Type.getMethodDescriptor(Type.INT_TYPE, Type.getType(ExecutionContext.class), Type.getType(LinkedMethod.class), Type.INT_TYPE, Type.getType(ExecutionResult.class));
+    private static final Type REFERENCE = Type.getType(ExecutorObject.class);
+    private static final Type[] NO_INPUTS = new Type[0];
+
+    private static final int CONTEXT = 1;
+    private static final int FRAME = 2;
+    private static final int LOCALS_OFFSET = 3;
+
+    /**
+     * Compile a method to host bytecode.
+     *
+     * @param linkedMethod The method to compile
+     * @return The compiled method or {@code null} if the method can not be compiled
+     */
+    @Nullable
+    public static CompiledMethod compile(final LinkedMethod linkedMethod) {
+        if (!isCompilable(linkedMethod)) return null;
+        //The generated code relies on the types of all values being known
+        Frame<BasicValue>[] frames = analyze(linkedMethod);
+        if (frames == null) return null;
+        return define(linkedMethod, new JitCompiler(linkedMethod, frames, -1).generate());
+    }
+
+    /**
+     * Compile a method for on-stack replacement.<br>
+     * The compiled method is entered at the given instruction instead of the start of the method.
+     * The live local variables and the operand stack are taken from the frame of the interpreted method,
+     * which is then completed by the compiled method.
+     *
+     * @param linkedMethod The method to compile
+     * @param entryIndex   The index of the instruction to enter the method at
+     * @return The compiled method or {@code null} if the method can not be compiled
+     */
+    @Nullable
+    public static CompiledMethod compileOsr(final LinkedMethod linkedMethod, final int entryIndex) {
+        if (!isCompilable(linkedMethod)) return null;
+        Frame<BasicValue>[] frames = analyze(linkedMethod);
+        if (frames == null) return null;
+        JitCompiler compiler = new JitCompiler(linkedMethod, frames, entryIndex);
+        if (compiler.entryFrame == null) return null;
+        return define(linkedMethod, compiler.generate());
+    }
+
+    /**
+     * Compute the types of the locals and the operand stack before every instruction.
+     *
+     * @param linkedMethod The method to analyze
+     * @return The frames indexed like the instructions of the body or {@code null} if the method does not pass the verifier
+     */
+    @Nullable
+    private static Frame<BasicValue>[] analyze(final LinkedMethod linkedMethod) {
+        //The body can be the method node shared with other managers, see LazyMethodNode
+        synchronized (linkedMethod.getMethod()) {
+            try {
+                return new Analyzer<>(new BasicVerifier()).analyze(linkedMethod.getOwner().getClassNode().name, linkedMethod.getBody());
+            } catch (AnalyzerException e) {
+                return null;
+            }
+        }
+    }
+
+    @Nullable
+    private static CompiledMethod define(final LinkedMethod linkedMethod, final byte[] bytes) {
+        try {
+            Class<?> compiledClass = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+            return (CompiledMethod) compiledClass.getConstructor(LinkedMethod.class).newInstance(linkedMethod);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            //The method can still be interpreted if the host rejects the generated class
+            return null;
+        }
+    }
+
+    private static boolean isCompilable(final LinkedMethod linkedMethod) {
+        MethodNode method = linkedMethod.getBody();
+        if (linkedMethod.size() == 0 || linkedMethod.size() > MAX_INSTRUCTIONS) return false;
+        for (int i = 0; i < linkedMethod.size(); i++) {
+            int opcode = linkedMethod.getOpcode(i);
+            if (opcode == Opcodes.JSR || opcode == Opcodes.RET) return false;
+        }
+        return true;
+    }
+
+    @Nullable
+    private static Type kindOf(final BasicValue value) {
+        if (value == BasicValue.INT_VALUE) return Type.INT_TYPE;
+        else if (value == BasicValue.LONG_VALUE) return Type.LONG_TYPE;
+        else if (value == BasicValue.FLOAT_VALUE) return Type.FLOAT_TYPE;
+        else if (value == BasicValue.DOUBLE_VALUE) return Type.DOUBLE_TYPE;
+        else if (value == BasicValue.REFERENCE_VALUE) return REFERENCE;
+        else return null; //Uninitialized or return address
+    }
+
+    private static Type kindOf(final Type type) {
+        return switch (type.getSort()) {
+            case Type.BOOLEAN, Type.BYTE, Type.CHAR, Type.SHORT, Type.INT -> Type.INT_TYPE;
+            case Type.LONG -> Type.LONG_TYPE;
+            case Type.FLOAT -> Type.FLOAT_TYPE;
+            case Type.DOUBLE -> Type.DOUBLE_TYPE;
+            default -> REFERENCE;
+        };
+    }
+
+    private static Type arrayKindOf(final int opcode) {
+        return switch (opcode) {
+            case Opcodes.LALOAD, Opcodes.LASTORE -> Type.LONG_TYPE;
+            case Opcodes.FALOAD, Opcodes.FASTORE -> Type.FLOAT_TYPE;
+            case Opcodes.DALOAD, Opcodes.DASTORE -> Type.DOUBLE_TYPE;
+            case Opcodes.AALOAD, Opcodes.AASTORE -> REFERENCE;
+            default -> Type.INT_TYPE;
+        };
+    }
+
+    private static String accessorName(final Type kind) {
+        return switch (kind.getSort()) {
+            case Type.INT -> "Int";
+            case Type.LONG -> "Long";
+            case Type.FLOAT -> "Float";
+            case Type.DOUBLE -> "Double";
+            default -> "Reference";
+        };
+    }
+
+
+    private final LinkedMethod linkedMethod;
+    private final MethodNode method;
+    private final String className;
+    private final Map<LabelNode, Label> labels;
+    private final int tempBase;
+    /**
+     * The frame of every instruction, indexed like the instructions of the {@link LinkedMethod}.
+     */
+    private final Frame<BasicValue>[] instructionFrames;
+    /**
+     * The labels of the exception handlers by the instruction index of the handler.
+     */
+    private final Map<Integer, Label> handlerLabels;
+    /**
+     * The instruction index ranges {@code [start, end)} covered by exception handlers and their handler indices.
+     */
+    private final int[][] handlerRanges;
+    private final int entryIndex;
+    @Nullable
+    private final Frame<BasicValue> entryFrame;
+    private final Label entryLabel;
+    private MethodVisitor methodVisitor;
+
+    @SuppressWarnings("unchecked")
+    private JitCompiler(final LinkedMethod linkedMethod, final Frame<BasicValue>[] frames, final int entryIndex) {
+        this.linkedMethod = linkedMethod;
+        this.entryIndex = entryIndex;
+        this.entryLabel = new Label();
+        this.method = linkedMethod.getBody();
+        this.labels = new HashMap<>();
+
+        //Map the positions in the instruction list to instruction indices
+        this.instructionFrames = new Frame[linkedMethod.size()];
+        Map<LabelNode, Integer> labelIndices = new HashMap<>();
+        int position = 0;
+        int index = 0;
+        for (AbstractInsnNode instruction : this.method.instructions) {
+            if (instruction instanceof LabelNode labelNode) labelIndices.put(labelNode, index);
+            else if (instruction.getOpcode() >= 0) this.instructionFrames[index++] = frames[position];
+            position++;
+        }
+        this.entryFrame = entryIndex < 0 ? null : this.instructionFrames[entryIndex];
+        this.handlerLabels = new HashMap<>();
+        this.handlerRanges = new int[this.method.tryCatchBlocks == null ? 0 : this.method.tryCatchBlocks.size()][];
+        for (int i = 0; i < this.handlerRanges.length; i++) {
+            TryCatchBlockNode tryCatchBlock = this.method.tryCatchBlocks.get(i);
+            int handler = labelIndices.get(tryCatchBlock.handler);
+            this.handlerLabels.putIfAbsent(handler, this.label(tryCatchBlock.handler));
+            this.handlerRanges[i] = new int[]{labelIndices.get(tryCatchBlock.start), labelIndices.get(tryCatchBlock.end), handler};
+        }
+        String guestName = linkedMethod.getOwner().getClassNode().name + "_" + this.method.name;
+        this.className = JitCompiler.class.getPackageName().replace('.', '/') + "/Compiled$" + guestName.replaceAll("[^A-Za-z0-9_$]", "_");
+        this.tempBase = this.method.maxLocals + LOCALS_OFFSET;
+    }
+
+    private byte[] generate() {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(final String type1, final String type2) {
+                //All guest references are ExecutorObjects, other reference types are never merged
+                return "java/lang/Object";
+            }
+        };
+        classWriter.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, this.className, null, "java/lang/Object", new String[]{COMPILED_METHOD});
+        classWriter.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "method", LINKED_METHOD_DESC, null, null).visitEnd();
+
+        MethodVisitor constructor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(" + LINKED_METHOD_DESC + ")V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitVarInsn(Opcodes.ALOAD, 1);
+        constructor.visitFieldInsn(Opcodes.PUTFIELD, this.className, "method", LINKED_METHOD_DESC);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        this.methodVisitor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "execute", EXECUTE_DESC, null, null);
+        this.methodVisitor.visitCode();
+        if (this.entryFrame == null) this.loadArguments();
+        else this.loadFrame(this.entryFrame);
+        int index = 0;
+        for (AbstractInsnNode instruction : this.method.instructions) {
+            if (instruction instanceof LabelNode labelNode) {
+                this.methodVisitor.visitLabel(this.label(labelNode));
+            } else if (instruction.getOpcode() >= 0) {
+                if (index == this.entryIndex) this.methodVisitor.visitLabel(this.entryLabel);
+                this.translate(instruction, index++);
+            }
+        }
+        this.methodVisitor.visitMaxs(0, 0);
+        this.methodVisitor.visitEnd();
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Copy the receiver and the arguments from the frame into host locals.
+     */
+    private void loadArguments() {
+        int slot = 0;
+        if (!Modifiers.has(this.method.access, Opcodes.ACC_STATIC)) {
+            this.loadLocal(REFERENCE, slot);
+            slot++;
+        }
+        for (Type argumentType : this.linkedMethod.getDescriptor().getArgumentTypes()) {
+            Type kind = kindOf(argumentType);
+            this.loadLocal(kind, slot);
+            slot += kind.getSize();
+        }
+    }
+
+    /**
+     * Copy the live local variables and the operand stack from the frame and jump to the entry instruction.
+     *
+     * @param frame The types of the values at the entry instruction
+     */
+    private void loadFrame(final Frame<BasicValue> frame) {
+        MethodVisitor mv = this.methodVisitor;
+        for (int i = 0; i < frame.getLocals(); i++) {
+            Type kind = kindOf(frame.getLocal(i));
+            if (kind != null) this.loadLocal(kind, i);
+        }
+        Type[] stack = new Type[frame.getStackSize()];
+        int[] slots = new int[stack.length];
+        int slot = this.tempBase;
+        for (int i = 0; i < stack.length; i++) {
+            stack[i] = kindOf(frame.getStack(i));
+            slots[i] = slot;
+            slot += stack[i].getSize();
+        }
+        for (int i = stack.length - 1; i >= 0; i--) {
+            mv.visitVarInsn(Opcodes.ALOAD, FRAME);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXECUTOR_STACK, "pop" + accessorName(stack[i]), "()" + stack[i].getDescriptor(), false);
+            mv.visitVarInsn(stack[i].getOpcode(Opcodes.ISTORE), slots[i]);
+        }
+        for (int i = 0; i < stack.length; i++) mv.visitVarInsn(stack[i].getOpcode(Opcodes.ILOAD), slots[i]);
+        mv.visitJumpInsn(Opcodes.GOTO, this.entryLabel);
+    }
+
+    private void loadLocal(final Type kind, final int slot) {
+        this.methodVisitor.visitVarInsn(Opcodes.ALOAD, FRAME);
+        this.pushInt(slot);
+        this.methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXECUTOR_STACK, "getLocal" + accessorName(kind), "(I)" + kind.getDescriptor(), false);
+        this.methodVisitor.visitVarInsn(kind.getOpcode(Opcodes.ISTORE), slot + LOCALS_OFFSET);
+    }
+
+    private void translate(final AbstractInsnNode instruction, final int index) {
+        MethodVisitor mv = this.methodVisitor;
+        int opcode = instruction.getOpcode();
+        switch (opcode) {
+            case Opcodes.ILOAD, Opcodes.LLOAD, Opcodes.FLOAD, Opcodes.DLOAD, Opcodes.ALOAD,
+                 Opcodes.ISTORE, Opcodes.LSTORE, Opcodes.FSTORE, Opcodes.DSTORE, Opcodes.ASTORE ->
+                    mv.visitVarInsn(opcode, ((VarInsnNode) instruction).var + LOCALS_OFFSET);
+            case Opcodes.IINC -> {
+                IincInsnNode iincInsnNode = (IincInsnNode) instruction;
+                mv.visitIincInsn(iincInsnNode.var + LOCALS_OFFSET, iincInsnNode.incr);
+            }
+            case Opcodes.BIPUSH, Opcodes.SIPUSH -> mv.visitIntInsn(opcode, ((IntInsnNode) instruction).operand);
+            case Opcodes.LDC -> {
+                Object constant = ((LdcInsnNode) instruction).cst;
+                if (constant instanceof Integer || constant instanceof Float || constant instanceof Long || constant instanceof Double) {
+                    mv.visitLdcInsn(constant);
+                } else {
+                    Type output = constant instanceof ConstantDynamic constantDynamic ? kindOf(Type.getType(constantDynamic.getDescriptor())) : REFERENCE;
+                    this.callRuntime(index, NO_INPUTS, output);
+                }
+            }
+            case Opcodes.IFEQ, Opcodes.IFNE, Opcodes.IFLT, Opcodes.IFGE, Opcodes.IFGT, Opcodes.IFLE,
+                 Opcodes.IF_ICMPEQ, Opcodes.IF_ICMPNE, Opcodes.IF_ICMPLT, Opcodes.IF_ICMPGE, Opcodes.IF_ICMPGT, Opcodes.IF_ICMPLE,
+                 Opcodes.IF_ACMPEQ, Opcodes.IF_ACMPNE, Opcodes.GOTO, Opcodes.IFNULL, Opcodes.IFNONNULL ->
+                    mv.visitJumpInsn(opcode, this.label(((JumpInsnNode) instruction).label));
+            case Opcodes.TABLESWITCH -> {
+                TableSwitchInsnNode tableSwitchInsnNode = (TableSwitchInsnNode) instruction;
+                mv.visitTableSwitchInsn(tableSwitchInsnNode.min, tableSwitchInsnNode.max, this.label(tableSwitchInsnNode.dflt), this.labels(tableSwitchInsnNode.labels));
+            }
+            case Opcodes.LOOKUPSWITCH -> {
+                LookupSwitchInsnNode lookupSwitchInsnNode = (LookupSwitchInsnNode) instruction;
+                int[] keys = lookupSwitchInsnNode.keys.stream().mapToInt(Integer::intValue).toArray();
+                mv.visitLookupSwitchInsn(this.label(lookupSwitchInsnNode.dflt), keys, this.labels(lookupSwitchInsnNode.labels));
+            }
+            case Opcodes.IRETURN -> this.returnValue(Type.INT_TYPE);
+            case Opcodes.LRETURN -> this.returnValue(Type.LONG_TYPE);
+            case Opcodes.FRETURN -> this.returnValue(Type.FLOAT_TYPE);
+            case Opcodes.DRETURN -> this.returnValue(Type.DOUBLE_TYPE);
+            case Opcodes.ARETURN -> this.returnValue(REFERENCE);
+            case Opcodes.RETURN -> {
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, EXECUTION_RESULT, "voidResult", "()L" + EXECUTION_RESULT + ";", false);
+                mv.visitInsn(Opcodes.ARETURN);
+            }
+            case Opcodes.MONITORENTER, Opcodes.MONITOREXIT -> mv.visitInsn(Opcodes.POP); //Monitors are not implemented by the interpreter either
+            case Opcodes.IALOAD, Opcodes.LALOAD, Opcodes.FALOAD, Opcodes.DALOAD, Opcodes.AALOAD, Opcodes.BALOAD, Opcodes.CALOAD, Opcodes.SALOAD ->
+                    this.callRuntime(index, new Type[]{REFERENCE, Type.INT_TYPE}, arrayKindOf(opcode));
+            case Opcodes.IASTORE, Opcodes.LASTORE, Opcodes.FASTORE, Opcodes.DASTORE, Opcodes.AASTORE, Opcodes.BASTORE, Opcodes.CASTORE, Opcodes.SASTORE ->
+                    this.callRuntime(index, new Type[]{REFERENCE, Type.INT_TYPE, arrayKindOf(opcode)}, null);
+            case Opcodes.ARRAYLENGTH -> this.callRuntime(index, new Type[]{REFERENCE}, Type.INT_TYPE);
+            case Opcodes.ATHROW -> {
+                //The runtime always returns the exception, the instruction never completes normally
+                Type[] inputs = {REFERENCE};
+                this.spillInputs(inputs);
+                this.invokeRuntime(index);
+                this.throwResult(index, inputs.length);
+            }
+            case Opcodes.GETSTATIC -> this.callRuntime(index, NO_INPUTS, kindOf(Type.getType(((FieldInsnNode) instruction).desc)));
+            case Opcodes.PUTSTATIC -> this.callRuntime(index, new Type[]{kindOf(Type.getType(((FieldInsnNode) instruction).desc))}, null);
+            case Opcodes.GETFIELD -> this.getField(index, kindOf(Type.getType(((FieldInsnNode) instruction).desc)));
+            case Opcodes.PUTFIELD -> this.putField(index, kindOf(Type.getType(((FieldInsnNode) instruction).desc)));
+            case Opcodes.INVOKEVIRTUAL, Opcodes.INVOKEINTERFACE, Opcodes.INVOKESPECIAL, Opcodes.INVOKESTATIC ->
+                    this.callMethod(index, ((MethodInsnNode) instruction).desc, opcode != Opcodes.INVOKESTATIC);
+            case Opcodes.INVOKEDYNAMIC -> this.callMethod(index, ((InvokeDynamicInsnNode) instruction).desc, false);
+            case Opcodes.NEW -> this.callRuntime(index, NO_INPUTS, REFERENCE);
+            case Opcodes.NEWARRAY, Opcodes.ANEWARRAY -> this.callRuntime(index, new Type[]{Type.INT_TYPE}, REFERENCE);
+            case Opcodes.CHECKCAST -> this.callRuntime(index, new Type[]{REFERENCE}, REFERENCE);
+            case Opcodes.INSTANCEOF -> this.callRuntime(index, new Type[]{REFERENCE}, Type.INT_TYPE);
+            case Opcodes.MULTIANEWARRAY -> {
+                Type[] inputs = new Type[((MultiANewArrayInsnNode) instruction).dims];
+                Arrays.fill(inputs, Type.INT_TYPE);
+                this.callRuntime(index, inputs, REFERENCE);
+            }
+            //Constants, stack manipulation, arithmetic, conversions and comparisons
+            default -> mv.visitInsn(opcode);
+        }
+    }
+
+    private void returnValue(final Type kind) {
+        MethodVisitor mv = this.methodVisitor;
+        mv.visitVarInsn(kind.getOpcode(Opcodes.ISTORE), this.tempBase);
+        mv.visitVarInsn(Opcodes.ALOAD, FRAME);
+        mv.visitVarInsn(kind.getOpcode(Opcodes.ILOAD), this.tempBase);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXECUTOR_STACK, "push" + accessorName(kind), "(" + kind.getDescriptor() + ")V", false);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, EXECUTION_RESULT, "voidResult", "()L" + EXECUTION_RESULT + ";", false);
+        mv.visitInsn(Opcodes.ARETURN);
+    }
+
+    /**
+     * Read an instance field directly from the field slots of the object.<br>
+     * Falls back to the {@link JitRuntime} if the fast path can not be used.
+     *
+     * @param index The index of the instruction
+     * @param kind  The kind of the field
+     */
+    private void getField(final int index, final Type kind) {
+        MethodVisitor mv = this.methodVisitor;
+        Label slowPath = new Label();
+        Label done = new Label();
+        int slot = this.tempBase;
+        mv.visitInsn(Opcodes.DUP);
+        this.fieldSlot(index, slot, slowPath);
+        mv.visitVarInsn(Opcodes.ILOAD, slot);
+        if (kind == REFERENCE) {
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXECUTOR_OBJECT, "getReference", "(I)L" + EXECUTOR_OBJECT + ";", false);
+        } else {
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXECUTOR_OBJECT, "getPrimitive", "(I)J", false);
+            this.fromBits(kind);
+        }
+        mv.visitJumpInsn(Opcodes.GOTO, done);
+        mv.visitLabel(slowPath);
+        this.callRuntime(index, new Type[]{REFERENCE}, kind);
+        mv.visitLabel(done);
+    }
+
+    /**
+     * Write an instance field directly to the field slots of the object.<br>
+     * Falls back to the {@link JitRuntime} if the fast path can not be used.
+     *
+     * @param index The index of the instruction
+     * @param kind  The kind of the field
+     */
+    private void putField(final int index, final Type kind) {
+        MethodVisitor mv = this.methodVisitor;
+        Label slowPath = new Label();
+        Label done = new Label();
+        int value = this.tempBase;
+        int slot = this.tempBase + 2;
+        mv.visitVarInsn(kind.getOpcode(Opcodes.ISTORE), value);
+        mv.visitInsn(Opcodes.DUP);
+        this.fieldSlot(index, slot, slowPath);
+        mv.visitVarInsn(Opcodes.ILOAD, slot);
+        mv.visitVarInsn(kind.getOpcode(Opcodes.ILOAD), value);
+        if (kind == REFERENCE) {
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXECUTOR_OBJECT, "setReference", "(IL" + EXECUTOR_OBJECT + ";)V", false);
+        } else {
+            this.toBits(kind);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXECUTOR_OBJECT, "setPrimitive", "(IJ)V", false);
+        }
+        mv.visitJumpInsn(Opcodes.GOTO, done);
+        mv.visitLabel(slowPath);
+        mv.visitVarInsn(kind.getOpcode(Opcodes.ILOAD), value);
+        this.callRuntime(index, new Type[]{REFERENCE, kind}, null);
+        mv.visitLabel(done);
+    }
+
+    /**
+     * Get the field slot for the object on top of the host operand stack and store it in a host local.<br>
+     * The object stays on the stack. If the fast path can not be used, this jumps to the slow path.
+     */
+    private void fieldSlot(final int index, final int slot, final Label slowPath) {
+        MethodVisitor mv = this.methodVisitor;
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, this.className, "method", LINKED_METHOD_DESC);
+        this.pushInt(index);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, RUNTIME, "fieldSlot", RUNTIME_FIELD_SLOT_DESC, false);
+        mv.visitVarInsn(Opcodes.ISTORE, slot);
+        mv.visitVarInsn(Opcodes.ILOAD, slot);
+        mv.visitJumpInsn(Opcodes.IFLT, slowPath);
+    }
+
+    /**
+     * Convert the raw value of a primitive field slot to a value of the given kind.
+     */
+    private void fromBits(final Type kind) {
+        MethodVisitor mv = this.methodVisitor;
+        switch (kind.getSort()) {
+            case Type.INT -> mv.visitInsn(Opcodes.L2I);
+            case Type.FLOAT -> {
+                mv.visitInsn(Opcodes.L2I);
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Float", "intBitsToFloat", "(I)F", false);
+            }
+            case Type.DOUBLE -> mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Double", "longBitsToDouble", "(J)D", false);
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Convert a value of the given kind to the raw value of a primitive field slot.
+     */
+    private void toBits(final Type kind) {
+        MethodVisitor mv = this.methodVisitor;
+        switch (kind.getSort()) {
+            case Type.INT -> mv.visitInsn(Opcodes.I2L);
+            case Type.FLOAT -> {
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Float", "floatToRawIntBits", "(F)I", false);
+                mv.visitInsn(Opcodes.I2L);
+            }
+            case Type.DOUBLE -> mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Double", "doubleToRawLongBits", "(D)J", false);
+            default -> {
+            }
+        }
+    }
+
+    private void callMethod(final int index, final String descriptor, final boolean hasReceiver) {
+        Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+        Type[] inputs = new Type[argumentTypes.length + (hasReceiver ? 1 : 0)];
+        if (hasReceiver) inputs[0] = REFERENCE;
+        for (int i = 0; i < argumentTypes.length; i++) inputs[inputs.length - argumentTypes.length + i] = kindOf(argumentTypes[i]);
+        Type returnType = Type.getReturnType(descriptor);
+        this.callRuntime(index, inputs, returnType.getSort() == Type.VOID ? null : kindOf(returnType));
+    }
+
+    /**
+     * Execute an instruction using the {@link JitRuntime}.<br>
+     * The inputs are moved from the host operand stack to the frame and the output is moved back.
+     * If the instruction throws an exception the compiled method returns it.
+     *
+     * @param index  The index of the instruction
+     * @param inputs The kinds of the values consumed by the instruction
+     * @param output The kind of the value produced by the instruction or {@code null}
+     */
+    private void callRuntime(final int index, final Type[] inputs, @Nullable final Type output) {
+        MethodVisitor mv = this.methodVisitor;
+        this.spillInputs(inputs);
+        this.invokeRuntime(index);
+        Label completed = new Label();
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitJumpInsn(Opcodes.IFNULL, completed);
+        this.throwResult(index, inputs.length);
+        mv.visitLabel(completed);
+        mv.visitInsn(Opcodes.POP);
+        if (output != null) {
+            mv.visitVarInsn(Opcodes.ALOAD, FRAME);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXECUTOR_STACK, "pop" + accessorName(output), "()" + output.getDescriptor(), false);
+        }
+    }
+
+    /**
+     * Throw the exception result on top of the host operand stack.<br>
+     * If the instruction is covered by exception handlers the handler is searched at runtime.
+     * When a handler is found, the remaining operand stack is cleared and the exception is passed to the handler,
+     * otherwise the result is returned to the caller.
+     *
+     * @param index    The index of the throwing instruction
+     * @param consumed The amount of values the instruction has consumed from the operand stack
+     */
+    private void throwResult(final int index, final int consumed) {
+        MethodVisitor mv = this.methodVisitor;
+        Map<Integer, Label> handlers = new TreeMap<>();
+        for (int[] range : this.handlerRanges) {
+            if (index >= range[0] && index < range[1]) handlers.put(range[2], this.handlerLabels.get(range[2]));
+        }
+        if (handlers.isEmpty()) {
+            mv.visitInsn(Opcodes.ARETURN);
+            return;
+        }
+
+        int resultSlot = this.tempBase;
+        int handlerSlot = this.tempBase + 1;
+        mv.visitVarInsn(Opcodes.ASTORE, resultSlot);
+        mv.visitVarInsn(Opcodes.ALOAD, CONTEXT);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, this.className, "method", LINKED_METHOD_DESC);
+        this.pushInt(index);
+        mv.visitVarInsn(Opcodes.ALOAD, resultSlot);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, RUNTIME, "findHandler", RUNTIME_FIND_HANDLER_DESC, false);
+        mv.visitVarInsn(Opcodes.ISTORE, handlerSlot);
+        Label caught = new Label();
+        mv.visitVarInsn(Opcodes.ILOAD, handlerSlot);
+        mv.visitJumpInsn(Opcodes.IFGE, caught);
+        mv.visitVarInsn(Opcodes.ALOAD, resultSlot);
+        mv.visitInsn(Opcodes.ARETURN);
+
+        mv.visitLabel(caught);
+        //Instructions can return an exception without popping their inputs from the frame, clear it like the interpreter does
+        mv.visitVarInsn(Opcodes.ALOAD, FRAME);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXECUTOR_STACK, "clear", "()V", false);
+        Frame<BasicValue> frame = this.instructionFrames[index];
+        for (int i = frame.getStackSize() - consumed - 1; i >= 0; i--) mv.visitInsn(frame.getStack(i).getSize() == 2 ? Opcodes.POP2 : Opcodes.POP);
+        mv.visitVarInsn(Opcodes.ALOAD, resultSlot);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXECUTION_RESULT, "getException", "()L" + EXECUTOR_OBJECT + ";", false);
+        Label unknownHandler = new Label();
+        int[] keys = handlers.keySet().stream().mapToInt(Integer::intValue).toArray();
+        mv.visitVarInsn(Opcodes.ILOAD, handlerSlot);
+        mv.visitLookupSwitchInsn(unknownHandler, keys, handlers.values().toArray(new Label[0]));
+        mv.visitLabel(unknownHandler);
+        //The handler table only returns handlers covering the instruction
+        mv.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalStateException");
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/IllegalStateException", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.ATHROW);
+    }
+
+    private void spillInputs(final Type[] inputs) {
+        MethodVisitor mv = this.methodVisitor;
+        int[] slots = new int[inputs.length];
+        int slot = this.tempBase;
+        for (int i = 0; i < inputs.length; i++) {
+            slots[i] = slot;
+            slot += inputs[i].getSize();
+        }
+        for (int i = inputs.length - 1; i >= 0; i--) mv.visitVarInsn(inputs[i].getOpcode(Opcodes.ISTORE), slots[i]);
+        for (int i = 0; i < inputs.length; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, FRAME);
+            mv.visitVarInsn(inputs[i].getOpcode(Opcodes.ILOAD), slots[i]);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, EXECUTOR_STACK, "push" + accessorName(inputs[i]), "(" + inputs[i].getDescriptor() + ")V", false);
+        }
+    }
+
+    private void invokeRuntime(final int index) {
+        MethodVisitor mv = this.methodVisitor;
+        mv.visitVarInsn(Opcodes.ALOAD, CONTEXT);
+        mv.visitVarInsn(Opcodes.ALOAD, FRAME);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, this.className, "method", LINKED_METHOD_DESC);
+        this.pushInt(index);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, RUNTIME, "execute", RUNTIME_EXECUTE_DESC, false);
+    }
+
+    private void pushInt(final int value) {
+        if (value >= -1 && value <= 5) this.methodVisitor.visitInsn(Opcodes.ICONST_0 + value);
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) this.methodVisitor.visitIntInsn(Opcodes.BIPUSH, value);
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) this.methodVisitor.visitIntInsn(Opcodes.SIPUSH, value);
+        else this.methodVisitor.visitLdcInsn(value);
+    }
+
+    private Label label(final LabelNode labelNode) {
+        return this.labels.computeIfAbsent(labelNode, l -> new Label());
+    }
+
+    private Label[] labels(final List<LabelNode> labelNodes) {
+        Label[] labels = new Label[labelNodes.size()];
+        for (int i = 0; i < labels.length; i++) labels[i] = this.label(labelNodes.get(i));
+        return labels;
+    }
+
+}
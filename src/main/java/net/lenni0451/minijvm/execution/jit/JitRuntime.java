@@ -0,0 +1,149 @@
+package net.lenni0451.minijvm.execution.jit;
+
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.execution.Executor;
+import net.lenni0451.minijvm.execution.InlineCache;
+import net.lenni0451.minijvm.execution.LinkedMethod;
+import net.lenni0451.minijvm.execution.QuickField;
+import net.lenni0451.minijvm.execution.instructions.ArrayInstructions;
+import net.lenni0451.minijvm.execution.instructions.FieldInstructions;
+import net.lenni0451.minijvm.execution.instructions.InvokeInstructions;
+import net.lenni0451.minijvm.execution.instructions.ObjectInstructions;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.utils.ExecutorStack;
+import net.lenni0451.minijvm.utils.ExecutorTypeUtils;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+
+import javax.annotation.Nullable;
+
+/**
+ * The helper methods called by compiled methods.<br>
+ * Instructions which access the object model are not compiled. Their operands are moved to the frame of the method
+ * and the same instruction handlers as in the interpreter are called.
+ * Only instance field accesses of resolved instructions use a fast path which accesses the field slots directly.
+ */
+class JitRuntime {
+
+    /**
+     * Execute a single instruction of a compiled method.<br>
+     * The operands of the instruction have to be on the operand stack of the frame, the result is pushed onto it.
+     *
+     * @param context The execution context
+     * @param frame   The frame of the compiled method
+     * @param method  The compiled method
+     * @param index   The index of the instruction
+     * @return {@code null} if the instruction completed normally or the exception result that should be thrown
+     */
+    @Nullable
+    static ExecutionResult execute(final ExecutionContext context, final ExecutorStack frame, final LinkedMethod method, final int index) {
+        ExecutionContext.StackFrame stackFrame = context.getCurrentStackFrame();
+        stackFrame.setLineNumber(method.getLineNumber(index));
+        int opcode = method.getOpcode(index);
+        switch (opcode) {
+            case Opcodes.LDC:
+                frame.pushSized(ExecutorTypeUtils.parse(context, method.getReference(index)));
+                return null;
+            case Opcodes.IALOAD:
+            case Opcodes.LALOAD:
+            case Opcodes.FALOAD:
+            case Opcodes.DALOAD:
+            case Opcodes.AALOAD:
+            case Opcodes.BALOAD:
+            case Opcodes.CALOAD:
+            case Opcodes.SALOAD:
+                return ArrayInstructions.load(context, frame, opcode);
+            case Opcodes.IASTORE:
+            case Opcodes.LASTORE:
+            case Opcodes.FASTORE:
+            case Opcodes.DASTORE:
+            case Opcodes.AASTORE:
+            case Opcodes.BASTORE:
+            case Opcodes.CASTORE:
+            case Opcodes.SASTORE:
+                return ArrayInstructions.store(context, frame, opcode);
+            case Opcodes.GETSTATIC:
+                return FieldInstructions.getStatic(context, frame, method, index);
+            case Opcodes.PUTSTATIC:
+                return FieldInstructions.putStatic(context, frame, method, index);
+            case Opcodes.GETFIELD:
+                return FieldInstructions.getField(context, frame, method, index);
+            case Opcodes.PUTFIELD:
+                return FieldInstructions.putField(context, frame, method, index);
+            case Opcodes.INVOKEVIRTUAL:
+            case Opcodes.INVOKEINTERFACE:
+            case Opcodes.INVOKESPECIAL:
+            case Opcodes.INVOKESTATIC:
+                ExecutionResult result;
+                if (opcode == Opcodes.INVOKESTATIC) result = InvokeInstructions.invokeStatic(context, frame, method, index);
+                else if (opcode == Opcodes.INVOKESPECIAL) result = InvokeInstructions.invokeSpecial(context, frame, method, index);
+                else result = InvokeInstructions.invokeVirtual(context, frame, (InlineCache) method.getReference(index));
+                if (result == null && context.getCurrentStackFrame() != stackFrame) {
+                    //An interpreted method has been invoked, compiled methods can not continue in the new frame
+                    result = Executor.completeInvoke(context, frame);
+                }
+                return result;
+            case Opcodes.INVOKEDYNAMIC:
+                return InvokeInstructions.invokeDynamic(context, frame, method.getOwner(), method.getMethod(), index, (InvokeDynamicInsnNode) method.getReference(index));
+            case Opcodes.NEW:
+                return ObjectInstructions.newObject(context, frame, method, index);
+            case Opcodes.NEWARRAY:
+                ArrayInstructions.newArray(context, frame, ((IntInsnNode) method.getInstruction(index)).operand);
+                return null;
+            case Opcodes.ANEWARRAY:
+                ArrayInstructions.newObjectArray(context, frame, method, index);
+                return null;
+            case Opcodes.ARRAYLENGTH:
+                ArrayInstructions.length(context, frame);
+                return null;
+            case Opcodes.ATHROW:
+                return ObjectInstructions.throwException(context, frame);
+            case Opcodes.CHECKCAST:
+                return ObjectInstructions.checkCast(context, frame, method, index);
+            case Opcodes.INSTANCEOF:
+                ObjectInstructions.instanceOf(context, frame, method, index);
+                return null;
+            case Opcodes.MULTIANEWARRAY:
+                return ArrayInstructions.newMultiArray(context, frame, (MultiANewArrayInsnNode) method.getReference(index));
+            default:
+                throw new IllegalStateException("Opcode " + opcode + " can not be executed by the JIT runtime");
+        }
+    }
+
+    /**
+     * Get the slot of an instance field for the fast path of a compiled field instruction.<br>
+     * The fast path can only be used if the instruction has already been resolved and the object is an instance of the declaring class.
+     * In all other cases the instruction is executed by {@link #execute}, which also throws the exceptions.
+     *
+     * @param object The object to access
+     * @param method The compiled method
+     * @param index  The index of the field instruction
+     * @return The slot of the field or {@code -1} if the instruction has to be executed by {@link #execute}
+     */
+    static int fieldSlot(@Nullable final ExecutorObject object, final LinkedMethod method, final int index) {
+        if (object == null || !(method.getReference(index) instanceof QuickField quickField)) return -1;
+        ExecutorClass.ResolvedField field = quickField.field();
+        if (field.isStatic()) return -1;
+        ExecutorClass objectClass = object.getClazz();
+        if (objectClass != field.owner() && !objectClass.isSubclassOf(field.owner())) return -1;
+        return field.slot();
+    }
+
+    /**
+     * Find the exception handler for an exception thrown by an instruction of a compiled method.
+     *
+     * @param context The execution context
+     * @param method  The compiled method
+     * @param index   The index of the throwing instruction
+     * @param result  The exception result
+     * @return The instruction index of the handler or {@code -1} if the exception is thrown to the caller
+     */
+    static int findHandler(final ExecutionContext context, final LinkedMethod method, final int index, final ExecutionResult result) {
+        return method.getHandlerTable().findHandler(context, index, result.getException().getClazz());
+    }
+
+}
@@ -6,6 +6,7 @@ import net.lenni0451.minijvm.execution.BootstrapMethodResolver;
 import net.lenni0451.minijvm.execution.ExecutionResult;
 import net.lenni0451.minijvm.object.ExecutorClass;
 import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.object.HeapCopier;
 import net.lenni0451.minijvm.object.types.CallSiteObject;
 import net.lenni0451.minijvm.object.types.MethodHandleObject;
 import net.lenni0451.minijvm.object.types.MethodTypeObject;
@@ -122,6 +123,20 @@ public class LambdaMetafactoryNatives implements Consumer<ExecutionManager> {
             this.instantiatedMethodType = instantiatedMethodType;
         }
 
+        protected LambdaFactoryMethodHandle(LambdaFactoryMethodHandle source, HeapCopier copier) {
+            super(source, copier);
+            this.invokedType = copier.copy(source.invokedType);
+            this.samMethodName = source.samMethodName;
+            this.samMethodType = copier.copy(source.samMethodType);
+            this.implMethod = copier.copy(source.implMethod);
+            this.instantiatedMethodType = copier.copy(source.instantiatedMethodType);
+        }
+
+        @Override
+        public LambdaFactoryMethodHandle copy(HeapCopier copier) {
+            return new LambdaFactoryMethodHandle(this, copier);
+        }
+
         @Override
         public ExecutionResult invoke(ExecutionContext context, StackElement... capturedArgs) {
             // Create and return a lambda proxy object
@@ -172,6 +187,20 @@ public class LambdaMetafactoryNatives implements Consumer<ExecutionManager> {
             this.capturedArgs = capturedArgs;
         }
 
+        protected LambdaProxyObject(LambdaProxyObject source, HeapCopier copier) {
+            super(source, copier);
+            this.samMethodName = source.samMethodName;
+            this.samMethodType = copier.copy(source.samMethodType);
+            this.implMethod = copier.copy(source.implMethod);
+            this.instantiatedMethodType = copier.copy(source.instantiatedMethodType);
+            this.capturedArgs = copier.copy(source.capturedArgs);
+        }
+
+        @Override
+        public LambdaProxyObject copy(HeapCopier copier) {
+            return new LambdaProxyObject(this, copier);
+        }
+
         public String getSamMethodName() {
             return samMethodName;
         }
@@ -3,6 +3,7 @@ package net.lenni0451.minijvm.execution.natives;
 import net.lenni0451.minijvm.ExecutionContext;
 import net.lenni0451.minijvm.ExecutionManager;
 import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.object.HeapCopier;
 import net.lenni0451.minijvm.object.types.ArrayObject;
 import net.lenni0451.minijvm.object.types.CallSiteObject;
 import net.lenni0451.minijvm.object.types.MethodHandleObject;
@@ -97,6 +98,18 @@ public class StringConcatFactoryNatives implements Consumer<ExecutionManager> {
             this.constants = constants;
         }
 
+        protected StringConcatMethodHandle(StringConcatMethodHandle source, HeapCopier copier) {
+            super(source, copier);
+            this.concatType = copier.copy(source.concatType);
+            this.recipe = source.recipe;
+            this.constants = copier.copy(source.constants);
+        }
+
+        @Override
+        public StringConcatMethodHandle copy(HeapCopier copier) {
+            return new StringConcatMethodHandle(this, copier);
+        }
+
         @Override
         public ExecutionResult invoke(ExecutionContext context, StackElement... args) {
             StringBuilder result = new StringBuilder();
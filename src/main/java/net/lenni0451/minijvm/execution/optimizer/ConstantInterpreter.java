@@ -0,0 +1,252 @@
+package net.lenni0451.minijvm.execution.optimizer;
+
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Interpreter;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * An ASM interpreter which propagates {@code int} and {@code long} constants through the local variables and the operand stack.<br>
+ * Operations which can throw (like a division by zero) are never folded.
+ */
+public class ConstantInterpreter extends Interpreter<ConstantValue> {
+
+    public ConstantInterpreter() {
+        super(Opcodes.ASM9);
+    }
+
+    @Override
+    @Nullable
+    public ConstantValue newValue(@Nullable final Type type) {
+        if (type == null) return ConstantValue.UNKNOWN;
+        if (type.getSort() == Type.VOID) return null;
+        return ConstantValue.unknown(type.getSize());
+    }
+
+    @Override
+    public ConstantValue newOperation(final AbstractInsnNode insn) {
+        int opcode = insn.getOpcode();
+        if (opcode >= Opcodes.ICONST_M1 && opcode <= Opcodes.ICONST_5) return ConstantValue.of(opcode - Opcodes.ICONST_0);
+        return switch (opcode) {
+            case Opcodes.LCONST_0 -> ConstantValue.of(0L);
+            case Opcodes.LCONST_1 -> ConstantValue.of(1L);
+            case Opcodes.DCONST_0, Opcodes.DCONST_1 -> ConstantValue.UNKNOWN_WIDE;
+            case Opcodes.BIPUSH, Opcodes.SIPUSH -> ConstantValue.of(((IntInsnNode) insn).operand);
+            case Opcodes.LDC -> {
+                Object constant = ((LdcInsnNode) insn).cst;
+                if (constant instanceof Integer i) yield ConstantValue.of(i);
+                else if (constant instanceof Long l) yield ConstantValue.of(l);
+                else if (constant instanceof Double) yield ConstantValue.UNKNOWN_WIDE;
+                else if (constant instanceof ConstantDynamic constantDynamic) yield ConstantValue.unknown(constantDynamic.getSize());
+                else yield ConstantValue.UNKNOWN;
+            }
+            case Opcodes.GETSTATIC -> ConstantValue.unknown(Type.getType(((FieldInsnNode) insn).desc).getSize());
+            default -> ConstantValue.UNKNOWN;
+        };
+    }
+
+    @Override
+    public ConstantValue copyOperation(final AbstractInsnNode insn, final ConstantValue value) {
+        return value;
+    }
+
+    @Override
+    @Nullable
+    public ConstantValue unaryOperation(final AbstractInsnNode insn, final ConstantValue value) {
+        switch (insn.getOpcode()) {
+            case Opcodes.INEG:
+                return value.isInt() ? ConstantValue.of(-value.intValue()) : ConstantValue.UNKNOWN;
+            case Opcodes.LNEG:
+                return value.isLong() ? ConstantValue.of(-value.longValue()) : ConstantValue.UNKNOWN_WIDE;
+            case Opcodes.IINC:
+                return value.isInt() ? ConstantValue.of(value.intValue() + ((IincInsnNode) insn).incr) : ConstantValue.UNKNOWN;
+            case Opcodes.I2L:
+                return value.isInt() ? ConstantValue.of((long) value.intValue()) : ConstantValue.UNKNOWN_WIDE;
+            case Opcodes.L2I:
+                return value.isLong() ? ConstantValue.of((int) value.longValue()) : ConstantValue.UNKNOWN;
+            case Opcodes.I2B:
+                return value.isInt() ? ConstantValue.of((int) (byte) value.intValue()) : ConstantValue.UNKNOWN;
+            case Opcodes.I2C:
+                return value.isInt() ? ConstantValue.of((int) (char) value.intValue()) : ConstantValue.UNKNOWN;
+            case Opcodes.I2S:
+                return value.isInt() ? ConstantValue.of((int) (short) value.intValue()) : ConstantValue.UNKNOWN;
+            case Opcodes.I2D:
+            case Opcodes.L2D:
+            case Opcodes.F2L:
+            case Opcodes.F2D:
+            case Opcodes.D2L:
+            case Opcodes.DNEG:
+                return ConstantValue.UNKNOWN_WIDE;
+            case Opcodes.GETFIELD:
+                return ConstantValue.unknown(Type.getType(((FieldInsnNode) insn).desc).getSize());
+            case Opcodes.IFEQ:
+            case Opcodes.IFNE:
+            case Opcodes.IFLT:
+            case Opcodes.IFGE:
+            case Opcodes.IFGT:
+            case Opcodes.IFLE:
+            case Opcodes.TABLESWITCH:
+            case Opcodes.LOOKUPSWITCH:
+            case Opcodes.IRETURN:
+            case Opcodes.LRETURN:
+            case Opcodes.FRETURN:
+            case Opcodes.DRETURN:
+            case Opcodes.ARETURN:
+            case Opcodes.PUTSTATIC:
+            case Opcodes.ATHROW:
+            case Opcodes.MONITORENTER:
+            case Opcodes.MONITOREXIT:
+            case Opcodes.IFNULL:
+            case Opcodes.IFNONNULL:
+                return null;
+            default:
+                return ConstantValue.UNKNOWN;
+        }
+    }
+
+    @Override
+    @Nullable
+    public ConstantValue binaryOperation(final AbstractInsnNode insn, final ConstantValue value1, final ConstantValue value2) {
+        int opcode = insn.getOpcode();
+        switch (opcode) {
+            case Opcodes.IADD:
+            case Opcodes.ISUB:
+            case Opcodes.IMUL:
+            case Opcodes.IDIV:
+            case Opcodes.IREM:
+            case Opcodes.ISHL:
+            case Opcodes.ISHR:
+            case Opcodes.IUSHR:
+            case Opcodes.IAND:
+            case Opcodes.IOR:
+            case Opcodes.IXOR:
+                if (!value1.isInt() || !value2.isInt()) return ConstantValue.UNKNOWN;
+                Integer intResult = foldInt(opcode, value1.intValue(), value2.intValue());
+                return intResult == null ? ConstantValue.UNKNOWN : ConstantValue.of(intResult);
+            case Opcodes.LADD:
+            case Opcodes.LSUB:
+            case Opcodes.LMUL:
+            case Opcodes.LDIV:
+            case Opcodes.LREM:
+            case Opcodes.LAND:
+            case Opcodes.LOR:
+            case Opcodes.LXOR:
+                if (!value1.isLong() || !value2.isLong()) return ConstantValue.UNKNOWN_WIDE;
+                Long longResult = foldLong(opcode, value1.longValue(), value2.longValue());
+                return longResult == null ? ConstantValue.UNKNOWN_WIDE : ConstantValue.of(longResult);
+            case Opcodes.LSHL:
+            case Opcodes.LSHR:
+            case Opcodes.LUSHR:
+                if (!value1.isLong() || !value2.isInt()) return ConstantValue.UNKNOWN_WIDE;
+                if (opcode == Opcodes.LSHL) return ConstantValue.of(value1.longValue() << value2.intValue());
+                else if (opcode == Opcodes.LSHR) return ConstantValue.of(value1.longValue() >> value2.intValue());
+                else return ConstantValue.of(value1.longValue() >>> value2.intValue());
+            case Opcodes.LCMP:
+                if (!value1.isLong() || !value2.isLong()) return ConstantValue.UNKNOWN;
+                return ConstantValue.of(Long.compare(value1.longValue(), value2.longValue()));
+            case Opcodes.LALOAD:
+            case Opcodes.DALOAD:
+            case Opcodes.DADD:
+            case Opcodes.DSUB:
+            case Opcodes.DMUL:
+            case Opcodes.DDIV:
+            case Opcodes.DREM:
+                return ConstantValue.UNKNOWN_WIDE;
+            case Opcodes.IF_ICMPEQ:
+            case Opcodes.IF_ICMPNE:
+            case Opcodes.IF_ICMPLT:
+            case Opcodes.IF_ICMPGE:
+            case Opcodes.IF_ICMPGT:
+            case Opcodes.IF_ICMPLE:
+            case Opcodes.IF_ACMPEQ:
+            case Opcodes.IF_ACMPNE:
+            case Opcodes.PUTFIELD:
+                return null;
+            default:
+                return ConstantValue.UNKNOWN;
+        }
+    }
+
+    @Override
+    @Nullable
+    public ConstantValue ternaryOperation(final AbstractInsnNode insn, final ConstantValue value1, final ConstantValue value2, final ConstantValue value3) {
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public ConstantValue naryOperation(final AbstractInsnNode insn, final List<? extends ConstantValue> values) {
+        int opcode = insn.getOpcode();
+        if (opcode == Opcodes.MULTIANEWARRAY) return ConstantValue.UNKNOWN;
+        String descriptor = opcode == Opcodes.INVOKEDYNAMIC ? ((InvokeDynamicInsnNode) insn).desc : ((MethodInsnNode) insn).desc;
+        return this.newValue(Type.getReturnType(descriptor));
+    }
+
+    @Override
+    public void returnOperation(final AbstractInsnNode insn, final ConstantValue value, final ConstantValue expected) {
+    }
+
+    @Override
+    public ConstantValue merge(final ConstantValue value1, final ConstantValue value2) {
+        if (value1.equals(value2)) return value1;
+        return ConstantValue.unknown(value1.getSize() == value2.getSize() ? value1.getSize() : 1);
+    }
+
+    /**
+     * Evaluate the condition of a conditional jump with constant operands.
+     *
+     * @param opcode The opcode of the jump
+     * @param value1 The first operand
+     * @param value2 The second operand, {@code 0} for jumps comparing a single value
+     * @return If the jump is taken
+     */
+    public static boolean compare(final int opcode, final int value1, final int value2) {
+        return switch (opcode) {
+            case Opcodes.IFEQ, Opcodes.IF_ICMPEQ -> value1 == value2;
+            case Opcodes.IFNE, Opcodes.IF_ICMPNE -> value1 != value2;
+            case Opcodes.IFLT, Opcodes.IF_ICMPLT -> value1 < value2;
+            case Opcodes.IFGE, Opcodes.IF_ICMPGE -> value1 >= value2;
+            case Opcodes.IFGT, Opcodes.IF_ICMPGT -> value1 > value2;
+            case Opcodes.IFLE, Opcodes.IF_ICMPLE -> value1 <= value2;
+            default -> throw new IllegalArgumentException("Unknown compare opcode: " + opcode);
+        };
+    }
+
+    @Nullable
+    private static Integer foldInt(final int opcode, final int value1, final int value2) {
+        return switch (opcode) {
+            case Opcodes.IADD -> value1 + value2;
+            case Opcodes.ISUB -> value1 - value2;
+            case Opcodes.IMUL -> value1 * value2;
+            case Opcodes.IDIV -> value2 == 0 ? null : value1 / value2;
+            case Opcodes.IREM -> value2 == 0 ? null : value1 % value2;
+            case Opcodes.ISHL -> value1 << value2;
+            case Opcodes.ISHR -> value1 >> value2;
+            case Opcodes.IUSHR -> value1 >>> value2;
+            case Opcodes.IAND -> value1 & value2;
+            case Opcodes.IOR -> value1 | value2;
+            case Opcodes.IXOR -> value1 ^ value2;
+            default -> null;
+        };
+    }
+
+    @Nullable
+    private static Long foldLong(final int opcode, final long value1, final long value2) {
+        return switch (opcode) {
+            case Opcodes.LADD -> value1 + value2;
+            case Opcodes.LSUB -> value1 - value2;
+            case Opcodes.LMUL -> value1 * value2;
+            case Opcodes.LDIV -> value2 == 0 ? null : value1 / value2;
+            case Opcodes.LREM -> value2 == 0 ? null : value1 % value2;
+            case Opcodes.LAND -> value1 & value2;
+            case Opcodes.LOR -> value1 | value2;
+            case Opcodes.LXOR -> value1 ^ value2;
+            default -> null;
+        };
+    }
+
+}
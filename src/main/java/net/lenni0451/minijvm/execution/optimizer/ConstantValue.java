@@ -0,0 +1,85 @@
+package net.lenni0451.minijvm.execution.optimizer;
+
+import org.objectweb.asm.tree.analysis.Value;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * A value tracked by the {@link ConstantInterpreter}.<br>
+ * Only {@code int} and {@code long} constants are tracked, all other values are unknown.
+ */
+public class ConstantValue implements Value {
+
+    public static final ConstantValue UNKNOWN = new ConstantValue(1, null);
+    public static final ConstantValue UNKNOWN_WIDE = new ConstantValue(2, null);
+
+    public static ConstantValue unknown(final int size) {
+        return size == 2 ? UNKNOWN_WIDE : UNKNOWN;
+    }
+
+    public static ConstantValue of(final int value) {
+        return new ConstantValue(1, value);
+    }
+
+    public static ConstantValue of(final long value) {
+        return new ConstantValue(2, value);
+    }
+
+
+    private final int size;
+    @Nullable
+    private final Object constant;
+
+    private ConstantValue(final int size, @Nullable final Object constant) {
+        this.size = size;
+        this.constant = constant;
+    }
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * @return The {@link Integer} or {@link Long} value or {@code null} if the value is not constant
+     */
+    @Nullable
+    public Object getConstant() {
+        return this.constant;
+    }
+
+    public boolean isInt() {
+        return this.constant instanceof Integer;
+    }
+
+    public boolean isLong() {
+        return this.constant instanceof Long;
+    }
+
+    public int intValue() {
+        return (Integer) this.constant;
+    }
+
+    public long longValue() {
+        return (Long) this.constant;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ConstantValue that)) return false;
+        return this.size == that.size && Objects.equals(this.constant, that.constant);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.size, this.constant);
+    }
+
+    @Override
+    public String toString() {
+        return this.constant == null ? "?" : String.valueOf(this.constant);
+    }
+
+}
@@ -0,0 +1,414 @@
+package net.lenni0451.minijvm.execution.optimizer;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicVerifier;
+import org.objectweb.asm.tree.analysis.Frame;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * An optimization pass over the code of a method before it is linked.<br>
+ * The pass works on a copy of the method, the original {@link MethodNode} is never modified.
+ * It removes code which does not have to be executed:
+ * <ul>
+ *     <li>Conditional jumps and switches with constant operands are replaced by unconditional jumps</li>
+ *     <li>Loads of constant local variables and arithmetic with constant results are replaced by the constant</li>
+ *     <li>Stores to local variables which are never read again are removed</li>
+ *     <li>Unreachable code is removed</li>
+ *     <li>Jumps to jumps are redirected to the final target and jumps to the next instruction are removed</li>
+ *     <li>Side effect free values which are popped directly are removed</li>
+ * </ul>
+ * Instructions which can throw an exception are never removed unless they are unreachable,
+ * so exception handlers and line numbers behave exactly like in the original code.
+ */
+public class PeepholeOptimizer {
+
+    private static final int MAX_ROUNDS = 16;
+
+    /**
+     * Optimize the code of a method.
+     *
+     * @param owner  The internal name of the owner of the method
+     * @param method The method to optimize
+     * @return The optimized copy of the method or the original method if it could not be optimized
+     */
+    public static MethodNode optimize(final String owner, final MethodNode method) {
+        if (method.instructions.size() == 0) return method;
+        for (AbstractInsnNode instruction : method.instructions) {
+            //Subroutines share local variables between callers, which breaks the liveness analysis
+            if (instruction.getOpcode() == Opcodes.JSR || instruction.getOpcode() == Opcodes.RET) return method;
+        }
+
+        MethodNode copy = copy(method);
+        try {
+            //The constant analysis does not check types, only optimize valid code
+            new Analyzer<>(new BasicVerifier()).analyze(owner, copy);
+            boolean changed = true;
+            for (int round = 0; changed && round < MAX_ROUNDS; round++) {
+                removeEmptyTryCatchBlocks(copy);
+                changed = new PeepholeOptimizer(owner, copy).run();
+                changed |= collapseJumps(copy);
+                changed |= removePoppedValues(copy);
+            }
+            removeEmptyTryCatchBlocks(copy);
+        } catch (AnalyzerException e) {
+            return method;
+        }
+        return copy;
+    }
+
+    private static MethodNode copy(final MethodNode method) {
+        MethodNode copy = new MethodNode(method.access, method.name, method.desc, method.signature, method.exceptions == null ? null : method.exceptions.toArray(new String[0]));
+        Map<LabelNode, LabelNode> labels = new HashMap<>();
+        for (AbstractInsnNode instruction : method.instructions) {
+            if (instruction instanceof LabelNode labelNode) labels.put(labelNode, new LabelNode());
+        }
+        for (AbstractInsnNode instruction : method.instructions) copy.instructions.add(instruction.clone(labels));
+        if (method.tryCatchBlocks != null) {
+            for (TryCatchBlockNode tryCatchBlock : method.tryCatchBlocks) {
+                copy.tryCatchBlocks.add(new TryCatchBlockNode(labels.get(tryCatchBlock.start), labels.get(tryCatchBlock.end), labels.get(tryCatchBlock.handler), tryCatchBlock.type));
+            }
+        }
+        copy.maxLocals = method.maxLocals;
+        copy.maxStack = method.maxStack;
+        return copy;
+    }
+
+
+    private final String owner;
+    private final MethodNode method;
+    private final InsnList instructions;
+    private AbstractInsnNode[] nodes;
+    private Frame<ConstantValue>[] frames;
+    private List<List<Integer>> successors;
+
+    private PeepholeOptimizer(final String owner, final MethodNode method) {
+        this.owner = owner;
+        this.method = method;
+        this.instructions = method.instructions;
+    }
+
+    /**
+     * Run the passes which require a data flow analysis of the method.
+     *
+     * @return If the method has been changed
+     */
+    private boolean run() throws AnalyzerException {
+        this.nodes = this.instructions.toArray();
+        this.successors = new ArrayList<>(this.nodes.length);
+        for (int i = 0; i < this.nodes.length; i++) this.successors.add(new ArrayList<>(2));
+        this.frames = new Analyzer<>(new ConstantInterpreter()) {
+            @Override
+            protected void newControlFlowEdge(final int insnIndex, final int successorIndex) {
+                PeepholeOptimizer.this.successors.get(insnIndex).add(successorIndex);
+            }
+
+            @Override
+            protected boolean newControlFlowExceptionEdge(final int insnIndex, final int successorIndex) {
+                PeepholeOptimizer.this.successors.get(insnIndex).add(successorIndex);
+                return true;
+            }
+        }.analyze(this.owner, this.method);
+
+        BitSet[] liveOut = this.computeLiveness();
+        boolean changed = false;
+        for (int i = 0; i < this.nodes.length; i++) {
+            AbstractInsnNode instruction = this.nodes[i];
+            int opcode = instruction.getOpcode();
+            if (opcode < 0) continue;
+            Frame<ConstantValue> frame = this.frames[i];
+            if (frame == null) {
+                //Unreachable code
+                this.instructions.remove(instruction);
+                changed = true;
+                continue;
+            }
+
+            InsnList replacement = null;
+            if (opcode >= Opcodes.IFEQ && opcode <= Opcodes.IFLE) {
+                ConstantValue value = this.peek(frame, 0);
+                if (value.isInt()) replacement = this.replaceJump(new int[]{1}, ConstantInterpreter.compare(opcode, value.intValue(), 0), ((JumpInsnNode) instruction).label);
+            } else if (opcode >= Opcodes.IF_ICMPEQ && opcode <= Opcodes.IF_ICMPLE) {
+                ConstantValue value1 = this.peek(frame, 1);
+                ConstantValue value2 = this.peek(frame, 0);
+                if (value1.isInt() && value2.isInt()) replacement = this.replaceJump(new int[]{1, 1}, ConstantInterpreter.compare(opcode, value1.intValue(), value2.intValue()), ((JumpInsnNode) instruction).label);
+            } else if (opcode == Opcodes.TABLESWITCH || opcode == Opcodes.LOOKUPSWITCH) {
+                ConstantValue value = this.peek(frame, 0);
+                if (value.isInt()) replacement = this.replaceJump(new int[]{1}, true, switchTarget(instruction, value.intValue()));
+            } else if (opcode == Opcodes.ILOAD || opcode == Opcodes.LLOAD) {
+                ConstantValue value = frame.getLocal(((VarInsnNode) instruction).var);
+                if (value.getConstant() != null) {
+                    replacement = new InsnList();
+                    replacement.add(pushConstant(value.getConstant()));
+                }
+            } else if (isFoldable(opcode)) {
+                ConstantValue result = this.frames[i + 1] == null ? null : this.peek(this.frames[i + 1], 0);
+                if (result != null && result.getConstant() != null) {
+                    replacement = new InsnList();
+                    int inputs = isUnary(opcode) ? 1 : 2;
+                    for (int input = 0; input < inputs; input++) replacement.add(new InsnNode(this.peek(frame, input).getSize() == 2 ? Opcodes.POP2 : Opcodes.POP));
+                    replacement.add(pushConstant(result.getConstant()));
+                }
+            } else if (opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE) {
+                if (!liveOut[i].get(((VarInsnNode) instruction).var)) {
+                    replacement = new InsnList();
+                    replacement.add(new InsnNode(opcode == Opcodes.LSTORE || opcode == Opcodes.DSTORE ? Opcodes.POP2 : Opcodes.POP));
+                }
+            } else if (opcode == Opcodes.IINC) {
+                if (!liveOut[i].get(((IincInsnNode) instruction).var)) replacement = new InsnList();
+            }
+
+            if (replacement != null) {
+                this.instructions.insertBefore(instruction, replacement);
+                this.instructions.remove(instruction);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private ConstantValue peek(final Frame<ConstantValue> frame, final int depth) {
+        return frame.getStack(frame.getStackSize() - 1 - depth);
+    }
+
+    /**
+     * Replace a conditional jump with constant operands.
+     *
+     * @param inputs The sizes of the operands of the jump
+     * @param jump   If the jump is taken
+     * @param target The target of the jump
+     * @return The replacement instructions
+     */
+    private InsnList replaceJump(final int[] inputs, final boolean jump, final LabelNode target) {
+        InsnList replacement = new InsnList();
+        for (int size : inputs) replacement.add(new InsnNode(size == 2 ? Opcodes.POP2 : Opcodes.POP));
+        if (jump) replacement.add(new JumpInsnNode(Opcodes.GOTO, target));
+        return replacement;
+    }
+
+    /**
+     * Compute the local variables which are read after each instruction.
+     *
+     * @return The live local variables after each instruction
+     */
+    private BitSet[] computeLiveness() {
+        BitSet[] liveIn = new BitSet[this.nodes.length];
+        BitSet[] liveOut = new BitSet[this.nodes.length];
+        for (int i = 0; i < this.nodes.length; i++) {
+            liveIn[i] = new BitSet();
+            liveOut[i] = new BitSet();
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = this.nodes.length - 1; i >= 0; i--) {
+                if (this.frames[i] == null) continue;
+                BitSet out = new BitSet();
+                for (int successor : this.successors.get(i)) out.or(liveIn[successor]);
+                BitSet in = (BitSet) out.clone();
+                AbstractInsnNode instruction = this.nodes[i];
+                int opcode = instruction.getOpcode();
+                if (opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE) in.clear(((VarInsnNode) instruction).var);
+                else if (opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD) in.set(((VarInsnNode) instruction).var);
+                else if (opcode == Opcodes.IINC) in.set(((IincInsnNode) instruction).var);
+                liveOut[i] = out;
+                if (!in.equals(liveIn[i])) {
+                    liveIn[i] = in;
+                    changed = true;
+                }
+            }
+        }
+        return liveOut;
+    }
+
+    private static LabelNode switchTarget(final AbstractInsnNode instruction, final int key) {
+        if (instruction instanceof TableSwitchInsnNode tableSwitch) {
+            if (key < tableSwitch.min || key > tableSwitch.max) return tableSwitch.dflt;
+            return tableSwitch.labels.get(key - tableSwitch.min);
+        } else {
+            LookupSwitchInsnNode lookupSwitch = (LookupSwitchInsnNode) instruction;
+            int index = lookupSwitch.keys.indexOf(key);
+            return index == -1 ? lookupSwitch.dflt : lookupSwitch.labels.get(index);
+        }
+    }
+
+    private static boolean isFoldable(final int opcode) {
+        return (opcode >= Opcodes.IADD && opcode <= Opcodes.LXOR && opcode != Opcodes.IINC && !isFloatingPoint(opcode))
+                || opcode == Opcodes.I2L || opcode == Opcodes.L2I || opcode == Opcodes.I2B || opcode == Opcodes.I2C || opcode == Opcodes.I2S || opcode == Opcodes.LCMP;
+    }
+
+    private static boolean isFloatingPoint(final int opcode) {
+        return switch (opcode) {
+            case Opcodes.FADD, Opcodes.DADD, Opcodes.FSUB, Opcodes.DSUB, Opcodes.FMUL, Opcodes.DMUL, Opcodes.FDIV, Opcodes.DDIV,
+                 Opcodes.FREM, Opcodes.DREM, Opcodes.FNEG, Opcodes.DNEG -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isUnary(final int opcode) {
+        return opcode == Opcodes.INEG || opcode == Opcodes.LNEG || opcode == Opcodes.I2L || opcode == Opcodes.L2I || opcode == Opcodes.I2B || opcode == Opcodes.I2C || opcode == Opcodes.I2S;
+    }
+
+    private static AbstractInsnNode pushConstant(final Object constant) {
+        if (constant instanceof Integer i) {
+            if (i >= -1 && i <= 5) return new InsnNode(Opcodes.ICONST_0 + i);
+            else if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE) return new IntInsnNode(Opcodes.BIPUSH, i);
+            else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE) return new IntInsnNode(Opcodes.SIPUSH, i);
+        } else if (constant instanceof Long l) {
+            if (l == 0L) return new InsnNode(Opcodes.LCONST_0);
+            else if (l == 1L) return new InsnNode(Opcodes.LCONST_1);
+        }
+        return new LdcInsnNode(constant);
+    }
+
+    /**
+     * Redirect jumps to unconditional jumps to their final target and remove jumps to the next instruction.
+     *
+     * @param method The method to optimize
+     * @return If the method has been changed
+     */
+    private static boolean collapseJumps(final MethodNode method) {
+        boolean changed = false;
+        for (AbstractInsnNode instruction : method.instructions.toArray()) {
+            if (instruction instanceof JumpInsnNode jump) {
+                LabelNode target = finalTarget(jump.label);
+                if (target != jump.label) {
+                    jump.label = target;
+                    changed = true;
+                }
+                if (jump.getOpcode() == Opcodes.GOTO && nextInstruction(jump) == nextInstruction(target)) {
+                    method.instructions.remove(jump);
+                    changed = true;
+                }
+            } else if (instruction instanceof TableSwitchInsnNode tableSwitch) {
+                changed |= redirect(tableSwitch.labels);
+                LabelNode target = finalTarget(tableSwitch.dflt);
+                changed |= target != tableSwitch.dflt;
+                tableSwitch.dflt = target;
+            } else if (instruction instanceof LookupSwitchInsnNode lookupSwitch) {
+                changed |= redirect(lookupSwitch.labels);
+                LabelNode target = finalTarget(lookupSwitch.dflt);
+                changed |= target != lookupSwitch.dflt;
+                lookupSwitch.dflt = target;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean redirect(final List<LabelNode> labels) {
+        boolean changed = false;
+        for (int i = 0; i < labels.size(); i++) {
+            LabelNode target = finalTarget(labels.get(i));
+            if (target != labels.get(i)) {
+                labels.set(i, target);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static LabelNode finalTarget(final LabelNode label) {
+        Set<LabelNode> visited = new HashSet<>();
+        LabelNode target = label;
+        while (visited.add(target) && nextInstruction(target) instanceof JumpInsnNode jump && jump.getOpcode() == Opcodes.GOTO) {
+            target = jump.label;
+        }
+        return target;
+    }
+
+    /**
+     * Remove side effect free values which are popped directly after they have been pushed.
+     *
+     * @param method The method to optimize
+     * @return If the method has been changed
+     */
+    private static boolean removePoppedValues(final MethodNode method) {
+        boolean changed = false;
+        for (AbstractInsnNode instruction : method.instructions.toArray()) {
+            int opcode = instruction.getOpcode();
+            if (opcode != Opcodes.POP && opcode != Opcodes.POP2) continue;
+            AbstractInsnNode previous = instruction.getPrevious();
+            //Line numbers can be skipped, labels might be jump targets with a different value on the stack
+            while (previous instanceof LineNumberNode || previous instanceof FrameNode) previous = previous.getPrevious();
+            if (previous == null) continue;
+            int size = pushedSize(previous);
+            if ((size == 1 && opcode == Opcodes.POP) || (size == 2 && opcode == Opcodes.POP2)) {
+                method.instructions.remove(previous);
+                method.instructions.remove(instruction);
+                changed = true;
+                continue;
+            }
+            int[] inputs = arithmeticInputs(previous.getOpcode());
+            if (inputs != null && inputs[0] == (opcode == Opcodes.POP2 ? 2 : 1)) {
+                //Pop the inputs of the unused result instead, the pushes of the inputs are removed in the next round
+                InsnList replacement = new InsnList();
+                for (int i = 1; i < inputs.length; i++) replacement.add(new InsnNode(inputs[i] == 2 ? Opcodes.POP2 : Opcodes.POP));
+                method.instructions.insertBefore(previous, replacement);
+                method.instructions.remove(previous);
+                method.instructions.remove(instruction);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return The size of the result followed by the sizes of the inputs (from the top of the stack) of an arithmetic instruction which can not throw or {@code null} if the instruction is not such an instruction
+     */
+    @Nullable
+    private static int[] arithmeticInputs(final int opcode) {
+        return switch (opcode) {
+            case Opcodes.IADD, Opcodes.ISUB, Opcodes.IMUL, Opcodes.ISHL, Opcodes.ISHR, Opcodes.IUSHR, Opcodes.IAND, Opcodes.IOR, Opcodes.IXOR,
+                 Opcodes.FADD, Opcodes.FSUB, Opcodes.FMUL, Opcodes.FDIV, Opcodes.FREM, Opcodes.FCMPL, Opcodes.FCMPG -> new int[]{1, 1, 1};
+            case Opcodes.LADD, Opcodes.LSUB, Opcodes.LMUL, Opcodes.LAND, Opcodes.LOR, Opcodes.LXOR,
+                 Opcodes.DADD, Opcodes.DSUB, Opcodes.DMUL, Opcodes.DDIV, Opcodes.DREM -> new int[]{2, 2, 2};
+            case Opcodes.LSHL, Opcodes.LSHR, Opcodes.LUSHR -> new int[]{2, 1, 2};
+            case Opcodes.LCMP, Opcodes.DCMPL, Opcodes.DCMPG -> new int[]{1, 2, 2};
+            case Opcodes.INEG, Opcodes.FNEG, Opcodes.I2F, Opcodes.F2I, Opcodes.I2B, Opcodes.I2C, Opcodes.I2S -> new int[]{1, 1};
+            case Opcodes.LNEG, Opcodes.DNEG, Opcodes.L2D, Opcodes.D2L -> new int[]{2, 2};
+            case Opcodes.I2L, Opcodes.I2D, Opcodes.F2L, Opcodes.F2D -> new int[]{2, 1};
+            case Opcodes.L2I, Opcodes.L2F, Opcodes.D2I, Opcodes.D2F -> new int[]{1, 2};
+            default -> null;
+        };
+    }
+
+    /**
+     * @return The size of the value pushed by a side effect free instruction or {@code 0} if the instruction is not side effect free
+     */
+    private static int pushedSize(final AbstractInsnNode instruction) {
+        int opcode = instruction.getOpcode();
+        if (opcode >= Opcodes.ACONST_NULL && opcode <= Opcodes.ICONST_5) return 1;
+        return switch (opcode) {
+            case Opcodes.FCONST_0, Opcodes.FCONST_1, Opcodes.FCONST_2, Opcodes.BIPUSH, Opcodes.SIPUSH, Opcodes.ILOAD, Opcodes.FLOAD, Opcodes.ALOAD -> 1;
+            case Opcodes.LCONST_0, Opcodes.LCONST_1, Opcodes.DCONST_0, Opcodes.DCONST_1, Opcodes.LLOAD, Opcodes.DLOAD -> 2;
+            case Opcodes.LDC -> {
+                Object constant = ((LdcInsnNode) instruction).cst;
+                if (constant instanceof Integer || constant instanceof Float) yield 1;
+                else if (constant instanceof Long || constant instanceof Double) yield 2;
+                else yield 0; //Strings and classes might have to be resolved first
+            }
+            default -> 0;
+        };
+    }
+
+    @Nullable
+    private static AbstractInsnNode nextInstruction(final AbstractInsnNode node) {
+        AbstractInsnNode next = node.getNext();
+        while (next != null && next.getOpcode() < 0) next = next.getNext();
+        return next;
+    }
+
+    private static void removeEmptyTryCatchBlocks(final MethodNode method) {
+        method.tryCatchBlocks.removeIf(tryCatchBlock -> {
+            for (AbstractInsnNode node = tryCatchBlock.start; node != null && node != tryCatchBlock.end; node = node.getNext()) {
+                if (node.getOpcode() >= 0) return false;
+            }
+            return true;
+        });
+    }
+
+}
@@ -1,14 +1,21 @@
 package net.lenni0451.minijvm.object;
 
 import lombok.SneakyThrows;
-import net.lenni0451.commons.asm.ASMUtils;
 import net.lenni0451.commons.asm.Modifiers;
 import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.ExecutionManager;
 import net.lenni0451.minijvm.exception.ExecutorException;
 import net.lenni0451.minijvm.execution.ExecutionResult;
 import net.lenni0451.minijvm.execution.Executor;
+import net.lenni0451.minijvm.execution.LinkedMethod;
+import net.lenni0451.minijvm.execution.MethodExecutor;
+import net.lenni0451.minijvm.execution.MethodLinker;
 import net.lenni0451.minijvm.stack.StackElement;
+import net.lenni0451.minijvm.stack.StackObject;
+import net.lenni0451.minijvm.utils.ExceptionUtils;
+import net.lenni0451.minijvm.utils.ExecutorStack;
 import net.lenni0451.minijvm.utils.ExecutorTypeUtils;
+import net.lenni0451.minijvm.utils.MethodDescriptor;
 import net.lenni0451.minijvm.utils.Types;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -17,28 +24,96 @@ import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Stack;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ExecutorClass {
 
+    private static final int UNINITIALIZED = 0;
+    private static final int INITIALIZING = 1;
+    private static final int INITIALIZED = 2;
+    private static final int FAILED = 3;
+
     private final Type type;
     private final ClassNode classNode;
     final Map<String, ExecutorClass> superClasses;
+    private ExecutorClass[] superChain;
     private final Map<FieldNode, StackElement> staticFields;
-    private final AtomicBoolean initialized = new AtomicBoolean(false);
+    private final Map<MethodNode, LinkedMethod> linkedMethods;
+    private final Object initLock = new Object();
+    private volatile int initState = UNINITIALIZED;
+    @Nullable
+    private Thread initThread;
+    @Nullable
+    private Throwable initError;
+    private Map<MemberKey, Integer> methodIndices;
+    private ResolvedMethod[] methodTable;
+    private Map<ExecutorClass, ResolvedMethod[]> interfaceTables;
+    private Map<MemberKey, ResolvedField> fieldTable;
+    private Map<FieldNode, Integer> fieldSlots;
+    private int primitiveFieldCount;
+    private int referenceFieldCount;
+    private volatile FieldTemplate fieldTemplate;
 
     public ExecutorClass(final ExecutionContext context, final Type type, final ClassNode classNode) {
         this.type = type;
         this.classNode = classNode;
         this.superClasses = new LinkedHashMap<>();
-        this.staticFields = new HashMap<>();
+        this.staticFields = new ConcurrentHashMap<>();
+        this.linkedMethods = new ConcurrentHashMap<>();
 
         this.initSuperClasses(context);
         this.initFields(context);
+        this.initMethodTables();
+        this.initFieldTable();
+    }
+
+    /**
+     * Copy a class for another heap.<br>
+     * The parsed class and the layout tables are shared, static fields and references to other classes are copied by the copier.
+     * Methods are linked again when they are used.
+     *
+     * @param source The class to copy
+     * @param copier The copier of the heap
+     */
+    ExecutorClass(final ExecutorClass source, final HeapCopier copier) {
+        copier.register(source, this);
+        this.type = source.type;
+        this.classNode = source.classNode;
+        this.superClasses = new LinkedHashMap<>();
+        for (Map.Entry<String, ExecutorClass> entry : source.superClasses.entrySet()) this.superClasses.put(entry.getKey(), copier.copy(entry.getValue()));
+        this.superChain = new ExecutorClass[source.superChain.length];
+        for (int i = 0; i < this.superChain.length; i++) this.superChain[i] = copier.copy(source.superChain[i]);
+        this.staticFields = new ConcurrentHashMap<>(source.staticFields);
+        copier.defer(() -> this.staticFields.replaceAll((field, value) -> copier.copy(value)));
+        this.linkedMethods = new ConcurrentHashMap<>();
+        synchronized (source.initLock) {
+            if (source.initState == INITIALIZING) throw new IllegalStateException("Cannot copy " + source.classNode.name + " while it is being initialized");
+            this.initState = source.initState;
+            this.initError = source.initError;
+        }
+        this.methodIndices = source.methodIndices;
+        this.methodTable = new ResolvedMethod[source.methodTable.length];
+        for (int i = 0; i < this.methodTable.length; i++) this.methodTable[i] = copier.copy(source.methodTable[i]);
+        this.interfaceTables = new HashMap<>();
+        for (Map.Entry<ExecutorClass, ResolvedMethod[]> entry : source.interfaceTables.entrySet()) {
+            ResolvedMethod[] interfaceTable = new ResolvedMethod[entry.getValue().length];
+            for (int i = 0; i < interfaceTable.length; i++) interfaceTable[i] = copier.copy(entry.getValue()[i]);
+            this.interfaceTables.put(copier.copy(entry.getKey()), interfaceTable);
+        }
+        this.fieldTable = new HashMap<>();
+        for (Map.Entry<MemberKey, ResolvedField> entry : source.fieldTable.entrySet()) {
+            ResolvedField field = entry.getValue();
+            this.fieldTable.put(entry.getKey(), new ResolvedField(copier.copy(field.owner()), field.field(), field.slot(), field.kind()));
+        }
+        this.fieldSlots = source.fieldSlots;
+        this.primitiveFieldCount = source.primitiveFieldCount;
+        this.referenceFieldCount = source.referenceFieldCount;
     }
 
     public Type getType() {
@@ -64,6 +139,13 @@ public class ExecutorClass {
                 stack.push(context.getExecutionManager().loadClass(context, Type.getObjectType(current.classNode.superName)));
             }
         }
+        ExecutorClass superClass = this.classNode.superName == null ? null : this.superClasses.get(this.classNode.superName);
+        if (superClass == null) {
+            this.superChain = new ExecutorClass[]{this};
+        } else {
+            this.superChain = Arrays.copyOf(superClass.superChain, superClass.superChain.length + 1);
+            this.superChain[superClass.superChain.length] = this;
+        }
     }
 
     private void initFields(final ExecutionContext context) {
@@ -76,15 +158,264 @@ public class ExecutorClass {
         }
     }
 
-    public void invokeStaticInit(final ExecutionContext context) {
-        if (!this.initialized.compareAndSet(false, true)) return;
-        for (MethodNode method : this.classNode.methods) {
-            if (Modifiers.has(method.access, Opcodes.ACC_STATIC) && method.name.equals("<clinit>")) {
-                ExecutionResult result = Executor.execute(context, this, method, null);
-                if (result.hasException()) throw new ExecutorException(context, "Could not execute static initializer of " + this.classNode.name, result.getException());
+    /**
+     * Build the method table and the interface tables of this class.<br>
+     * The method table contains every method (by name and descriptor) of this class and all super classes and interfaces,
+     * resolved to the first non-abstract implementation in the same order as {@link #findMethod(ExecutionContext, String, String)}.<br>
+     * The layout of the super class is used as a prefix, so an index resolved in a class is valid for all of its subclasses.
+     */
+    private void initMethodTables() {
+        ExecutorClass superClass = this.classNode.superName == null ? null : this.superClasses.get(this.classNode.superName);
+        this.methodIndices = superClass == null ? new HashMap<>() : new HashMap<>(superClass.methodIndices);
+        for (ExecutorClass executorClass : this.superClasses.values()) {
+            for (MethodNode method : executorClass.classNode.methods) {
+                this.methodIndices.putIfAbsent(new MemberKey(method.name, method.desc), this.methodIndices.size());
+            }
+        }
+        this.methodTable = new ResolvedMethod[this.methodIndices.size()];
+        for (ExecutorClass executorClass : this.superClasses.values()) {
+            for (MethodNode method : executorClass.classNode.methods) {
+                if (Modifiers.has(method.access, Opcodes.ACC_ABSTRACT)) continue;
+                int index = this.methodIndices.get(new MemberKey(method.name, method.desc));
+                if (this.methodTable[index] != null) continue;
+                if (executorClass == this) this.methodTable[index] = new ResolvedMethod(this, method);
+                else this.methodTable[index] = executorClass.getDeclaredMethod(method); //Share the resolved method with the declaring class
+            }
+        }
+
+        this.interfaceTables = new HashMap<>();
+        for (ExecutorClass executorClass : this.superClasses.values()) {
+            if (!executorClass.isInterface()) continue;
+            ResolvedMethod[] interfaceTable = new ResolvedMethod[executorClass.methodTable.length];
+            for (Map.Entry<MemberKey, Integer> entry : executorClass.methodIndices.entrySet()) {
+                interfaceTable[entry.getValue()] = this.methodTable[this.methodIndices.get(entry.getKey())];
+            }
+            this.interfaceTables.put(executorClass, interfaceTable);
+        }
+    }
+
+    /**
+     * Build the instance field layout and the field table of this class.<br>
+     * Primitive fields get a slot in the {@code long[]} of an object and reference fields a slot in its reference array.
+     * Like the method table the field slots of the super class are used as a prefix of both arrays.
+     */
+    private void initFieldTable() {
+        ExecutorClass superClass = this.classNode.superName == null ? null : this.superClasses.get(this.classNode.superName);
+        this.fieldSlots = superClass == null ? new HashMap<>() : new HashMap<>(superClass.fieldSlots);
+        this.primitiveFieldCount = superClass == null ? 0 : superClass.primitiveFieldCount;
+        this.referenceFieldCount = superClass == null ? 0 : superClass.referenceFieldCount;
+        for (FieldNode field : this.classNode.fields) {
+            if (Modifiers.has(field.access, Opcodes.ACC_STATIC)) continue;
+            if (fieldKind(field) == ExecutorStack.REFERENCE) this.fieldSlots.put(field, this.referenceFieldCount++);
+            else this.fieldSlots.put(field, this.primitiveFieldCount++);
+        }
+        this.fieldTable = new HashMap<>();
+        for (ExecutorClass executorClass : this.superClasses.values()) {
+            for (FieldNode field : executorClass.classNode.fields) {
+                this.fieldTable.putIfAbsent(new MemberKey(field.name, field.desc), new ResolvedField(executorClass, field, this.fieldSlots.getOrDefault(field, -1), fieldKind(field)));
             }
         }
-        for (ExecutorClass superClass : this.superClasses.values()) superClass.invokeStaticInit(context);
+    }
+
+    /**
+     * @return The amount of primitive instance field slots of this class
+     */
+    public int getPrimitiveFieldCount() {
+        return this.primitiveFieldCount;
+    }
+
+    /**
+     * @return The amount of reference instance field slots of this class
+     */
+    public int getReferenceFieldCount() {
+        return this.referenceFieldCount;
+    }
+
+    /**
+     * Get the slot of an instance field declared in this class or one of its super classes.<br>
+     * The slot indexes the primitive or the reference fields of an object, depending on the {@link #fieldKind(FieldNode) kind} of the field.
+     *
+     * @param field The field
+     * @return The slot or {@code -1} if the field is not an instance field of this class
+     */
+    public int getFieldSlot(final FieldNode field) {
+        return this.fieldSlots.getOrDefault(field, -1);
+    }
+
+    /**
+     * Get the initial field values for new instances of this class.<br>
+     * The default values are computed once and copied for every instance.
+     *
+     * @param context The execution context
+     * @return The field template
+     */
+    FieldTemplate getFieldTemplate(final ExecutionContext context) {
+        FieldTemplate template = this.fieldTemplate;
+        if (template == null) {
+            long[] primitives = new long[this.primitiveFieldCount];
+            ExecutorObject[] references = new ExecutorObject[this.referenceFieldCount];
+            boolean hasReferences = false;
+            for (Map.Entry<FieldNode, Integer> entry : this.fieldSlots.entrySet()) {
+                FieldNode field = entry.getKey();
+                if (field.value == null) continue;
+                StackElement value = ExecutorTypeUtils.parse(context, field.value);
+                if (value instanceof StackObject stackObject) {
+                    references[entry.getValue()] = stackObject.value();
+                    hasReferences = true;
+                } else {
+                    primitives[entry.getValue()] = ExecutorStack.toBits(value);
+                }
+            }
+            template = new FieldTemplate(primitives, hasReferences ? references : null);
+            this.fieldTemplate = template;
+        }
+        return template;
+    }
+
+    /**
+     * Get the slot type used to store the values of a field.
+     *
+     * @param field The field
+     * @return The slot type, one of the {@link ExecutorStack} types
+     */
+    public static byte fieldKind(final FieldNode field) {
+        return ExecutorStack.typeOf(Type.getType(field.desc));
+    }
+
+    public boolean isInterface() {
+        return Modifiers.has(this.classNode.access, Opcodes.ACC_INTERFACE);
+    }
+
+    /**
+     * Check if the given class is this class or one of its super classes or interfaces.<br>
+     * Super classes are found at the depth of the other class in the super class chain, only interfaces need a lookup.
+     *
+     * @param other The other class
+     * @return If this class is a subclass of the other class
+     */
+    public boolean isSubclassOf(final ExecutorClass other) {
+        if (!other.isInterface()) {
+            int depth = other.superChain.length - 1;
+            return depth < this.superChain.length && this.superChain[depth] == other;
+        }
+        return this.superClasses.get(other.classNode.name) == other;
+    }
+
+    /**
+     * @return If the static initializer of this class and the super classes it depends on has completed
+     */
+    public boolean isInitialized() {
+        return this.initState == INITIALIZED;
+    }
+
+    /**
+     * Initialize this class and its super classes if they have not been initialized yet.<br>
+     * Like in the JVM (JVMS 5.5) the super class and all super interfaces declaring a default method are initialized before
+     * the static initializer of this class runs. Interfaces do not initialize their super interfaces.
+     * Only one thread runs the static initializer. Other threads wait until the initialization has finished,
+     * the initializing thread itself can access the class while it is being initialized.<br>
+     * If the static initializer throws, the class is marked as erroneous and an {@link ExceptionInInitializerError} is returned.
+     * Every later initialization of the class returns a {@link NoClassDefFoundError}.
+     *
+     * @param context The execution context
+     * @return {@code null} if the class can be used or the exception result that should be thrown
+     */
+    @Nullable
+    public ExecutionResult invokeStaticInit(final ExecutionContext context) {
+        if (this.initState == INITIALIZED) return null;
+        synchronized (this.initLock) {
+            while (this.initState == INITIALIZING && this.initThread != Thread.currentThread()) {
+                try {
+                    this.initLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ExecutorException(context, "Interrupted while waiting for the initialization of " + this.classNode.name, e);
+                }
+            }
+            switch (this.initState) {
+                case INITIALIZING, INITIALIZED -> {
+                    return null;
+                }
+                case FAILED -> {
+                    if (this.initError != null) throw new ExecutorException(context, "Could not initialize class " + this.classNode.name, this.initError);
+                }
+                default -> {
+                    this.initState = INITIALIZING;
+                    this.initThread = Thread.currentThread();
+                }
+            }
+        }
+        //The guest exception is created outside the lock since its constructor may need other classes to be initialized
+        if (this.initState == FAILED) {
+            return ExceptionUtils.newException(context, Types.NO_CLASS_DEF_FOUND_ERROR, "Could not initialize class " + this.type.getClassName());
+        }
+
+        ExecutionResult result = null;
+        try {
+            if (!this.isInterface()) {
+                if (this.superChain.length > 1) result = this.superChain[this.superChain.length - 2].invokeStaticInit(context);
+                if (result == null) result = this.initSuperInterfaces(context, this.classNode.interfaces);
+            }
+            if (result == null) result = this.runStaticInitializer(context);
+        } catch (Throwable t) {
+            this.finishInit(FAILED, t);
+            throw t;
+        }
+        this.finishInit(result == null ? INITIALIZED : FAILED, null);
+        return result;
+    }
+
+    /**
+     * Initialize the given interfaces and their super interfaces which declare a default method.<br>
+     * The super interfaces of an interface are initialized before the interface itself.
+     */
+    @Nullable
+    private ExecutionResult initSuperInterfaces(final ExecutionContext context, final List<String> interfaces) {
+        for (String name : interfaces) {
+            ExecutorClass superInterface = this.superClasses.get(name);
+            ExecutionResult result = this.initSuperInterfaces(context, superInterface.classNode.interfaces);
+            if (result == null && superInterface.hasDefaultMethods()) result = superInterface.invokeStaticInit(context);
+            if (result != null) return result;
+        }
+        return null;
+    }
+
+    private boolean hasDefaultMethods() {
+        for (MethodNode method : this.classNode.methods) {
+            if (!Modifiers.has(method.access, Opcodes.ACC_ABSTRACT) && !Modifiers.has(method.access, Opcodes.ACC_STATIC)) return true;
+        }
+        return false;
+    }
+
+    @Nullable
+    private ExecutionResult runStaticInitializer(final ExecutionContext context) {
+        for (MethodNode method : this.classNode.methods) {
+            if (!Modifiers.has(method.access, Opcodes.ACC_STATIC) || !method.name.equals("<clinit>")) continue;
+            ExecutionResult result = Executor.execute(context, this, method, null);
+            if (!result.hasException()) return null;
+            ExecutorObject exception = result.getException();
+            if (exception.getClazz().isInstance(context, Types.ERROR)) return result;
+            return ExceptionUtils.newException(context, Types.EXCEPTION_IN_INITIALIZER_ERROR, exception);
+        }
+        return null;
+    }
+
+    /**
+     * Initialize this class for an access by the executor itself.<br>
+     * The executor has no guest frame to throw a failed initialization to, so it is critical.
+     */
+    private void requireInitialized(final ExecutionContext context) {
+        ExecutionResult result = this.invokeStaticInit(context);
+        if (result != null) throw new ExecutorException(context, "Could not initialize class " + this.classNode.name, result.getException());
+    }
+
+    private void finishInit(final int state, @Nullable final Throwable error) {
+        synchronized (this.initLock) {
+            this.initState = state;
+            this.initError = error;
+            this.initThread = null;
+            this.initLock.notifyAll();
+        }
     }
 
     public boolean isInstance(final ExecutionContext context, final Type type) {
@@ -103,24 +434,91 @@ public class ExecutorClass {
         return this.superClasses.containsKey(name);
     }
 
+    /**
+     * Check if this class is an instance of the given class.<br>
+     * Unlike {@link #isInstance(ExecutionContext, Type)} this does not need to look up the class by name.
+     *
+     * @param context The execution context
+     * @param other   The class to check against
+     * @return If this class is an instance of the given class
+     */
+    public boolean isInstance(final ExecutionContext context, final ExecutorClass other) {
+        if (this.type.getSort() == Type.ARRAY) return this.isInstance(context, other.type);
+        return this == other || this.isSubclassOf(other);
+    }
+
     @Nullable
     public ResolvedField findField(final ExecutionContext context, final String name, final String descriptor) {
-        this.invokeStaticInit(context);
-        for (Map.Entry<String, ExecutorClass> entry : this.superClasses.entrySet()) {
-            FieldNode field = ASMUtils.getField(entry.getValue().classNode, name, descriptor);
-            if (field != null) return new ResolvedField(entry.getValue(), field);
-        }
-        return null;
+        this.requireInitialized(context);
+        return this.fieldTable.get(new MemberKey(name, descriptor));
     }
 
     @Nullable
     public ResolvedMethod findMethod(final ExecutionContext context, final String name, final String descriptor) {
-        this.invokeStaticInit(context);
-        for (Map.Entry<String, ExecutorClass> entry : this.superClasses.entrySet()) {
-            MethodNode method = ASMUtils.getMethod(entry.getValue().classNode, name, descriptor);
-            if (method != null && !Modifiers.has(method.access, Opcodes.ACC_ABSTRACT)) return new ResolvedMethod(entry.getValue(), method);
+        this.requireInitialized(context);
+        Integer index = this.methodIndices.get(new MemberKey(name, descriptor));
+        if (index == null) return null;
+        return this.methodTable[index];
+    }
+
+    /**
+     * Get the resolved method for a non-abstract method declared in this class.
+     *
+     * @param method The method
+     * @return The resolved method or {@code null} if the method is abstract or not declared in this class
+     */
+    @Nullable
+    public ResolvedMethod getDeclaredMethod(final MethodNode method) {
+        Integer index = this.methodIndices.get(new MemberKey(method.name, method.desc));
+        if (index == null) return null;
+        ResolvedMethod resolvedMethod = this.methodTable[index];
+        return resolvedMethod != null && resolvedMethod.method == method ? resolvedMethod : null;
+    }
+
+    /**
+     * Get the index of a method in the method table of this class.<br>
+     * If this class is an interface the index refers to the interface table instead.
+     *
+     * @param name       The name of the method
+     * @param descriptor The descriptor of the method
+     * @return The index or {@code -1} if the method does not exist
+     */
+    public int getMethodIndex(final String name, final String descriptor) {
+        Integer index = this.methodIndices.get(new MemberKey(name, descriptor));
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Resolve a method by its index in the method table of the given owner.<br>
+     * The owner has to be this class or one of its super classes or interfaces (see {@link #isSubclassOf(ExecutorClass)}).
+     *
+     * @param context The execution context
+     * @param owner   The class the index was resolved in
+     * @param index   The index of the method
+     * @return The resolved method or {@code null} if the method is abstract in this class
+     */
+    @Nullable
+    public ResolvedMethod findMethod(final ExecutionContext context, final ExecutorClass owner, final int index) {
+        this.requireInitialized(context);
+        if (owner.isInterface()) return this.interfaceTables.get(owner)[index];
+        else return this.methodTable[index];
+    }
+
+    /**
+     * Get the linked form of a method declared in this class.<br>
+     * The method is linked on first access and cached afterward.
+     *
+     * @param method The method to link
+     * @return The linked method
+     */
+    public LinkedMethod getLinkedMethod(final ExecutionContext context, final MethodNode method) {
+        LinkedMethod linkedMethod = this.linkedMethods.get(method);
+        if (linkedMethod == null) {
+            linkedMethod = MethodLinker.link(this, method, context.getExecutionManager().isVerifyMethods(), context.getExecutionManager().isOptimizeMethods());
+            LinkedMethod existing = this.linkedMethods.putIfAbsent(method, linkedMethod);
+            if (existing != null) linkedMethod = existing;
         }
-        return null;
+        return linkedMethod;
     }
 
     public StackElement getStaticField(final FieldNode field) {
@@ -147,7 +545,28 @@ public class ExecutorClass {
         return "ExecutorClass{" + this.classNode.name + "}";
     }
 
-    public record ResolvedField(ExecutorClass owner, FieldNode field) {
+    /**
+     * The initial field values of new instances.
+     *
+     * @param primitives The values of the primitive fields
+     * @param references The values of the reference fields or {@code null} if they are all {@code null}
+     */
+    record FieldTemplate(long[] primitives, @Nullable ExecutorObject[] references) {
+    }
+
+    /**
+     * A field found in a class or one of its super classes.
+     *
+     * @param owner The class declaring the field
+     * @param field The field
+     * @param slot  The instance field slot or {@code -1} for static fields
+     * @param kind  The slot type used to store the values of the field
+     */
+    public record ResolvedField(ExecutorClass owner, FieldNode field, int slot, byte kind) {
+        public boolean isStatic() {
+            return this.slot < 0;
+        }
+
         public StackElement get() {
             return this.owner.getStaticField(this.field);
         }
@@ -157,7 +576,69 @@ public class ExecutorClass {
         }
     }
 
-    public record ResolvedMethod(ExecutorClass owner, MethodNode method) {
+    /**
+     * A method resolved to the class declaring it.<br>
+     * Every method has exactly one instance which is shared by the method tables of all subclasses.
+     * This allows binding the {@link MethodExecutor} of the method once instead of looking it up by name on every invocation.
+     */
+    public static final class ResolvedMethod {
+        private final ExecutorClass owner;
+        private final MethodNode method;
+        @Nullable
+        private volatile ExecutorBinding binding;
+        @Nullable
+        private MethodDescriptor descriptor;
+
+        public ResolvedMethod(final ExecutorClass owner, final MethodNode method) {
+            this.owner = owner;
+            this.method = method;
+        }
+
+        public ExecutorClass owner() {
+            return this.owner;
+        }
+
+        public MethodNode method() {
+            return this.method;
+        }
+
+        public MethodDescriptor getDescriptor() {
+            MethodDescriptor descriptor = this.descriptor;
+            if (descriptor == null) {
+                descriptor = MethodDescriptor.of(this.method.desc);
+                this.descriptor = descriptor;
+            }
+            return descriptor;
+        }
+
+        /**
+         * Get the method executor which executes this method.<br>
+         * The executor is cached until another method executor is registered in the execution manager.
+         *
+         * @param context The execution context
+         * @return The method executor
+         */
+        public MethodExecutor getMethodExecutor(final ExecutionContext context) {
+            ExecutionManager manager = context.getExecutionManager();
+            int version = manager.getMethodExecutorVersion();
+            ExecutorBinding binding = this.binding;
+            if (binding == null || binding.version != version) {
+                binding = new ExecutorBinding(version, manager.getMethodExecutor(context, this.owner.classNode.name, this.method));
+                this.binding = binding;
+            }
+            return binding.executor;
+        }
+
+        @Override
+        public String toString() {
+            return "ResolvedMethod[owner=" + this.owner + ", method=" + this.method.name + this.method.desc + "]";
+        }
+    }
+
+    private record ExecutorBinding(int version, MethodExecutor executor) {
+    }
+
+    private record MemberKey(String name, String descriptor) {
     }
 
 }
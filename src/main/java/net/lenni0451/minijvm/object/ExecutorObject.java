@@ -1,37 +1,59 @@
 package net.lenni0451.minijvm.object;
 
-import net.lenni0451.commons.asm.Modifiers;
 import net.lenni0451.minijvm.ExecutionContext;
 import net.lenni0451.minijvm.stack.StackElement;
-import net.lenni0451.minijvm.utils.ExecutorTypeUtils;
-import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.Type;
+import net.lenni0451.minijvm.stack.StackObject;
+import net.lenni0451.minijvm.utils.ExecutorStack;
 import org.objectweb.asm.tree.FieldNode;
 
-import java.util.HashMap;
-import java.util.Map;
+import javax.annotation.Nullable;
 
+/**
+ * An object on the heap of the executor.<br>
+ * Instance fields are stored like the slots of an {@link ExecutorStack}: primitive values as raw bits in a {@code long[]} and references in an {@link ExecutorObject}[].
+ */
 public class ExecutorObject {
 
+    private static final long[] NO_PRIMITIVES = new long[0];
+    private static final ExecutorObject[] NO_REFERENCES = new ExecutorObject[0];
+
     private final ExecutorClass clazz;
-    private final Map<FieldNode, StackElement> fields;
+    private final long[] primitives;
+    private final ExecutorObject[] references;
+    private int identityHash;
 
     public ExecutorObject(final ExecutionContext context, final ExecutorClass clazz) {
         this.clazz = clazz;
-        this.fields = new HashMap<>();
+        ExecutorClass.FieldTemplate template = clazz.getFieldTemplate(context);
+        this.primitives = template.primitives().length == 0 ? NO_PRIMITIVES : template.primitives().clone();
+        if (clazz.getReferenceFieldCount() == 0) this.references = NO_REFERENCES;
+        else if (template.references() == null) this.references = new ExecutorObject[clazz.getReferenceFieldCount()];
+        else this.references = template.references().clone();
+    }
 
-        this.initFields(context);
+    /**
+     * Copy an object for another heap.<br>
+     * Subclasses have to call this constructor in their copy constructor and override {@link #copy(HeapCopier)}.
+     *
+     * @param source The object to copy
+     * @param copier The copier of the heap
+     */
+    protected ExecutorObject(final ExecutorObject source, final HeapCopier copier) {
+        copier.register(source, this);
+        this.clazz = copier.copy(source.clazz);
+        this.primitives = source.primitives.length == 0 ? NO_PRIMITIVES : source.primitives.clone();
+        this.references = source.references.length == 0 ? NO_REFERENCES : copier.copy(source.references);
+        this.identityHash = source.hashCode();
     }
 
-    private void initFields(final ExecutionContext context) {
-        for (ExecutorClass executorClass : this.clazz.superClasses.values()) {
-            for (FieldNode field : executorClass.getClassNode().fields) {
-                if (Modifiers.has(field.access, Opcodes.ACC_STATIC)) continue;
-                StackElement value = ExecutorTypeUtils.parse(context, field.value);
-                if (value.isNull()) value = ExecutorTypeUtils.getFieldDefault(ExecutorTypeUtils.typeToStackType(Type.getType(field.desc)));
-                this.fields.put(field, value);
-            }
-        }
+    /**
+     * Copy this object for another heap.
+     *
+     * @param copier The copier of the heap
+     * @return The copied object
+     */
+    public ExecutorObject copy(final HeapCopier copier) {
+        return new ExecutorObject(this, copier);
     }
 
     public ExecutorClass getClazz() {
@@ -39,13 +61,82 @@ public class ExecutorObject {
     }
 
     public StackElement getField(final FieldNode field) {
-        if (!this.fields.containsKey(field)) throw new IllegalArgumentException("Field not found: " + field.name + ":" + field.desc);
-        return this.fields.get(field);
+        int slot = this.getSlot(field);
+        byte kind = ExecutorClass.fieldKind(field);
+        if (kind == ExecutorStack.REFERENCE) return this.references[slot] == null ? StackObject.NULL : new StackObject(this.references[slot]);
+        else return ExecutorStack.fromBits(kind, this.primitives[slot]);
     }
 
     public void setField(final FieldNode field, final StackElement value) {
-        if (!this.fields.containsKey(field)) throw new IllegalArgumentException("Field not found: " + field.name + ":" + field.desc);
-        this.fields.put(field, value.normalize());
+        int slot = this.getSlot(field);
+        if (ExecutorClass.fieldKind(field) == ExecutorStack.REFERENCE) {
+            if (!(value instanceof StackObject stackObject)) throw new IllegalArgumentException("Tried to store " + value + " in reference field " + field.name + ":" + field.desc);
+            this.references[slot] = stackObject.value();
+        } else {
+            this.primitives[slot] = ExecutorStack.toBits(value);
+        }
+    }
+
+    /**
+     * Get the raw value of a primitive instance field by its slot.<br>
+     * The slot has to be taken from {@link ExecutorClass#getFieldSlot(FieldNode)} or {@link ExecutorClass.ResolvedField#slot()}.
+     *
+     * @param slot The slot of the field
+     * @return The raw value of the field, encoded like the primitive slots of an {@link ExecutorStack}
+     */
+    public long getPrimitive(final int slot) {
+        return this.primitives[slot];
+    }
+
+    /**
+     * Set the raw value of a primitive instance field by its slot.
+     *
+     * @param slot  The slot of the field
+     * @param value The new raw value
+     */
+    public void setPrimitive(final int slot, final long value) {
+        this.primitives[slot] = value;
+    }
+
+    /**
+     * Get the value of a reference instance field by its slot.
+     *
+     * @param slot The slot of the field
+     * @return The value of the field
+     */
+    @Nullable
+    public ExecutorObject getReference(final int slot) {
+        return this.references[slot];
+    }
+
+    /**
+     * Set the value of a reference instance field by its slot.
+     *
+     * @param slot  The slot of the field
+     * @param value The new value
+     */
+    public void setReference(final int slot, @Nullable final ExecutorObject value) {
+        this.references[slot] = value;
+    }
+
+    private int getSlot(final FieldNode field) {
+        int slot = this.clazz.getFieldSlot(field);
+        if (slot < 0) throw new IllegalArgumentException("Field not found: " + field.name + ":" + field.desc);
+        return slot;
+    }
+
+    /**
+     * The identity hash code of this object.<br>
+     * It is kept when the object is copied, so hash based collections stay valid in the copied heap.
+     */
+    @Override
+    public int hashCode() {
+        int identityHash = this.identityHash;
+        if (identityHash == 0) {
+            identityHash = System.identityHashCode(this);
+            this.identityHash = identityHash;
+        }
+        return identityHash;
     }
 
     @Override
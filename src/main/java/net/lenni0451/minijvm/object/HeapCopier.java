@@ -0,0 +1,115 @@
+package net.lenni0451.minijvm.object;
+
+import net.lenni0451.minijvm.stack.StackElement;
+import net.lenni0451.minijvm.stack.StackObject;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Copies classes and objects from one heap to another.<br>
+ * Every class and object is copied exactly once, references between them are remapped to the copies.
+ * Field values and array elements are copied in {@link #finish()} instead of recursively, so large object graphs do not overflow the host stack.
+ */
+public class HeapCopier {
+
+    private final Map<ExecutorClass, ExecutorClass> classes = new IdentityHashMap<>();
+    private final Map<ExecutorObject, ExecutorObject> objects = new IdentityHashMap<>();
+    private final Map<ExecutorClass.ResolvedMethod, ExecutorClass.ResolvedMethod> methods = new IdentityHashMap<>();
+    private final Deque<Runnable> pending = new ArrayDeque<>();
+
+    public ExecutorClass copy(final ExecutorClass executorClass) {
+        ExecutorClass copy = this.classes.get(executorClass);
+        if (copy == null) copy = new ExecutorClass(executorClass, this);
+        return copy;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T extends ExecutorObject> T copy(@Nullable final T object) {
+        if (object == null) return null;
+        ExecutorObject copy = this.objects.get(object);
+        if (copy == null) {
+            copy = object.copy(this);
+            if (copy.getClass() != object.getClass()) throw new IllegalStateException(object.getClass().getName() + " does not support copying");
+        }
+        return (T) copy;
+    }
+
+    public StackElement copy(final StackElement element) {
+        if (element instanceof StackObject stackObject && stackObject.value() != null) {
+            return new StackObject(stackObject.stackType(), this.copy(stackObject.value()));
+        }
+        return element;
+    }
+
+    /**
+     * Copy an array of values.<br>
+     * The values of the returned array are remapped in {@link #finish()}.
+     *
+     * @param elements The values to copy
+     * @return The copied array
+     */
+    public StackElement[] copy(final StackElement[] elements) {
+        StackElement[] copy = elements.clone();
+        this.defer(() -> {
+            for (int i = 0; i < copy.length; i++) copy[i] = this.copy(copy[i]);
+        });
+        return copy;
+    }
+
+    /**
+     * Copy an array of references.<br>
+     * The references of the returned array are remapped in {@link #finish()}.
+     *
+     * @param objects The references to copy
+     * @return The copied array
+     */
+    public ExecutorObject[] copy(final ExecutorObject[] objects) {
+        ExecutorObject[] copy = objects.clone();
+        this.defer(() -> {
+            for (int i = 0; i < copy.length; i++) copy[i] = this.copy(copy[i]);
+        });
+        return copy;
+    }
+
+    ExecutorClass.ResolvedMethod copy(final ExecutorClass.ResolvedMethod method) {
+        if (method == null) return null;
+        ExecutorClass.ResolvedMethod copy = this.methods.get(method);
+        if (copy == null) {
+            //Copying the owner can already copy the method
+            ExecutorClass owner = this.copy(method.owner());
+            copy = this.methods.get(method);
+            if (copy == null) {
+                copy = new ExecutorClass.ResolvedMethod(owner, method.method());
+                this.methods.put(method, copy);
+            }
+        }
+        return copy;
+    }
+
+    void register(final ExecutorClass source, final ExecutorClass copy) {
+        this.classes.put(source, copy);
+    }
+
+    void register(final ExecutorObject source, final ExecutorObject copy) {
+        this.objects.put(source, copy);
+    }
+
+    void defer(final Runnable task) {
+        this.pending.add(task);
+    }
+
+    /**
+     * Copy all values which are still pending.<br>
+     * This has to be called after all roots have been copied, before the copies are used.
+     */
+    public void finish() {
+        Runnable task;
+        while ((task = this.pending.poll()) != null) task.run();
+    }
+
+}
@@ -3,6 +3,7 @@ package net.lenni0451.minijvm.object.types;
 import net.lenni0451.minijvm.ExecutionContext;
 import net.lenni0451.minijvm.object.ExecutorClass;
 import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.object.HeapCopier;
 import net.lenni0451.minijvm.stack.StackElement;
 
 public class ArrayObject extends ExecutorObject {
@@ -14,10 +15,20 @@ public class ArrayObject extends ExecutorObject {
         this.elements = elements;
     }
 
+    protected ArrayObject(final ArrayObject source, final HeapCopier copier) {
+        super(source, copier);
+        this.elements = copier.copy(source.elements);
+    }
+
     public StackElement[] getElements() {
         return this.elements;
     }
 
+    @Override
+    public ArrayObject copy(final HeapCopier copier) {
+        return new ArrayObject(this, copier);
+    }
+
     @Override
     public String toString() {
         return "ArrayObject{" + this.getClazz().getClassNode().name + "=" + this.elements.length + "}";
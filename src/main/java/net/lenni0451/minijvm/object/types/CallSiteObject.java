@@ -3,6 +3,7 @@ package net.lenni0451.minijvm.object.types;
 import net.lenni0451.minijvm.ExecutionContext;
 import net.lenni0451.minijvm.object.ExecutorClass;
 import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.object.HeapCopier;
 import org.objectweb.asm.Type;
 
 /**
@@ -31,6 +32,13 @@ public class CallSiteObject extends ExecutorObject {
         this.target = target;
     }
 
+    protected CallSiteObject(final CallSiteObject source, final HeapCopier copier) {
+        super(source, copier);
+        this.type = source.type;
+        this.methodType = copier.copy(source.methodType);
+        this.target = copier.copy(source.target);
+    }
+
     /**
      * Create a ConstantCallSite with the given target.
      */
@@ -72,6 +80,11 @@ public class CallSiteObject extends ExecutorObject {
         return this.type == CallSiteType.CONSTANT;
     }
 
+    @Override
+    public CallSiteObject copy(final HeapCopier copier) {
+        return new CallSiteObject(this, copier);
+    }
+
     @Override
     public String toString() {
         return "CallSiteObject{type=" + type + ", target=" + target + "}";
@@ -3,6 +3,7 @@ package net.lenni0451.minijvm.object.types;
 import net.lenni0451.minijvm.ExecutionContext;
 import net.lenni0451.minijvm.object.ExecutorClass;
 import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.object.HeapCopier;
 import net.lenni0451.minijvm.utils.Types;
 
 public class ClassObject extends ExecutorObject {
@@ -14,10 +15,20 @@ public class ClassObject extends ExecutorObject {
         this.classType = classType;
     }
 
+    protected ClassObject(final ClassObject source, final HeapCopier copier) {
+        super(source, copier);
+        this.classType = copier.copy(source.classType);
+    }
+
     public ExecutorClass getClassType() {
         return this.classType;
     }
 
+    @Override
+    public ClassObject copy(final HeapCopier copier) {
+        return new ClassObject(this, copier);
+    }
+
     @Override
     public String toString() {
         return "ClassObject{" + this.classType.getClassNode().name + "}";
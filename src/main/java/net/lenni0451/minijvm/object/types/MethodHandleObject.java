@@ -4,6 +4,7 @@ import net.lenni0451.commons.asm.ASMUtils;
 import net.lenni0451.minijvm.ExecutionContext;
 import net.lenni0451.minijvm.object.ExecutorClass;
 import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.object.HeapCopier;
 import net.lenni0451.minijvm.execution.ExecutionResult;
 import net.lenni0451.minijvm.execution.Executor;
 import net.lenni0451.minijvm.stack.StackElement;
@@ -84,6 +85,16 @@ public class MethodHandleObject extends ExecutorObject {
         }
     }
 
+    protected MethodHandleObject(final MethodHandleObject source, final HeapCopier copier) {
+        super(source, copier);
+        this.kind = source.kind;
+        this.owner = source.owner;
+        this.name = source.name;
+        this.descriptor = source.descriptor;
+        this.isInterface = source.isInterface;
+        this.methodType = copier.copy(source.methodType);
+    }
+
     private boolean isFieldHandle() {
         return kind >= REF_getField && kind <= REF_putStatic;
     }
@@ -284,6 +295,11 @@ public class MethodHandleObject extends ExecutorObject {
         return invokeVirtual(context, args);
     }
 
+    @Override
+    public MethodHandleObject copy(final HeapCopier copier) {
+        return new MethodHandleObject(this, copier);
+    }
+
     @Override
     public String toString() {
         String kindName = switch (kind) {
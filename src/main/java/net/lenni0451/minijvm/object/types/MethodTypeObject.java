@@ -3,6 +3,7 @@ package net.lenni0451.minijvm.object.types;
 import net.lenni0451.minijvm.ExecutionContext;
 import net.lenni0451.minijvm.object.ExecutorClass;
 import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.object.HeapCopier;
 import org.objectweb.asm.Type;
 
 import java.util.Arrays;
@@ -33,6 +34,13 @@ public class MethodTypeObject extends ExecutorObject {
         this.descriptor = Type.getMethodDescriptor(returnType, parameterTypes);
     }
 
+    protected MethodTypeObject(final MethodTypeObject source, final HeapCopier copier) {
+        super(source, copier);
+        this.returnType = source.returnType;
+        this.parameterTypes = source.parameterTypes;
+        this.descriptor = source.descriptor;
+    }
+
     public Type getReturnType() {
         return this.returnType;
     }
@@ -53,6 +61,11 @@ public class MethodTypeObject extends ExecutorObject {
         return this.parameterTypes[index];
     }
 
+    @Override
+    public MethodTypeObject copy(final HeapCopier copier) {
+        return new MethodTypeObject(this, copier);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -10,6 +10,26 @@ public record StackInt(int value) implements StackElement {
     public static final StackInt FOUR = new StackInt(4);
     public static final StackInt FIVE = new StackInt(5);
 
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final StackInt[] CACHE = new StackInt[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) CACHE[i] = new StackInt(i + CACHE_LOW);
+    }
+
+    /**
+     * Get a {@link StackInt} for the given value.<br>
+     * Small values (all bytes and the most common chars) are cached and do not allocate a new element.
+     *
+     * @param value The value
+     * @return The stack element
+     */
+    public static StackInt of(final int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) return CACHE[value - CACHE_LOW];
+        return new StackInt(value);
+    }
+
     public StackInt(final boolean b) {
         this(b ? 1 : 0);
     }
@@ -8,6 +8,15 @@ public class MemoryStorage {
 
     private final Map<Long, byte[]> memory = new HashMap<>();
 
+    /**
+     * @return An independent copy of this memory
+     */
+    public MemoryStorage copy() {
+        MemoryStorage copy = new MemoryStorage();
+        this.memory.forEach((address, data) -> copy.memory.put(address, data.clone()));
+        return copy;
+    }
+
     public byte[] get(final long address, final int length) {
         byte[] mem = this.memory.get(address);
         if (mem == null) {
@@ -1,8 +1,8 @@
 package net.lenni0451.minijvm.utils;
 
 import net.lenni0451.minijvm.ExecutionContext;
-import net.lenni0451.minijvm.ExecutionManager;
 import net.lenni0451.minijvm.exception.ExecutorException;
+import net.lenni0451.minijvm.execution.ExecutionListener;
 import net.lenni0451.minijvm.execution.ExecutionResult;
 import net.lenni0451.minijvm.execution.Executor;
 import net.lenni0451.minijvm.object.ExecutorClass;
@@ -16,21 +16,40 @@ import javax.annotation.Nullable;
 public class ExceptionUtils {
 
     public static ExecutionResult newException(final ExecutionContext context, final Type exceptionType) {
-        if (ExecutionManager.DEBUG) {
-            System.out.println("Creating new exception: " + exceptionType);
-            for (ExecutionContext.StackFrame stackFrame : context.getStackFrames()) System.out.println(" -> " + stackFrame);
-        }
+        ExecutionListener listener = context.getExecutionManager().getExecutionListener();
+        if (listener != null) listener.onExceptionCreated(context, exceptionType, null);
         return invoke(context, exceptionType, "()V");
     }
 
     public static ExecutionResult newException(final ExecutionContext context, final Type exceptionType, final String message) {
-        if (ExecutionManager.DEBUG) {
-            System.out.println("Creating new exception: " + exceptionType + " with message: " + message);
-            for (ExecutionContext.StackFrame stackFrame : context.getStackFrames()) System.out.println(" -> " + stackFrame);
-        }
+        ExecutionListener listener = context.getExecutionManager().getExecutionListener();
+        if (listener != null) listener.onExceptionCreated(context, exceptionType, message);
         return invoke(context, exceptionType, "(Ljava/lang/String;)V", ExecutorTypeUtils.parse(context, message));
     }
 
+    public static ExecutionResult newException(final ExecutionContext context, final Type exceptionType, final ExecutorObject cause) {
+        ExecutionListener listener = context.getExecutionManager().getExecutionListener();
+        if (listener != null) listener.onExceptionCreated(context, exceptionType, null);
+        return invoke(context, exceptionType, "(Ljava/lang/Throwable;)V", new StackObject(cause));
+    }
+
+    /**
+     * Create a new {@link StackOverflowError}.<br>
+     * The reserved stack frames of the context are used, so the constructor can be called even if the stack is full.
+     *
+     * @param context The execution context
+     * @return The exception result
+     * @throws ExecutorException If the reserved stack frames are exhausted as well
+     */
+    public static ExecutionResult newStackOverflowError(final ExecutionContext context) {
+        if (context.setUseReservedStack(true)) throw new ExecutorException(context, "Stack overflow while creating a StackOverflowError");
+        try {
+            return newException(context, Types.STACK_OVERFLOW_ERROR);
+        } finally {
+            context.setUseReservedStack(false);
+        }
+    }
+
     private static ExecutionResult invoke(final ExecutionContext context, final Type exceptionType, final String constructorDesc, final StackElement... arguments) {
         ExecutorClass exceptionClass = context.getExecutionManager().loadClass(context, exceptionType);
         ExecutorObject exceptionObject = context.getExecutionManager().instantiate(context, exceptionClass);
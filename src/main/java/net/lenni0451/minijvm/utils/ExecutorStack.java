@@ -2,56 +2,444 @@ package net.lenni0451.minijvm.utils;
 
 import net.lenni0451.minijvm.ExecutionContext;
 import net.lenni0451.minijvm.exception.ExecutorException;
-import net.lenni0451.minijvm.stack.StackElement;
+import net.lenni0451.minijvm.object.ExecutorObject;
+import net.lenni0451.minijvm.stack.*;
+import org.objectweb.asm.Type;
 
+import javax.annotation.Nullable;
 import java.util.Arrays;
 
+/**
+ * The local variables and operand stack of a single method frame.<br>
+ * The first {@code maxLocals} slots hold the local variables and the operand stack is placed directly behind them.<br>
+ * Primitives are stored in a {@code long[]} and references in an {@code ExecutorObject[]} with a type tag per slot,
+ * so the typed push and pop methods never have to allocate a {@link StackElement}.<br>
+ * Like in the JVM longs and doubles take up two slots, the second one being tagged as {@link #TOP}.<br>
+ * A stack can be {@link #reset(int, int, boolean) reset} for another frame, the arrays are only reallocated if they are too small.<br>
+ * Stacks of verified methods skip the type and bounds checks of the slots, the bytecode verifier already proved that they can not fail.
+ */
 public class ExecutorStack {
 
+    public static final byte EMPTY = 0;
+    public static final byte INT = 1;
+    public static final byte FLOAT = 2;
+    public static final byte LONG = 3;
+    public static final byte DOUBLE = 4;
+    public static final byte REFERENCE = 5;
+    public static final byte TOP = 6;
+
+    /**
+     * Convert a primitive stack element to the raw encoding used by the primitive slots.
+     *
+     * @param element The stack element
+     * @return The raw value
+     */
+    public static long toBits(final StackElement element) {
+        if (element instanceof StackInt stackInt) return stackInt.value();
+        else if (element instanceof StackFloat stackFloat) return Float.floatToRawIntBits(stackFloat.value());
+        else if (element instanceof StackLong stackLong) return stackLong.value();
+        else if (element instanceof StackDouble stackDouble) return Double.doubleToRawLongBits(stackDouble.value());
+        else throw new IllegalArgumentException("Not a primitive stack element: " + element);
+    }
+
+    /**
+     * Convert a raw primitive slot value back to a stack element.
+     *
+     * @param type  The type of the value
+     * @param value The raw value
+     * @return The stack element
+     */
+    public static StackElement fromBits(final byte type, final long value) {
+        return switch (type) {
+            case INT -> StackInt.of((int) value);
+            case FLOAT -> new StackFloat(Float.intBitsToFloat((int) value));
+            case LONG -> new StackLong(value);
+            case DOUBLE -> new StackDouble(Double.longBitsToDouble(value));
+            default -> throw new IllegalArgumentException("Not a primitive type: " + typeName(type));
+        };
+    }
+
+    private static String typeName(final byte type) {
+        return switch (type) {
+            case EMPTY -> "empty";
+            case INT -> "int";
+            case FLOAT -> "float";
+            case LONG -> "long";
+            case DOUBLE -> "double";
+            case REFERENCE -> "reference";
+            case TOP -> "top";
+            default -> "unknown(" + type + ")";
+        };
+    }
+
+    /**
+     * Get the slot type used to store values of the given JVM type.
+     *
+     * @param type The JVM type
+     * @return The slot type
+     */
+    public static byte typeOf(final Type type) {
+        return switch (type.getSort()) {
+            case Type.BOOLEAN, Type.CHAR, Type.BYTE, Type.SHORT, Type.INT -> INT;
+            case Type.FLOAT -> FLOAT;
+            case Type.LONG -> LONG;
+            case Type.DOUBLE -> DOUBLE;
+            default -> REFERENCE;
+        };
+    }
+
     private final ExecutionContext context;
-    private final StackElement[] stack;
-    private int stackPointer = 0;
+    private int maxLocals;
+    private int capacity;
+    private long[] primitives;
+    private ExecutorObject[] references;
+    private byte[] types;
+    private int stackPointer;
+    private boolean verified;
 
-    public ExecutorStack(final ExecutionContext context, final int maxSize) {
+    public ExecutorStack(final ExecutionContext context, final int maxLocals, final int maxStack) {
         this.context = context;
-        this.stack = new StackElement[maxSize];
+        this.primitives = new long[maxLocals + maxStack];
+        this.references = new ExecutorObject[maxLocals + maxStack];
+        this.types = new byte[maxLocals + maxStack];
+        this.maxLocals = maxLocals;
+        this.capacity = maxLocals + maxStack;
+        this.stackPointer = maxLocals;
+    }
+
+    /**
+     * Prepare this stack for a new frame.<br>
+     * The stack has to be {@link #release() released} before, so all slots are empty.
+     *
+     * @param maxLocals The amount of local variable slots
+     * @param maxStack  The maximum size of the operand stack
+     * @param verified  If the method of the frame passed the bytecode verification
+     */
+    public void reset(final int maxLocals, final int maxStack, final boolean verified) {
+        int capacity = maxLocals + maxStack;
+        if (capacity > this.types.length) {
+            this.primitives = new long[capacity];
+            this.references = new ExecutorObject[capacity];
+            this.types = new byte[capacity];
+        }
+        this.maxLocals = maxLocals;
+        this.capacity = capacity;
+        this.stackPointer = maxLocals;
+        this.verified = verified;
+    }
+
+    /**
+     * @return If the slot checks are skipped because the method of this frame has been verified
+     */
+    public boolean isVerified() {
+        return this.verified;
     }
 
+    /**
+     * Clear the local variables and the operand stack, so the stack can be reused for another frame.<br>
+     * All references are removed to not keep any objects alive.
+     */
+    public void release() {
+        Arrays.fill(this.references, 0, this.stackPointer, null);
+        Arrays.fill(this.types, 0, this.stackPointer, EMPTY);
+        this.stackPointer = this.maxLocals;
+    }
+
+    /**
+     * Clear the operand stack.<br>
+     * The local variables are not affected.
+     */
     public void clear() {
-        this.stackPointer = 0;
-        Arrays.fill(this.stack, null);
+        Arrays.fill(this.references, this.maxLocals, this.stackPointer, null);
+        Arrays.fill(this.types, this.maxLocals, this.stackPointer, EMPTY);
+        this.stackPointer = this.maxLocals;
+    }
+
+    /**
+     * @return The amount of slots currently used by the operand stack
+     */
+    public int size() {
+        return this.stackPointer - this.maxLocals;
     }
 
+    /**
+     * Get a copy of the operand stack.<br>
+     * This allocates a new element for every slot and should only be used for debugging.
+     *
+     * @return The current operand stack
+     */
     public StackElement[] getStack() {
-        return Arrays.copyOf(this.stack, this.stackPointer);
+        StackElement[] stack = new StackElement[this.size()];
+        for (int i = 0; i < stack.length; i++) {
+            int slot = this.maxLocals + i;
+            if (this.types[slot] == TOP) stack[i] = stack[i - 1];
+            else stack[i] = this.toElement(slot, this.types[slot]);
+        }
+        return stack;
     }
 
-    public void push(final StackElement element) {
-        if (this.stackPointer >= this.stack.length) {
-            throw new ExecutorException(this.context, "Tried to push an element to the stack but the stack is full");
+    //Local variables
+
+    public void setLocal(final int index, final StackElement element) {
+        this.checkLocalIndex(index, element.size());
+        this.write(index, element);
+    }
+
+    public StackElement getLocal(final int index) {
+        this.checkLocalIndex(index, 1);
+        return this.toElement(this.checkLocal(index, this.types[index]), this.types[index]);
+    }
+
+    public int getLocalInt(final int index) {
+        return (int) this.primitives[this.checkLocal(index, INT)];
+    }
+
+    public float getLocalFloat(final int index) {
+        return Float.intBitsToFloat((int) this.primitives[this.checkLocal(index, FLOAT)]);
+    }
+
+    public long getLocalLong(final int index) {
+        return this.primitives[this.checkLocal(index, LONG)];
+    }
+
+    public double getLocalDouble(final int index) {
+        return Double.longBitsToDouble(this.primitives[this.checkLocal(index, DOUBLE)]);
+    }
+
+    @Nullable
+    public ExecutorObject getLocalReference(final int index) {
+        return this.references[this.checkLocal(index, REFERENCE)];
+    }
+
+    /**
+     * Push the local variable at the given index onto the operand stack.
+     *
+     * @param index The index of the local variable
+     * @param type  The expected type of the local variable
+     */
+    public void load(final int index, final byte type) {
+        this.checkLocal(index, type);
+        if (type == LONG || type == DOUBLE) {
+            this.ensureCapacity(2);
+            this.copySlot(index, this.stackPointer++);
+            this.copySlot(index + 1, this.stackPointer++);
+        } else {
+            this.ensureCapacity(1);
+            this.copySlot(index, this.stackPointer++);
         }
-        this.stack[this.stackPointer++] = element;
     }
 
-    public void pushSized(final StackElement element) {
-        this.push(element);
-        if (element.size() == 2) this.push(element);
+    /**
+     * Pop the top value of the operand stack and store it in the local variable at the given index.
+     *
+     * @param index The index of the local variable
+     * @param type  The expected type of the value
+     */
+    public void store(final int index, final byte type) {
+        if (type == LONG || type == DOUBLE) {
+            this.checkLocalIndex(index, 2);
+            int slot = this.popWide(type);
+            this.primitives[index] = this.primitives[slot];
+            this.references[index] = null;
+            this.references[index + 1] = null;
+            this.types[index] = type;
+            this.types[index + 1] = TOP;
+        } else {
+            this.checkLocalIndex(index, 1);
+            int slot = this.popSlot(type);
+            this.primitives[index] = this.primitives[slot];
+            this.references[index] = this.references[slot];
+            this.references[slot] = null;
+            this.types[index] = type;
+        }
     }
 
-    public StackElement pop() {
-        if (this.stackPointer == 0) {
-            throw new ExecutorException(this.context, "Tried to pop an element from an empty stack");
+    public void increment(final int index, final int value) {
+        this.checkLocal(index, INT);
+        this.primitives[index] = (int) this.primitives[index] + value;
+    }
+
+    //Typed operand stack access
+
+    public void pushInt(final int value) {
+        this.ensureCapacity(1);
+        this.primitives[this.stackPointer] = value;
+        this.types[this.stackPointer++] = INT;
+    }
+
+    public void pushFloat(final float value) {
+        this.ensureCapacity(1);
+        this.primitives[this.stackPointer] = Float.floatToRawIntBits(value);
+        this.types[this.stackPointer++] = FLOAT;
+    }
+
+    public void pushLong(final long value) {
+        this.ensureCapacity(2);
+        this.primitives[this.stackPointer] = value;
+        this.types[this.stackPointer++] = LONG;
+        this.types[this.stackPointer++] = TOP;
+    }
+
+    public void pushDouble(final double value) {
+        this.ensureCapacity(2);
+        this.primitives[this.stackPointer] = Double.doubleToRawLongBits(value);
+        this.types[this.stackPointer++] = DOUBLE;
+        this.types[this.stackPointer++] = TOP;
+    }
+
+    public void pushReference(@Nullable final ExecutorObject value) {
+        this.ensureCapacity(1);
+        this.references[this.stackPointer] = value;
+        this.types[this.stackPointer++] = REFERENCE;
+    }
+
+    public int popInt() {
+        return (int) this.primitives[this.popSlot(INT)];
+    }
+
+    public float popFloat() {
+        return Float.intBitsToFloat((int) this.primitives[this.popSlot(FLOAT)]);
+    }
+
+    public long popLong() {
+        return this.primitives[this.popWide(LONG)];
+    }
+
+    public double popDouble() {
+        return Double.longBitsToDouble(this.primitives[this.popWide(DOUBLE)]);
+    }
+
+    /**
+     * Push a primitive value stored in its raw slot encoding.
+     *
+     * @param type  The type of the value
+     * @param value The raw value
+     */
+    public void pushPrimitive(final byte type, final long value) {
+        if (type == LONG || type == DOUBLE) {
+            this.ensureCapacity(2);
+            this.primitives[this.stackPointer] = value;
+            this.types[this.stackPointer++] = type;
+            this.types[this.stackPointer++] = TOP;
+        } else {
+            this.ensureCapacity(1);
+            this.primitives[this.stackPointer] = value;
+            this.types[this.stackPointer++] = type;
+        }
+    }
+
+    /**
+     * Pop a primitive value in its raw slot encoding.
+     *
+     * @param type The expected type of the value
+     * @return The raw value
+     */
+    public long popPrimitive(final byte type) {
+        if (type == LONG || type == DOUBLE) return this.primitives[this.popWide(type)];
+        else return this.primitives[this.popSlot(type)];
+    }
+
+    @Nullable
+    public ExecutorObject popReference() {
+        int slot = this.popSlot(REFERENCE);
+        ExecutorObject value = this.references[slot];
+        this.references[slot] = null;
+        return value;
+    }
+
+    /**
+     * Get a reference from the operand stack without popping it.
+     *
+     * @param depth The amount of slots above the reference
+     * @return The reference
+     */
+    @Nullable
+    public ExecutorObject peekReference(final int depth) {
+        int slot = this.stackPointer - 1 - depth;
+        if (this.verified) {
+            return this.references[slot];
+        } else if (slot < this.maxLocals) {
+            throw new ExecutorException(this.context, "Tried to peek " + (depth + 1) + " elements deep but the stack size is only " + this.size());
+        } else if (this.types[slot] != REFERENCE) {
+            throw new ExecutorException(this.context, "Tried to peek reference but the element is " + typeName(this.types[slot]));
+        }
+        return this.references[slot];
+    }
+
+    /**
+     * Move the top slots of the operand stack into the first local variables of another frame.<br>
+     * This passes the receiver and arguments of an invocation without creating a {@link StackElement} for every argument.
+     *
+     * @param target The frame of the invoked method
+     * @param types  The expected type of every argument
+     * @param slots  The amount of slots used by all arguments
+     */
+    public void moveArguments(final ExecutorStack target, final byte[] types, final int slots) {
+        int start = this.stackPointer - slots;
+        //The argument slots of a verified callee always fit into its locals, the verifier rejects methods with too few locals
+        if (!this.verified || !target.verified) {
+            if (start < this.maxLocals) {
+                throw new ExecutorException(this.context, "Tried to pop " + slots + " argument slots but the stack size is only " + this.size());
+            }
+            if (slots > target.maxLocals) {
+                throw new ExecutorException(this.context, "Tried to pass " + slots + " argument slots but the method only has " + target.maxLocals + " local variable slots");
+            }
+            int slot = start;
+            for (byte type : types) {
+                if (this.types[slot] != type) {
+                    throw new ExecutorException(this.context, "Expected " + typeName(type) + " argument but got " + typeName(this.types[slot]));
+                }
+                slot += type == LONG || type == DOUBLE ? 2 : 1;
+            }
         }
-        StackElement previous = this.stack[--this.stackPointer];
-        this.stack[this.stackPointer] = null;
-        return previous;
+        System.arraycopy(this.primitives, start, target.primitives, 0, slots);
+        System.arraycopy(this.references, start, target.references, 0, slots);
+        System.arraycopy(this.types, start, target.types, 0, slots);
+        Arrays.fill(this.references, start, this.stackPointer, null);
+        Arrays.fill(this.types, start, this.stackPointer, EMPTY);
+        this.stackPointer = start;
+    }
+
+    /**
+     * Move the return value on top of the operand stack onto the operand stack of the calling frame.
+     *
+     * @param target The frame of the caller
+     * @param type   The type of the return value
+     */
+    public void moveReturnValue(final ExecutorStack target, final byte type) {
+        int size = type == LONG || type == DOUBLE ? 2 : 1;
+        int slot = size == 2 ? this.popWide(type) : this.popSlot(type);
+        target.ensureCapacity(size);
+        target.primitives[target.stackPointer] = this.primitives[slot];
+        target.references[target.stackPointer] = this.references[slot];
+        target.types[target.stackPointer++] = type;
+        if (size == 2) target.types[target.stackPointer++] = TOP;
+        this.references[slot] = null;
+    }
+
+    //Boxed operand stack access
+
+    public void pushSized(final StackElement element) {
+        int size = element.size();
+        this.ensureCapacity(size);
+        this.write(this.stackPointer, element);
+        this.stackPointer += size;
     }
 
     public StackElement popSized() {
-        StackElement element = this.pop();
-        if (element.size() == 2 && this.pop() != element) {
-            throw new ExecutorException(this.context, "Tried to pop an element from the stack with a size of " + element.size() + " but the stack contains an element of different type");
+        if (this.stackPointer <= this.maxLocals) {
+            throw new ExecutorException(this.context, "Tried to pop an element from an empty stack");
         }
+        byte type = this.types[this.stackPointer - 1];
+        int slot;
+        if (type == TOP) {
+            type = this.stackPointer - 2 >= this.maxLocals ? this.types[this.stackPointer - 2] : TOP;
+            slot = this.popWide(type);
+        } else {
+            slot = this.popSlot(type);
+        }
+        StackElement element = this.toElement(slot, type);
+        this.references[slot] = null;
         return element;
     }
 
@@ -63,94 +451,165 @@ public class ExecutorStack {
         return (T) element;
     }
 
-    public StackElement peek() {
-        if (this.stackPointer == 0) {
-            throw new ExecutorException(this.context, "Tried to peek an element from an empty stack");
+    //Raw slot operations
+
+    public void pop() {
+        if (!this.verified && this.stackPointer <= this.maxLocals) {
+            throw new ExecutorException(this.context, "Tried to pop an element from an empty stack");
         }
-        return this.stack[this.stackPointer - 1];
+        this.stackPointer--;
+        this.references[this.stackPointer] = null;
+        this.types[this.stackPointer] = EMPTY;
     }
 
     public void swap() {
-        if (this.stackPointer < 2) {
+        if (!this.verified && this.size() < 2) {
             throw new ExecutorException(this.context, "Tried to swap the top two elements of the stack but the stack size is smaller than 2");
         }
-        StackElement first = this.pop();
-        StackElement second = this.pop();
-        this.push(first);
-        this.push(second);
+        int top = this.stackPointer - 1;
+        long primitive = this.primitives[top];
+        ExecutorObject reference = this.references[top];
+        byte type = this.types[top];
+        this.copySlot(top - 1, top);
+        this.primitives[top - 1] = primitive;
+        this.references[top - 1] = reference;
+        this.types[top - 1] = type;
     }
 
     public void dup() {
-        if (this.stackPointer == 0) {
-            throw new ExecutorException(this.context, "Tried to duplicate the top element of the stack but the stack is empty");
-        }
-        this.push(this.peek());
+        this.duplicate(1, 0);
     }
 
     public void dupX1() {
-        if (this.stackPointer < 2) {
-            throw new ExecutorException(this.context, "Tried to duplicate the top element of the stack and insert it below the second element but the stack size is smaller than 2");
-        }
-        StackElement first = this.pop();
-        StackElement second = this.pop();
-        this.push(first);
-        this.push(second);
-        this.push(first);
+        this.duplicate(1, 1);
     }
 
     public void dupX2() {
-        if (this.stackPointer < 3) {
-            throw new ExecutorException(this.context, "Tried to duplicate the top element of the stack and insert it below the third element but the stack size is smaller than 3");
-        }
-        StackElement first = this.pop();
-        StackElement second = this.pop();
-        StackElement third = this.pop();
-        this.push(first);
-        this.push(third);
-        this.push(second);
-        this.push(first);
+        this.duplicate(1, 2);
     }
 
     public void dup2() {
-        if (this.stackPointer < 2) {
-            throw new ExecutorException(this.context, "Tried to duplicate the top two elements of the stack but the stack size is smaller than 2");
-        }
-        StackElement first = this.pop();
-        StackElement second = this.pop();
-        this.push(second);
-        this.push(first);
-        this.push(second);
-        this.push(first);
+        this.duplicate(2, 0);
     }
 
     public void dup2X1() {
-        if (this.stackPointer < 3) {
-            throw new ExecutorException(this.context, "Tried to duplicate the top two elements of the stack and insert them below the third element but the stack size is smaller than 3");
-        }
-        StackElement first = this.pop();
-        StackElement second = this.pop();
-        StackElement third = this.pop();
-        this.push(second);
-        this.push(first);
-        this.push(third);
-        this.push(second);
-        this.push(first);
+        this.duplicate(2, 1);
     }
 
     public void dup2X2() {
-        if (this.stackPointer < 4) {
-            throw new ExecutorException(this.context, "Tried to duplicate the top two elements of the stack and insert them below the fourth element but the stack size is smaller than 4");
-        }
-        StackElement first = this.pop();
-        StackElement second = this.pop();
-        StackElement third = this.pop();
-        StackElement fourth = this.pop();
-        this.push(second);
-        this.push(first);
-        this.push(fourth);
-        this.push(third);
-        this.push(second);
-        this.push(first);
+        this.duplicate(2, 2);
+    }
+
+    /**
+     * Duplicate the top {@code count} slots and insert the copy below the next {@code skip} slots.
+     *
+     * @param count The amount of slots to duplicate
+     * @param skip  The amount of slots to skip before inserting the copy
+     */
+    private void duplicate(final int count, final int skip) {
+        if (!this.verified && this.size() < count + skip) {
+            throw new ExecutorException(this.context, "Tried to duplicate " + count + " elements below " + skip + " elements but the stack size is only " + this.size());
+        }
+        this.ensureCapacity(count);
+        int base = this.stackPointer - count - skip;
+        for (int i = this.stackPointer - 1; i >= base; i--) this.copySlot(i, i + count);
+        for (int i = 0; i < count; i++) this.copySlot(base + count + skip + i, base + i);
+        this.stackPointer += count;
+    }
+
+    private void ensureCapacity(final int slots) {
+        if (!this.verified && this.stackPointer + slots > this.capacity) {
+            throw new ExecutorException(this.context, "Tried to push an element to the stack but the stack is full");
+        }
+    }
+
+    private int popSlot(final byte type) {
+        if (!this.verified) {
+            if (this.stackPointer <= this.maxLocals) {
+                throw new ExecutorException(this.context, "Tried to pop an element from an empty stack");
+            } else if (this.types[this.stackPointer - 1] != type) {
+                throw new ExecutorException(this.context, "Tried to pop " + typeName(type) + " but the top element is " + typeName(this.types[this.stackPointer - 1]));
+            }
+        }
+        int slot = --this.stackPointer;
+        this.types[slot] = EMPTY;
+        return slot;
+    }
+
+    private int popWide(final byte type) {
+        int slot = this.stackPointer - 2;
+        if (!this.verified) {
+            if (slot < this.maxLocals) {
+                throw new ExecutorException(this.context, "Tried to pop " + typeName(type) + " but the stack size is smaller than 2");
+            } else if (this.types[slot] != type || this.types[slot + 1] != TOP) {
+                throw new ExecutorException(this.context, "Tried to pop " + typeName(type) + " but the top elements are " + typeName(this.types[slot]) + " and " + typeName(this.types[slot + 1]));
+            }
+        }
+        this.types[slot] = EMPTY;
+        this.types[slot + 1] = EMPTY;
+        this.stackPointer = slot;
+        return slot;
+    }
+
+    private int checkLocal(final int index, final byte type) {
+        this.checkLocalIndex(index, type == LONG || type == DOUBLE ? 2 : 1);
+        if (!this.verified && (this.types[index] != type || ((type == LONG || type == DOUBLE) && this.types[index + 1] != TOP))) {
+            throw new ExecutorException(this.context, "Expected " + typeName(type) + " in local variable " + index + " but got " + typeName(this.types[index]));
+        }
+        return index;
+    }
+
+    /**
+     * Check that a local variable is inside the local variable slots.<br>
+     * The operand stack is placed directly behind the local variables, so an invalid index would access the operand stack instead.
+     *
+     * @param index The index of the local variable
+     * @param size  The amount of slots used by the local variable
+     */
+    private void checkLocalIndex(final int index, final int size) {
+        if (!this.verified && (index < 0 || index + size > this.maxLocals)) {
+            throw new ExecutorException(this.context, "Tried to access local variable " + index + " but the method only has " + this.maxLocals + " local variable slots");
+        }
+    }
+
+    private void copySlot(final int from, final int to) {
+        this.primitives[to] = this.primitives[from];
+        this.references[to] = this.references[from];
+        this.types[to] = this.types[from];
+    }
+
+    private void write(final int slot, final StackElement element) {
+        if (element instanceof StackInt stackInt) {
+            this.primitives[slot] = stackInt.value();
+            this.types[slot] = INT;
+        } else if (element instanceof StackFloat stackFloat) {
+            this.primitives[slot] = Float.floatToRawIntBits(stackFloat.value());
+            this.types[slot] = FLOAT;
+        } else if (element instanceof StackLong stackLong) {
+            this.primitives[slot] = stackLong.value();
+            this.types[slot] = LONG;
+            this.types[slot + 1] = TOP;
+        } else if (element instanceof StackDouble stackDouble) {
+            this.primitives[slot] = Double.doubleToRawLongBits(stackDouble.value());
+            this.types[slot] = DOUBLE;
+            this.types[slot + 1] = TOP;
+        } else if (element instanceof StackObject stackObject) {
+            this.references[slot] = stackObject.value();
+            this.types[slot] = REFERENCE;
+        } else {
+            throw new ExecutorException(this.context, "Unsupported stack element: " + element);
+        }
+    }
+
+    private StackElement toElement(final int slot, final byte type) {
+        return switch (type) {
+            case INT -> StackInt.of((int) this.primitives[slot]);
+            case FLOAT -> new StackFloat(Float.intBitsToFloat((int) this.primitives[slot]));
+            case LONG -> new StackLong(this.primitives[slot]);
+            case DOUBLE -> new StackDouble(Double.longBitsToDouble(this.primitives[slot]));
+            case REFERENCE -> this.references[slot] == null ? StackObject.NULL : new StackObject(this.references[slot]);
+            default -> throw new ExecutorException(this.context, "Tried to read " + typeName(type) + " slot " + slot);
+        };
     }
 
 }
@@ -3,6 +3,7 @@ package net.lenni0451.minijvm.utils;
 import net.lenni0451.commons.asm.ASMUtils;
 import net.lenni0451.minijvm.ExecutionContext;
 import net.lenni0451.minijvm.ExecutionManager;
+import net.lenni0451.minijvm.exception.ExecutorException;
 import net.lenni0451.minijvm.execution.Executor;
 import net.lenni0451.minijvm.object.ExecutorClass;
 import net.lenni0451.minijvm.object.ExecutorObject;
@@ -63,15 +64,22 @@ public class ExecutorTypeUtils {
     }
 
     public static Class<? extends StackElement> typeToStackType(final Type type) {
-        if (type.equals(Type.BOOLEAN_TYPE)) return StackInt.class;
-        if (type.equals(Type.BYTE_TYPE)) return StackInt.class;
-        if (type.equals(Type.CHAR_TYPE)) return StackInt.class;
-        if (type.equals(Type.SHORT_TYPE)) return StackInt.class;
-        if (type.equals(Type.INT_TYPE)) return StackInt.class;
-        if (type.equals(Type.LONG_TYPE)) return StackLong.class;
-        if (type.equals(Type.FLOAT_TYPE)) return StackFloat.class;
-        if (type.equals(Type.DOUBLE_TYPE)) return StackDouble.class;
-        return StackObject.class;
+        return switch (type.getSort()) {
+            case Type.BOOLEAN, Type.BYTE, Type.CHAR, Type.SHORT, Type.INT -> StackInt.class;
+            case Type.LONG -> StackLong.class;
+            case Type.FLOAT -> StackFloat.class;
+            case Type.DOUBLE -> StackDouble.class;
+            default -> StackObject.class;
+        };
+    }
+
+    public static void verifyType(final ExecutionContext context, @Nullable final StackElement element, final Class<? extends StackElement> expectedType) {
+        if (element == null) {
+            throw new ExecutorException(context, "Tried to load empty " + expectedType.getSimpleName() + " value from stack");
+        }
+        if (!expectedType.isInstance(element)) {
+            throw new ExecutorException(context, "Expected " + expectedType.getSimpleName() + " but got " + element.getClass().getSimpleName());
+        }
     }
 
     public static StackElement getFieldDefault(final Class<? extends StackElement> type) {
@@ -0,0 +1,114 @@
+package net.lenni0451.minijvm.utils;
+
+import net.lenni0451.minijvm.stack.StackElement;
+import org.objectweb.asm.Type;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The parsed form of a method descriptor.<br>
+ * Descriptors are parsed once and interned, so the invocation path never has to parse a descriptor string again.<br>
+ * The returned arrays are shared and must not be modified.
+ */
+public final class MethodDescriptor {
+
+    private static final Map<String, MethodDescriptor> DESCRIPTORS = new ConcurrentHashMap<>();
+
+    /**
+     * Get the parsed form of a method descriptor.
+     *
+     * @param descriptor The method descriptor
+     * @return The interned method descriptor
+     */
+    public static MethodDescriptor of(final String descriptor) {
+        MethodDescriptor methodDescriptor = DESCRIPTORS.get(descriptor);
+        if (methodDescriptor == null) methodDescriptor = DESCRIPTORS.computeIfAbsent(descriptor, MethodDescriptor::new);
+        return methodDescriptor;
+    }
+
+    private final String descriptor;
+    private final Type[] argumentTypes;
+    private final byte[] argumentKinds;
+    private final Class<? extends StackElement>[] argumentStackTypes;
+    private final int argumentSlots;
+    private final Type returnType;
+    private final byte returnKind;
+    @Nullable
+    private final Class<? extends StackElement> returnStackType;
+
+    private MethodDescriptor(final String descriptor) {
+        this.descriptor = descriptor;
+        this.argumentTypes = Type.getArgumentTypes(descriptor);
+        this.argumentKinds = new byte[this.argumentTypes.length];
+        @SuppressWarnings("unchecked")
+        Class<? extends StackElement>[] argumentStackTypes = (Class<? extends StackElement>[]) new Class<?>[this.argumentTypes.length];
+        this.argumentStackTypes = argumentStackTypes;
+        int argumentSlots = 0;
+        for (int i = 0; i < this.argumentTypes.length; i++) {
+            this.argumentKinds[i] = ExecutorStack.typeOf(this.argumentTypes[i]);
+            this.argumentStackTypes[i] = ExecutorTypeUtils.typeToStackType(this.argumentTypes[i]);
+            argumentSlots += this.argumentTypes[i].getSize();
+        }
+        this.argumentSlots = argumentSlots;
+        this.returnType = Type.getReturnType(descriptor);
+        this.returnKind = this.returnType.getSort() == Type.VOID ? ExecutorStack.EMPTY : ExecutorStack.typeOf(this.returnType);
+        this.returnStackType = this.returnType.getSort() == Type.VOID ? null : ExecutorTypeUtils.typeToStackType(this.returnType);
+    }
+
+    public String getDescriptor() {
+        return this.descriptor;
+    }
+
+    public Type[] getArgumentTypes() {
+        return this.argumentTypes;
+    }
+
+    /**
+     * @return The {@link ExecutorStack} slot type of every argument
+     */
+    public byte[] getArgumentKinds() {
+        return this.argumentKinds;
+    }
+
+    public Class<? extends StackElement>[] getArgumentStackTypes() {
+        return this.argumentStackTypes;
+    }
+
+    /**
+     * @return The amount of stack slots used by all arguments, excluding the receiver
+     */
+    public int getArgumentSlots() {
+        return this.argumentSlots;
+    }
+
+    public Type getReturnType() {
+        return this.returnType;
+    }
+
+    /**
+     * @return The {@link ExecutorStack} slot type of the return value or {@link ExecutorStack#EMPTY} if the method returns void
+     */
+    public byte getReturnKind() {
+        return this.returnKind;
+    }
+
+    /**
+     * @return The stack type of the return value or {@code null} if the method returns void
+     */
+    @Nullable
+    public Class<? extends StackElement> getReturnStackType() {
+        return this.returnStackType;
+    }
+
+    public boolean isVoid() {
+        return this.returnStackType == null;
+    }
+
+    @Override
+    public String toString() {
+        return this.descriptor;
+    }
+
+}
@@ -17,6 +17,10 @@ public class Types {
     public static final Type NULL_POINTER_EXCEPTION = Type.getType(NullPointerException.class);
     public static final Type NO_SUCH_METHOD_ERROR = Type.getType(NoSuchMethodError.class);
     public static final Type INCOMPATIBLE_CLASS_CHANGE_ERROR = Type.getType(IncompatibleClassChangeError.class);
+    public static final Type STACK_OVERFLOW_ERROR = Type.getType(StackOverflowError.class);
+    public static final Type ERROR = Type.getType(Error.class);
+    public static final Type EXCEPTION_IN_INITIALIZER_ERROR = Type.getType(ExceptionInInitializerError.class);
+    public static final Type NO_CLASS_DEF_FOUND_ERROR = Type.getType(NoClassDefFoundError.class);
     public static final Type CLASS_NOT_FOUND_EXCEPTION = Type.getType(ClassNotFoundException.class);
     public static final Type CLONE_NOT_SUPPORTED_EXCEPTION = Type.getType(CloneNotSupportedException.class);
     public static final Type INTERNAL_ERROR = Type.getType(InternalError.class);
@@ -15,15 +15,20 @@ public class Benchmark {
 
     public static void main(String[] args) {
         ExecutionManager manager = new ExecutionManager(new LoaderClassProvider());
+        manager.setJitEnabled(Boolean.getBoolean("jit"));
         ExecutionContext context = manager.newContext();
 
         final double d = 1 / 0.75;
         ExecutorClass test4Class = manager.loadClass(context, Type.getType(Benchmark.class));
         ExecutorClass.ResolvedMethod doitMethod = test4Class.findMethod(context, "run", "()J");
-        long start = System.nanoTime();
-        ExecutionResult result = Executor.execute(context, test4Class, doitMethod.method(), null, new StackDouble(d));
-        System.out.println(result);
-        System.out.println("MiniJVM: " + new DecimalFormat().format(System.nanoTime() - start));
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        long start;
+        for (int i = 0; i < iterations; i++) {
+            start = System.nanoTime();
+            ExecutionResult result = Executor.execute(context, test4Class, doitMethod.method(), null, new StackDouble(d));
+            System.out.println(result);
+            System.out.println("MiniJVM: " + new DecimalFormat().format(System.nanoTime() - start));
+        }
 
         start = System.nanoTime();
         System.out.println(run());
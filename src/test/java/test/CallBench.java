@@ -0,0 +1,64 @@
+package test;
+
+import net.lenni0451.commons.asm.provider.LoaderClassProvider;
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.ExecutionManager;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.execution.Executor;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.stack.StackLong;
+import org.objectweb.asm.Type;
+
+import java.text.DecimalFormat;
+
+public class CallBench {
+
+    private int base = 1;
+
+    public static void main(String[] args) {
+        ExecutionManager manager = new ExecutionManager(new LoaderClassProvider());
+        manager.setJitEnabled(Boolean.getBoolean("jit"));
+        ExecutionContext context = manager.newContext();
+
+        ExecutorClass benchClass = manager.loadClass(context, Type.getType(CallBench.class));
+        ExecutorClass.ResolvedMethod runMethod = benchClass.findMethod(context, "run", "()J");
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        long[] guestResults = new long[iterations];
+        long start;
+        for (int i = 0; i < iterations; i++) {
+            start = System.nanoTime();
+            ExecutionResult result = Executor.execute(context, benchClass, runMethod.method(), null);
+            System.out.println(result);
+            System.out.println("MiniJVM: " + new DecimalFormat().format(System.nanoTime() - start));
+            if (!result.hasReturnValue()) throw new IllegalStateException("Execution failed: " + result);
+            guestResults[i] = ((StackLong) result.getReturnValue()).value();
+        }
+
+        start = System.nanoTime();
+        long expected = run();
+        System.out.println(expected);
+        System.out.println("Java: " + new DecimalFormat().format(System.nanoTime() - start));
+        for (long guestResult : guestResults) {
+            if (guestResult != expected) throw new IllegalStateException("MiniJVM returned " + guestResult + " but Java returned " + expected);
+        }
+    }
+
+    public static long run() {
+        CallBench bench = new CallBench();
+        long sum = fib(23);
+        for (int i = 0; i < 200000; i++) sum += bench.add(i, 3L, bench);
+        return sum;
+    }
+
+    private static int fib(int n) {
+        return n < 2 ? n : fib(n - 1) + fib(n - 2);
+    }
+
+    /**
+     * Not private, so the call is a virtual call.
+     */
+    int add(int a, long b, Object o) {
+        return a + (int) b + this.base;
+    }
+
+}
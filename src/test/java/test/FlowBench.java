@@ -0,0 +1,174 @@
+package test;
+
+import net.lenni0451.commons.asm.provider.LoaderClassProvider;
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.ExecutionManager;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.execution.Executor;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.stack.StackLong;
+import org.objectweb.asm.Type;
+
+import java.text.DecimalFormat;
+
+public class FlowBench {
+
+    public static void main(String[] args) {
+        ExecutionManager manager = new ExecutionManager(new LoaderClassProvider());
+        manager.setJitEnabled(Boolean.getBoolean("jit"));
+        ExecutionContext context = manager.newContext();
+
+        ExecutorClass benchClass = manager.loadClass(context, Type.getType(FlowBench.class));
+        ExecutorClass.ResolvedMethod runMethod = benchClass.findMethod(context, "run", "()J");
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        long[] guestResults = new long[iterations];
+        long start;
+        for (int i = 0; i < iterations; i++) {
+            start = System.nanoTime();
+            ExecutionResult result = Executor.execute(context, benchClass, runMethod.method(), null);
+            System.out.println(result);
+            System.out.println("MiniJVM: " + new DecimalFormat().format(System.nanoTime() - start));
+            if (!result.hasReturnValue()) throw new IllegalStateException("Execution failed: " + result);
+            guestResults[i] = ((StackLong) result.getReturnValue()).value();
+        }
+
+        start = System.nanoTime();
+        long expected = run();
+        System.out.println(expected);
+        System.out.println("Java: " + new DecimalFormat().format(System.nanoTime() - start));
+        for (long guestResult : guestResults) {
+            if (guestResult != expected) throw new IllegalStateException("MiniJVM returned " + guestResult + " but Java returned " + expected);
+        }
+    }
+
+    public static long run() {
+        long sum = 0;
+        for (int i = 0; i < 2000; i++) {
+            try {
+                try {
+                    sum += thrower(i);
+                } finally {
+                    sum ^= 1;
+                }
+            } catch (ValueException e) {
+                sum += e.value * 2L;
+            } catch (RuntimeException e) {
+                sum -= 5;
+            }
+            sum += lookupSwitch(i - 5) + lookupSwitch(i * 17) + tableSwitch(i % 8);
+        }
+        sum += stringSwitch("a") * 100 + stringSwitch("hello") * 10 + stringSwitch("x") + stringSwitch("bb");
+        sum += lookupSwitch(-100000) + lookupSwitch(1 << 30) + lookupSwitch(65536) + lookupSwitch(1000);
+        sum += stateMachine(500) % 100000;
+        try {
+            Object o = "string";
+            sum += (Integer) o;
+        } catch (ClassCastException e) {
+            sum += 77;
+        }
+        return sum;
+    }
+
+    private static int thrower(int i) {
+        if (i % 3 == 0) throw new ValueException(i);
+        if (i % 7 == 0) throw new IllegalStateException();
+        return i;
+    }
+
+    private static int lookupSwitch(int key) {
+        switch (key) {
+            case -100000:
+                return 1;
+            case -5:
+                return 2;
+            case 3:
+                return 3;
+            case 17:
+                return 4;
+            case 1000:
+                return 5;
+            case 65536:
+                return 6;
+            case 1 << 30:
+                return 7;
+            default:
+                return 0;
+        }
+    }
+
+    private static int tableSwitch(int key) {
+        switch (key) {
+            case 0:
+                return 11;
+            case 1:
+                return 12;
+            case 2:
+                return 13;
+            case 3:
+                return 14;
+            case 4:
+                return 15;
+            case 5:
+                return 16;
+            default:
+                return -1;
+        }
+    }
+
+    private static int stringSwitch(String s) {
+        switch (s) {
+            case "a":
+                return 1;
+            case "bb":
+                return 2;
+            case "hello":
+                return 3;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * A loop dispatching over a state variable, like the control flow flattening of obfuscators.
+     */
+    private static int stateMachine(int n) {
+        int state = 0;
+        int acc = 0;
+        int i = 0;
+        while (true) {
+            switch (state) {
+                case 0:
+                    acc += 1;
+                    state = 3;
+                    break;
+                case 3:
+                    acc *= 3;
+                    state = 7;
+                    break;
+                case 7:
+                    acc -= 2;
+                    state = 12;
+                    break;
+                case 12:
+                    i++;
+                    state = i < n ? 0 : 99;
+                    break;
+                case 99:
+                    return acc;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
+
+    private static class ValueException extends RuntimeException {
+        private final int value;
+
+        private ValueException(final int value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package test;
+
+import net.lenni0451.commons.asm.provider.LoaderClassProvider;
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.ExecutionManager;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.execution.Executor;
+import net.lenni0451.minijvm.execution.OpcodePairListener;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OpcodePairs {
+
+    public static void main(String[] args) {
+        ExecutionManager manager = new ExecutionManager(new LoaderClassProvider());
+        OpcodePairListener listener = new OpcodePairListener();
+        manager.setExecutionListener(listener);
+        ExecutionContext context = manager.newContext();
+
+        ExecutorClass benchmarkClass = manager.loadClass(context, Type.getType(Benchmark.class));
+        ExecutionResult result = Executor.execute(context, benchmarkClass, benchmarkClass.findMethod(context, "run", "()J").method(), null);
+        System.out.println("Benchmark.run: " + result);
+        ExecutorClass pairsClass = manager.loadClass(context, Type.getType(OpcodePairs.class));
+        result = Executor.execute(context, pairsClass, pairsClass.findMethod(context, "collections", "()I").method(), null);
+        System.out.println("OpcodePairs.collections: " + result);
+
+        listener.dump(System.out, args.length > 0 ? Integer.parseInt(args[0]) : 25);
+    }
+
+    public static int collections() {
+        List<String> words = new ArrayList<>();
+        Map<String, String> lookup = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            String word = new StringBuilder("word").append(i % 500).toString();
+            words.add(word);
+            lookup.put(word, new StringBuilder(word).reverse().toString());
+        }
+        String[] sorted = new String[words.size()];
+        for (int i = 0; i < sorted.length; i++) sorted[i] = words.get(i);
+        for (int i = 1; i < sorted.length; i++) {
+            String word = sorted[i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j].compareTo(word) > 0) sorted[j + 1] = sorted[j--];
+            sorted[j + 1] = word;
+        }
+        int[] lengths = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) lengths[i] = lookup.get(sorted[i]).hashCode();
+        Arrays.sort(lengths);
+        return lengths[0] ^ lengths[lengths.length - 1] ^ lookup.size();
+    }
+
+}
@@ -0,0 +1,98 @@
+package test;
+
+import net.lenni0451.commons.asm.provider.LoaderClassProvider;
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.ExecutionManager;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.execution.Executor;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.stack.StackElement;
+import net.lenni0451.minijvm.stack.StackInt;
+import org.objectweb.asm.Type;
+
+public class OptimizerTest {
+
+    public static void main(String[] args) {
+        boolean failed = false;
+        failed |= compare(Benchmark.class, "run", "()J");
+        failed |= compare(OpcodePairs.class, "collections", "()I");
+        failed |= compare(OptimizerTest.class, "constants", "(I)I", new StackInt(1000));
+        failed |= compare(OptimizerTest.class, "exceptions", "(I)I", new StackInt(0));
+        failed |= compare(OptimizerTest.class, "exceptions", "(I)I", new StackInt(3));
+        failed |= compare(OptimizerTest.class, "deadStores", "(I)I", new StackInt(1000));
+        System.out.println(failed ? "Optimized and unoptimized results differ" : "All results match");
+    }
+
+    private static boolean compare(final Class<?> owner, final String name, final String descriptor, final StackElement... arguments) {
+        String unoptimized = execute(false, owner, name, descriptor, arguments);
+        String optimized = execute(true, owner, name, descriptor, arguments);
+        boolean differ = !unoptimized.equals(optimized);
+        System.out.println((differ ? "MISMATCH " : "") + owner.getSimpleName() + "." + name + descriptor + ": " + unoptimized + (differ ? " != " + optimized : ""));
+        return differ;
+    }
+
+    private static String execute(final boolean optimize, final Class<?> owner, final String name, final String descriptor, final StackElement... arguments) {
+        ExecutionManager manager = new ExecutionManager(new LoaderClassProvider());
+        manager.setOptimizeMethods(optimize);
+        ExecutionContext context = manager.newContext();
+        ExecutorClass executorClass = manager.loadClass(context, Type.getType(owner));
+        ExecutionResult result = Executor.execute(context, executorClass, executorClass.findMethod(context, name, descriptor).method(), null, arguments);
+        return result.toString();
+    }
+
+    public static int constants(final int n) {
+        int result = 0;
+        for (int i = 0; i < n; i++) {
+            int a = 7;
+            int b = a * 3 + 5;
+            if ((b ^ 26) == 0) result += i;
+            else result -= 1000;
+            int k = 3;
+            switch (k) {
+                case 1:
+                    result += 100;
+                    break;
+                case 3:
+                    result += 1;
+                    break;
+                default:
+                    result -= 7;
+            }
+            long l = 5L << 2;
+            if (l == 20L) result++;
+        }
+        return result;
+    }
+
+    public static int exceptions(final int n) {
+        int result = 1;
+        try {
+            int zero = 0;
+            if (n == 0) throw new IllegalStateException();
+            result = 10 * n;
+            if (zero != 0) throw new IllegalArgumentException();
+        } catch (IllegalStateException e) {
+            result = -1;
+        }
+        int x = 5;
+        try {
+            x = x + 1;
+        } catch (RuntimeException e) {
+            x = 99;
+        }
+        return result * 100 + x;
+    }
+
+    public static int deadStores(final int n) {
+        int x = 1;
+        int unused = 0;
+        while (true) {
+            unused = x * 99;
+            x = x * 2;
+            if (x > n) break;
+        }
+        unused = x + 1;
+        return x;
+    }
+
+}
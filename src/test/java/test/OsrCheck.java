@@ -0,0 +1,79 @@
+package test;
+
+import net.lenni0451.commons.asm.provider.LoaderClassProvider;
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.ExecutionManager;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.execution.Executor;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.stack.StackLong;
+import org.objectweb.asm.Type;
+
+import java.text.DecimalFormat;
+
+/**
+ * Runs a method with one long loop in a single invocation, so it can only be compiled by on-stack replacement.<br>
+ * Every iteration uses a new manager, so the method is never compiled by an earlier invocation.
+ */
+public class OsrCheck {
+
+    private static int counter;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        long[] guestResults = new long[iterations];
+        long start;
+        for (int i = 0; i < iterations; i++) {
+            ExecutionManager manager = new ExecutionManager(new LoaderClassProvider());
+            manager.setJitEnabled(Boolean.getBoolean("jit"));
+            ExecutionContext context = manager.newContext();
+            ExecutorClass checkClass = manager.loadClass(context, Type.getType(OsrCheck.class));
+
+            start = System.nanoTime();
+            ExecutionResult result = Executor.execute(context, checkClass, checkClass.findMethod(context, "decrypt", "()J").method(), null);
+            System.out.println(result);
+            System.out.println("MiniJVM: " + new DecimalFormat().format(System.nanoTime() - start));
+            if (!result.hasReturnValue()) throw new IllegalStateException("Execution failed: " + result);
+            guestResults[i] = ((StackLong) result.getReturnValue()).value();
+        }
+
+        start = System.nanoTime();
+        long expected = decrypt();
+        System.out.println(expected);
+        System.out.println("Java: " + new DecimalFormat().format(System.nanoTime() - start));
+        for (long guestResult : guestResults) {
+            if (guestResult != expected) throw new IllegalStateException("MiniJVM returned " + guestResult + " but Java returned " + expected);
+        }
+    }
+
+    public static long decrypt() {
+        counter = 0;
+        byte[] data = new byte[200000];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) (i * 7);
+        long acc = 17L;
+        double d = 0.5;
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) (data[i] ^ mix(i) ^ round);
+                acc = acc * 3 + data[i];
+                d += data[i] * 0.25;
+                counter++;
+            }
+        }
+        //Invocations on null return an exception without popping their inputs, the caught exceptions must not fill the frame
+        Object[] receivers = {null, "osr"};
+        for (int i = 0; i < 20000; i++) {
+            try {
+                acc += receivers[i & 1].hashCode() & 7;
+            } catch (NullPointerException e) {
+                acc++;
+            }
+        }
+        return acc + (long) d + counter;
+    }
+
+    private static int mix(int a) {
+        return a * 31 + 7;
+    }
+
+}
@@ -0,0 +1,92 @@
+package test;
+
+import net.lenni0451.commons.asm.provider.LoaderClassProvider;
+import net.lenni0451.minijvm.ExecutionContext;
+import net.lenni0451.minijvm.ExecutionManager;
+import net.lenni0451.minijvm.execution.ExecutionResult;
+import net.lenni0451.minijvm.execution.Executor;
+import net.lenni0451.minijvm.object.ExecutorClass;
+import net.lenni0451.minijvm.stack.StackLong;
+import org.objectweb.asm.Type;
+
+import java.text.DecimalFormat;
+
+public class VirtualBench {
+
+    public static void main(String[] args) {
+        ExecutionManager manager = new ExecutionManager(new LoaderClassProvider());
+        manager.setJitEnabled(Boolean.getBoolean("jit"));
+        ExecutionContext context = manager.newContext();
+
+        ExecutorClass benchClass = manager.loadClass(context, Type.getType(VirtualBench.class));
+        ExecutorClass.ResolvedMethod runMethod = benchClass.findMethod(context, "run", "()J");
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        long[] guestResults = new long[iterations];
+        long start;
+        for (int i = 0; i < iterations; i++) {
+            start = System.nanoTime();
+            ExecutionResult result = Executor.execute(context, benchClass, runMethod.method(), null);
+            System.out.println(result);
+            System.out.println("MiniJVM: " + new DecimalFormat().format(System.nanoTime() - start));
+            if (!result.hasReturnValue()) throw new IllegalStateException("Execution failed: " + result);
+            guestResults[i] = ((StackLong) result.getReturnValue()).value();
+        }
+
+        start = System.nanoTime();
+        long expected = run();
+        System.out.println(expected);
+        System.out.println("Java: " + new DecimalFormat().format(System.nanoTime() - start));
+        for (long guestResult : guestResults) {
+            if (guestResult != expected) throw new IllegalStateException("MiniJVM returned " + guestResult + " but Java returned " + expected);
+        }
+    }
+
+    public static long run() {
+        String text = "the quick brown fox jumps over the lazy dog";
+        Shape[] shapes = {new Square(3), new Rectangle(2, 5)};
+        long sum = 0;
+        for (int round = 0; round < 200; round++) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < text.length(); i++) {
+                builder.append((char) (text.charAt(i) ^ 1));
+                sum += shapes[i & 1].area();
+            }
+            sum += builder.length();
+        }
+        return sum;
+    }
+
+
+    private interface Shape {
+        int area();
+    }
+
+    private static class Square implements Shape {
+        private final int size;
+
+        private Square(final int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int area() {
+            return this.size * this.size;
+        }
+    }
+
+    private static class Rectangle implements Shape {
+        private final int width;
+        private final int height;
+
+        private Rectangle(final int width, final int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int area() {
+            return this.width * this.height;
+        }
+    }
+
+}